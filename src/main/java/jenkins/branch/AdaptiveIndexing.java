@@ -0,0 +1,366 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Cause;
+import hudson.model.CauseAction;
+import hudson.model.PeriodicWork;
+import hudson.model.Queue;
+import hudson.triggers.TimerTrigger;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Adapts how often the periodic trigger of a {@link MultiBranchProject} actually indexes it, based on how well its
+ * events keep it up to date.
+ * <p>
+ * For each project this tracks when an event was last processed and whether the last indexing found changes that
+ * the events had missed: new branches, changed branches or removed branches. After every indexing that found no such
+ * drift while events kept arriving, the effective interval of the periodic trigger doubles, up to
+ * {@link #MAX_MULTIPLIER} times the configured interval. As soon as an indexing finds drift, or no event arrived since
+ * the previous indexing, the configured interval applies again. Indexings requested by users, events or
+ * configuration changes are never held back.
+ * <p>
+ * Conversely, every further consecutive indexing that finds drift halves the effective interval, down to the
+ * configured interval divided by {@link #MAX_DIVISOR}, by scheduling extra indexings in between the firings of the
+ * periodic trigger. The first indexing that finds no drift restores the configured interval.
+ * <p>
+ * The periodic trigger keeps firing at its configured interval, which is also how the configured interval is
+ * measured; the firings that fall within the effective interval are simply not scheduled.
+ * <p>
+ * This state is only held in memory, so after a restart every project starts again from its configured interval.
+ */
+@Restricted(NoExternalUse.class)
+public final class AdaptiveIndexing {
+
+    private static final Logger LOGGER = Logger.getLogger(AdaptiveIndexing.class.getName());
+
+    /**
+     * Set to {@code true} to adapt the periodic indexing intervals.
+     */
+    static /* not final */ boolean ENABLED =
+        SystemProperties.getBoolean(AdaptiveIndexing.class.getName() + ".enabled", false);
+
+    /**
+     * The maximum factor the periodic indexing interval can be stretched by.
+     */
+    static /* not final */ int MAX_MULTIPLIER =
+        SystemProperties.getInteger(AdaptiveIndexing.class.getName() + ".maxMultiplier", 8);
+
+    /**
+     * The maximum factor the periodic indexing interval can be shortened by.
+     */
+    static /* not final */ int MAX_DIVISOR =
+        SystemProperties.getInteger(AdaptiveIndexing.class.getName() + ".maxDivisor", 4);
+
+    /**
+     * The freshness of each project, held weakly so that it goes away with the project instance.
+     */
+    private static final Cache<MultiBranchProject<?, ?>, Freshness> FRESHNESS =
+        Caffeine.newBuilder().weakKeys().build();
+
+    private AdaptiveIndexing() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    @NonNull
+    private static Freshness of(@NonNull MultiBranchProject<?, ?> project) {
+        return FRESHNESS.get(project, k -> new Freshness());
+    }
+
+    /**
+     * Records that an event has been processed for a project.
+     *
+     * @param project the project.
+     */
+    static void eventProcessed(@NonNull MultiBranchProject<?, ?> project) {
+        Freshness f = of(project);
+        synchronized (f) {
+            f.lastEvent = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Records that an indexing of a project has started.
+     *
+     * @param project the project.
+     * @return the current multiplier of the periodic indexing interval.
+     */
+    static int indexingStarted(@NonNull MultiBranchProject<?, ?> project) {
+        Freshness f = of(project);
+        synchronized (f) {
+            f.indexingStart = System.currentTimeMillis();
+            f.drift = false;
+            f.running = true;
+            return f.multiplier;
+        }
+    }
+
+    /**
+     * Records that the current indexing of a project found changes that events had missed.
+     *
+     * @param project the project.
+     */
+    static void driftDetected(@NonNull MultiBranchProject<?, ?> project) {
+        Freshness f = of(project);
+        synchronized (f) {
+            f.drift = true;
+        }
+    }
+
+    /**
+     * Records that an indexing of a project has completed and adapts the periodic indexing interval.
+     *
+     * @param project the project.
+     * @return the new multiplier of the periodic indexing interval.
+     */
+    static int indexingCompleted(@NonNull MultiBranchProject<?, ?> project) {
+        Freshness f = of(project);
+        synchronized (f) {
+            if (f.drift) {
+                f.multiplier = 1;
+                // the first indexing finds everything new, which says nothing about the events
+                if (f.previousIndexingStart != 0L) {
+                    f.divisor = Math.max(1, Math.min(f.divisor * 2, MAX_DIVISOR));
+                }
+            } else {
+                f.divisor = 1;
+                if (f.lastEvent == 0L || f.lastEvent < f.previousIndexingStart) {
+                    f.multiplier = 1;
+                } else {
+                    f.multiplier = Math.max(1, Math.min(f.multiplier * 2, MAX_MULTIPLIER));
+                }
+            }
+            f.previousIndexingStart = f.indexingStart;
+            f.running = false;
+            return f.multiplier;
+        }
+    }
+
+    /**
+     * Returns the current multiplier of the periodic indexing interval of a project.
+     *
+     * @param project the project.
+     * @return the current multiplier of the periodic indexing interval.
+     */
+    static int getMultiplier(@NonNull MultiBranchProject<?, ?> project) {
+        Freshness f = of(project);
+        synchronized (f) {
+            return f.multiplier;
+        }
+    }
+
+    /**
+     * Returns the current divisor of the periodic indexing interval of a project.
+     *
+     * @param project the project.
+     * @return the current divisor of the periodic indexing interval.
+     */
+    static int getDivisor(@NonNull MultiBranchProject<?, ?> project) {
+        Freshness f = of(project);
+        synchronized (f) {
+            return f.divisor;
+        }
+    }
+
+    /**
+     * Decides whether a project whose indexings keep finding drift is due an extra indexing.
+     *
+     * @param project the project.
+     * @param now     the current time.
+     * @return {@code true} if the project should be indexed now.
+     */
+    static boolean shouldRecheck(@NonNull MultiBranchProject<?, ?> project, long now) {
+        Freshness f = of(project);
+        synchronized (f) {
+            if (f.divisor <= 1 || f.interval <= 0L || f.running || f.indexingStart == 0L) {
+                return false;
+            }
+            return now - f.indexingStart >= f.interval / f.divisor;
+        }
+    }
+
+    /**
+     * Decides whether a periodic trigger firing should index a project.
+     *
+     * @param project the project.
+     * @param now     the current time.
+     * @return {@code true} if the project should be indexed.
+     */
+    static boolean shouldIndex(@NonNull MultiBranchProject<?, ?> project, long now) {
+        Freshness f = of(project);
+        synchronized (f) {
+            long interval = f.lastFiring == 0L ? 0L : now - f.lastFiring;
+            f.lastFiring = now;
+            if (interval > 0L) {
+                f.interval = interval;
+            }
+            if (f.multiplier <= 1 || interval <= 0L || f.indexingStart == 0L) {
+                return true;
+            }
+            // allow half an interval of slack for the trigger's own granularity
+            return now - f.indexingStart >= interval * f.multiplier - interval / 2;
+        }
+    }
+
+    /**
+     * The freshness of a single project.
+     */
+    private static final class Freshness {
+        /**
+         * When an event was last processed.
+         */
+        private long lastEvent;
+        /**
+         * When the current or last indexing started.
+         */
+        private long indexingStart;
+        /**
+         * When the indexing before the current or last one started.
+         */
+        private long previousIndexingStart;
+        /**
+         * Whether the current or last indexing found changes that events had missed.
+         */
+        private boolean drift;
+        /**
+         * Whether an indexing has started and not completed.
+         */
+        private boolean running;
+        /**
+         * When the periodic trigger last fired.
+         */
+        private long lastFiring;
+        /**
+         * The measured interval of the periodic trigger or {@code 0} if not yet known.
+         */
+        private long interval;
+        /**
+         * The factor the periodic indexing interval is stretched by.
+         */
+        private int multiplier = 1;
+        /**
+         * The factor the periodic indexing interval is shortened by.
+         */
+        private int divisor = 1;
+    }
+
+    /**
+     * Declares that an indexing was scheduled because recent indexings found changes that events had missed.
+     */
+    public static final class DriftCause extends Cause {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getShortDescription() {
+            return Messages.AdaptiveIndexing_DriftCause();
+        }
+    }
+
+    /**
+     * Schedules the extra indexings of projects whose indexings keep finding drift.
+     */
+    @Extension
+    public static class RecheckWork extends PeriodicWork {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getRecurrencePeriod() {
+            return MIN;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void doRun() {
+            if (!ENABLED) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            for (MultiBranchProject<?, ?> project : FRESHNESS.asMap().keySet()) {
+                if (Jenkins.get().getItemByFullName(project.getFullName()) != project || !project.isBuildable()) {
+                    // deleted, renamed or disabled
+                    continue;
+                }
+                if (shouldRecheck(project, now)) {
+                    LOGGER.log(Level.FINE, "Scheduling extra indexing of {0}, its indexings keep finding changes "
+                        + "that events missed (interval divisor {1})", new Object[]{project.getFullName(),
+                        getDivisor(project)});
+                    project.scheduleBuild(0, new DriftCause());
+                }
+            }
+        }
+    }
+
+    /**
+     * Holds back periodic indexings that fall within the effective interval.
+     */
+    @Extension
+    public static class QueueDecisionHandlerImpl extends Queue.QueueDecisionHandler {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean shouldSchedule(Queue.Task p, List<Action> actions) {
+            if (!ENABLED || !(p instanceof MultiBranchProject) || !isPeriodic(actions)) {
+                return true;
+            }
+            MultiBranchProject<?, ?> project = (MultiBranchProject<?, ?>) p;
+            if (shouldIndex(project, System.currentTimeMillis())) {
+                return true;
+            }
+            LOGGER.log(Level.FINE, "Skipping periodic indexing of {0}, its events are keeping it up to date "
+                + "(interval multiplier {1})", new Object[]{project.getFullName(), getMultiplier(project)});
+            return false;
+        }
+
+        private static boolean isPeriodic(List<Action> actions) {
+            for (Action action : actions) {
+                if (action instanceof CauseAction) {
+                    for (Cause cause : ((CauseAction) action).getCauses()) {
+                        if (cause instanceof TimerTrigger.TimerTriggerCause) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.branch;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.init.Terminator;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * An events log that takes the file I/O off the thread that is processing the events.
+ * <p>
+ * Each stream returned by {@link #get()} buffers its output in memory and hands the buffer over as a record when it
+ * is flushed or closed. Records are queued in a bounded buffer and a single writer thread writes them to the
+ * (rotating) log file in batches, forcing the file to storage on a timer rather than on every write.
+ * <p>
+ * Overflow policy: when the buffer is full the newest record is dropped, never blocking the caller. The writer counts
+ * the dropped records and writes a marker line with the count at the point in the log where they were lost.
+ * <p>
+ * The writer thread exits when idle and is restarted on demand. Pending records are written on shutdown.
+ */
+@Restricted(NoExternalUse.class)
+class AsyncEventLog {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(AsyncEventLog.class.getName());
+
+    /**
+     * The maximum number of records buffered before records are dropped.
+     */
+    static final int CAPACITY =
+        Math.max(1, SystemProperties.getInteger(AsyncEventLog.class.getName() + ".CAPACITY", 4096));
+
+    /**
+     * How often, in milliseconds, the log file is forced to storage while there are writes.
+     */
+    static final long SYNC_INTERVAL_MILLIS =
+        SystemProperties.getLong(AsyncEventLog.class.getName() + ".SYNC_INTERVAL_MILLIS", 5000L);
+
+    /**
+     * How long, in milliseconds, the writer thread waits for records before exiting.
+     */
+    private static final long IDLE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * The live logs, so that they can be flushed on shutdown.
+     */
+    private static final Set<AsyncEventLog> INSTANCES = Collections.synchronizedSet(
+        Collections.newSetFromMap(new WeakHashMap<>()));
+
+    /**
+     * The log file.
+     */
+    @NonNull
+    private final File file;
+
+    /**
+     * The size at which the log file is rotated.
+     */
+    private final long rotateSize;
+
+    /**
+     * The number of rotated files to keep.
+     */
+    private final int rotateKeep;
+
+    /**
+     * How often the log file is forced to storage.
+     */
+    private final long syncInterval;
+
+    /**
+     * The pending records.
+     */
+    private final BlockingQueue<byte[]> records;
+
+    /**
+     * The number of records dropped since the last marker was written.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * The writer thread or {@code null} if not running.
+     */
+    private Thread writer;
+
+    /**
+     * The number of records accepted that have not yet been written.
+     */
+    private int pending;
+
+    /**
+     * Constructor.
+     *
+     * @param file       the log file.
+     * @param rotateSize the size at which the log file is rotated.
+     * @param rotateKeep the number of rotated files to keep.
+     */
+    AsyncEventLog(@NonNull File file, long rotateSize, int rotateKeep) {
+        this(file, rotateSize, rotateKeep, CAPACITY, SYNC_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param file         the log file.
+     * @param rotateSize   the size at which the log file is rotated.
+     * @param rotateKeep   the number of rotated files to keep.
+     * @param capacity     the maximum number of buffered records.
+     * @param syncInterval how often, in milliseconds, the log file is forced to storage.
+     */
+    AsyncEventLog(@NonNull File file, long rotateSize, int rotateKeep, int capacity, long syncInterval) {
+        this.file = file;
+        this.rotateSize = rotateSize;
+        this.rotateKeep = rotateKeep;
+        this.syncInterval = Math.max(0L, syncInterval);
+        this.records = new ArrayBlockingQueue<>(capacity);
+        INSTANCES.add(this);
+    }
+
+    /**
+     * Returns a new stream for writing to the log. The stream is not thread safe and should be closed after use.
+     *
+     * @return a new stream for writing to the log.
+     */
+    @NonNull
+    OutputStream get() {
+        return new ByteArrayOutputStream(256) {
+            @Override
+            public void flush() {
+                if (size() > 0) {
+                    enqueue(toByteArray());
+                    reset();
+                }
+            }
+
+            @Override
+            public void close() {
+                flush();
+            }
+        };
+    }
+
+    /**
+     * Returns the number of records dropped that have not yet been reported in the log.
+     *
+     * @return the number of records dropped that have not yet been reported in the log.
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Waits for the records queued so far to be written.
+     *
+     * @param timeout the maximum time to wait in milliseconds.
+     * @return {@code true} if the queue was drained.
+     * @throws InterruptedException if interrupted.
+     */
+    boolean awaitDrained(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (this) {
+            while (pending > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+        }
+        return true;
+    }
+
+    private void enqueue(byte[] record) {
+        synchronized (this) {
+            pending++;
+        }
+        if (!records.offer(record)) {
+            dropped.incrementAndGet();
+            synchronized (this) {
+                pending--;
+            }
+        }
+        startWriterIfNeeded();
+    }
+
+    private synchronized void startWriterIfNeeded() {
+        if (writer == null) {
+            writer = new Thread(this::writeLoop, "AsyncEventLog writer for " + file.getName());
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    private void writeLoop() {
+        List<byte[]> batch = new ArrayList<>();
+        long written = file.length();
+        long lastSync = System.currentTimeMillis();
+        boolean unsynced = false;
+        RewindableRotatingFileOutputStream out = new RewindableRotatingFileOutputStream(file, true, rotateKeep);
+        try {
+            while (true) {
+                long wait = unsynced ? Math.max(1L, lastSync + syncInterval - System.currentTimeMillis()) : IDLE_MILLIS;
+                byte[] first = records.poll(wait, TimeUnit.MILLISECONDS);
+                if (first == null && dropped.get() == 0L) {
+                    if (unsynced) {
+                        sync(out);
+                        unsynced = false;
+                        lastSync = System.currentTimeMillis();
+                        continue;
+                    }
+                    synchronized (this) {
+                        if (records.isEmpty()) {
+                            writer = null;
+                            notifyAll();
+                            return;
+                        }
+                    }
+                    continue;
+                }
+                batch.clear();
+                if (first != null) {
+                    batch.add(first);
+                }
+                records.drainTo(batch);
+                int taken = batch.size();
+                try {
+                    long lost = dropped.getAndSet(0L);
+                    if (lost > 0L) {
+                        batch.add(String.format("[%tc] %d event log records were dropped as the log writer could not "
+                            + "keep up%n", System.currentTimeMillis(), lost).getBytes(StandardCharsets.UTF_8));
+                    }
+                    for (byte[] record : batch) {
+                        if (rotateSize > 0 && written >= rotateSize) {
+                            out.rewind();
+                            written = 0L;
+                        }
+                        out.write(record);
+                        written += record.length;
+                    }
+                    out.flush();
+                    unsynced = true;
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Could not write to " + file, e);
+                } finally {
+                    synchronized (this) {
+                        pending -= taken;
+                        notifyAll();
+                    }
+                }
+                if (syncInterval == 0L || System.currentTimeMillis() - lastSync >= syncInterval) {
+                    sync(out);
+                    unsynced = false;
+                    lastSync = System.currentTimeMillis();
+                }
+            }
+        } catch (InterruptedException e) {
+            LOGGER.log(Level.FINE, "Interrupted while writing " + file, e);
+            synchronized (this) {
+                writer = null;
+                notifyAll();
+            }
+        } finally {
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not close " + file, e);
+            }
+        }
+    }
+
+    private void sync(RewindableRotatingFileOutputStream out) {
+        try {
+            out.sync();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not sync " + file, e);
+        }
+    }
+
+    /**
+     * Writes out any pending records on shutdown.
+     */
+    @Terminator
+    public static void drainAll() {
+        List<AsyncEventLog> logs;
+        synchronized (INSTANCES) {
+            logs = new ArrayList<>(INSTANCES);
+        }
+        for (AsyncEventLog log : logs) {
+            try {
+                if (!log.awaitDrained(TimeUnit.SECONDS.toMillis(5))) {
+                    LOGGER.log(Level.WARNING, "Timed out writing pending records to {0}", log.file);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
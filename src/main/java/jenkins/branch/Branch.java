@@ -25,8 +25,10 @@ package jenkins.branch;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.Extension;
+import hudson.Util;
 import hudson.model.AbstractProject;
 import hudson.model.Action;
+import hudson.model.Items;
 import hudson.model.Job;
 import hudson.model.TaskListener;
 import hudson.scm.NullSCM;
@@ -82,6 +84,13 @@ public class Branch {
      */
     private List<Action> actions;
 
+    /**
+     * The digest of the XStream form of {@link #scm}, computed lazily and persisted with the branch so that
+     * comparing a reloaded branch does not need to serialize its {@link SCM} again.
+     */
+    @CheckForNull
+    private volatile String scmDigest;
+
     /**
      * Constructs a branch instance.
      *
@@ -175,6 +184,22 @@ public class Branch {
         return scm;
     }
 
+    /**
+     * Returns the digest of the XStream form of {@link #getScm()}, used to detect changes of the {@link SCM}
+     * configuration.
+     *
+     * @return the digest of the {@link SCM} configuration.
+     */
+    @NonNull
+    String getScmDigest() {
+        String digest = scmDigest;
+        if (digest == null) {
+            digest = Util.getDigestOf(Items.XSTREAM2.toXML(scm));
+            scmDigest = digest;
+        }
+        return digest;
+    }
+
     /**
      * Tests if a property of a specific type is present.
      *
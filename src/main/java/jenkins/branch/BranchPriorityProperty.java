@@ -0,0 +1,360 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import com.cloudbees.hudson.plugins.folder.AbstractFolder;
+import com.cloudbees.hudson.plugins.folder.AbstractFolderProperty;
+import com.cloudbees.hudson.plugins.folder.AbstractFolderPropertyDescriptor;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Cause;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.queue.QueueSorter;
+import hudson.util.FormValidation;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.metadata.PrimaryInstanceMetadataAction;
+import jenkins.scm.api.mixin.ChangeRequestSCMHead;
+import jenkins.scm.api.mixin.TagSCMHead;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+/**
+ * Orders the buildable branch builds of a {@link MultiBranchProject} by the kind of branch they build, so that
+ * builds of the primary branch do not wait behind a storm of change request builds when executors are scarce.
+ * <p>
+ * Each kind of branch gets a priority from {@link #HIGHEST} to {@link #LOWEST}; items of other jobs have
+ * {@link #NEUTRAL} priority. Within the same priority, builds that users triggered go first, then those triggered
+ * by events and then those triggered by branch indexing; otherwise the order of the queue is kept.
+ */
+public class BranchPriorityProperty extends AbstractFolderProperty<MultiBranchProject<?, ?>> {
+
+    /**
+     * The highest priority.
+     */
+    public static final int HIGHEST = 1;
+
+    /**
+     * The priority of jobs that are not prioritized.
+     */
+    public static final int NEUTRAL = 3;
+
+    /**
+     * The lowest priority.
+     */
+    public static final int LOWEST = 5;
+
+    /**
+     * The priority of primary branches.
+     */
+    private int primaryPriority = HIGHEST;
+
+    /**
+     * The priority of other branches.
+     */
+    private int branchPriority = NEUTRAL;
+
+    /**
+     * The priority of change requests.
+     */
+    private int changeRequestPriority = NEUTRAL + 1;
+
+    /**
+     * The priority of tags.
+     */
+    private int tagPriority = LOWEST;
+
+    /**
+     * Constructor.
+     */
+    @DataBoundConstructor
+    public BranchPriorityProperty() {
+        // empty
+    }
+
+    private static int clamp(int priority) {
+        return Math.min(Math.max(HIGHEST, priority), LOWEST);
+    }
+
+    /**
+     * Gets the priority of primary branches.
+     *
+     * @return the priority of primary branches.
+     */
+    public int getPrimaryPriority() {
+        return clamp(primaryPriority);
+    }
+
+    /**
+     * Sets the priority of primary branches.
+     *
+     * @param primaryPriority the priority of primary branches.
+     */
+    @DataBoundSetter
+    public void setPrimaryPriority(int primaryPriority) {
+        this.primaryPriority = clamp(primaryPriority);
+    }
+
+    /**
+     * Gets the priority of branches that are neither primary, change requests nor tags.
+     *
+     * @return the priority of other branches.
+     */
+    public int getBranchPriority() {
+        return clamp(branchPriority);
+    }
+
+    /**
+     * Sets the priority of branches that are neither primary, change requests nor tags.
+     *
+     * @param branchPriority the priority of other branches.
+     */
+    @DataBoundSetter
+    public void setBranchPriority(int branchPriority) {
+        this.branchPriority = clamp(branchPriority);
+    }
+
+    /**
+     * Gets the priority of change requests.
+     *
+     * @return the priority of change requests.
+     */
+    public int getChangeRequestPriority() {
+        return clamp(changeRequestPriority);
+    }
+
+    /**
+     * Sets the priority of change requests.
+     *
+     * @param changeRequestPriority the priority of change requests.
+     */
+    @DataBoundSetter
+    public void setChangeRequestPriority(int changeRequestPriority) {
+        this.changeRequestPriority = clamp(changeRequestPriority);
+    }
+
+    /**
+     * Gets the priority of tags.
+     *
+     * @return the priority of tags.
+     */
+    public int getTagPriority() {
+        return clamp(tagPriority);
+    }
+
+    /**
+     * Sets the priority of tags.
+     *
+     * @param tagPriority the priority of tags.
+     */
+    @DataBoundSetter
+    public void setTagPriority(int tagPriority) {
+        this.tagPriority = clamp(tagPriority);
+    }
+
+    /**
+     * Returns the priority of a branch.
+     *
+     * @param primary {@code true} if the branch is a primary branch.
+     * @param head    the head of the branch.
+     * @return the priority.
+     */
+    int priorityOf(boolean primary, @NonNull SCMHead head) {
+        if (primary) {
+            return getPrimaryPriority();
+        }
+        if (head instanceof ChangeRequestSCMHead) {
+            return getChangeRequestPriority();
+        }
+        if (head instanceof TagSCMHead) {
+            return getTagPriority();
+        }
+        return getBranchPriority();
+    }
+
+    /**
+     * Returns the sort key of a queue item: its priority and then the rank of its causes, where builds triggered by
+     * users rank first and builds triggered by branch indexing last. Items that are not prioritized all get the same
+     * key.
+     *
+     * @param item the queue item.
+     * @return the sort key, lower sorts first.
+     */
+    static int sortKeyOf(@NonNull Queue.Item item) {
+        int neutral = NEUTRAL * 3 + 1;
+        if (!(item.task instanceof Job) || !(((Job<?, ?>) item.task).getParent() instanceof MultiBranchProject)) {
+            return neutral;
+        }
+        Job<?, ?> job = (Job<?, ?>) item.task;
+        MultiBranchProject<?, ?> project = (MultiBranchProject<?, ?>) job.getParent();
+        BranchPriorityProperty property = project.getProperties().get(BranchPriorityProperty.class);
+        if (property == null || !project.getProjectFactory().isProject(job)) {
+            return neutral;
+        }
+        Branch branch = branchOf(project.getProjectFactory(), job);
+        int priority =
+                property.priorityOf(job.getAction(PrimaryInstanceMetadataAction.class) != null, branch.getHead());
+        int rank = 1;
+        for (Cause cause : item.getCauses()) {
+            if (cause instanceof Cause.UserIdCause) {
+                rank = 0;
+                break;
+            }
+            if (cause instanceof BranchIndexingCause) {
+                rank = 2;
+            }
+        }
+        return priority * 3 + rank;
+    }
+
+    private static <P extends Job<P, R>, R extends Run<P, R>> Branch branchOf(BranchProjectFactory<P, R> factory,
+                                                                               Job<?, ?> job) {
+        return factory.getBranch(factory.asProject(job));
+    }
+
+    /**
+     * Our descriptor.
+     */
+    @Extension
+    @Symbol("branchPriority")
+    public static class DescriptorImpl extends AbstractFolderPropertyDescriptor {
+
+        /**
+         * {@inheritDoc}
+         */
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return Messages.BranchPriorityProperty_DisplayName();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isApplicable(Class<? extends AbstractFolder> containerType) {
+            return MultiBranchProject.class.isAssignableFrom(containerType);
+        }
+
+        /**
+         * Checks a priority.
+         *
+         * @param value the priority.
+         * @return the form validation.
+         */
+        public FormValidation doCheckPrimaryPriority(@QueryParameter int value) {
+            return checkPriority(value);
+        }
+
+        /**
+         * Checks a priority.
+         *
+         * @param value the priority.
+         * @return the form validation.
+         */
+        public FormValidation doCheckBranchPriority(@QueryParameter int value) {
+            return checkPriority(value);
+        }
+
+        /**
+         * Checks a priority.
+         *
+         * @param value the priority.
+         * @return the form validation.
+         */
+        public FormValidation doCheckChangeRequestPriority(@QueryParameter int value) {
+            return checkPriority(value);
+        }
+
+        /**
+         * Checks a priority.
+         *
+         * @param value the priority.
+         * @return the form validation.
+         */
+        public FormValidation doCheckTagPriority(@QueryParameter int value) {
+            return checkPriority(value);
+        }
+
+        private static FormValidation checkPriority(int value) {
+            if (value < HIGHEST || value > LOWEST) {
+                return FormValidation.error(Messages.BranchPriorityProperty_Range(HIGHEST, LOWEST, NEUTRAL));
+            }
+            return FormValidation.ok();
+        }
+    }
+
+    /**
+     * Orders the buildable items by {@link #sortKeyOf(Queue.Item)}.
+     * Jenkins only installs the first {@link QueueSorter}, so the lowest ordinal lets any other installed sorter take
+     * precedence, in which case this one is ignored. When this one is installed, it leaves the order of the queue
+     * alone unless a buildable item belongs to a project with the property.
+     */
+    @Extension(ordinal = -1000)
+    @SuppressWarnings("unused") // instantiated by Jenkins
+    public static class QueueSorterImpl extends QueueSorter {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void sortBuildableItems(List<Queue.BuildableItem> buildables) {
+            if (!anyPrioritized(buildables)) {
+                return;
+            }
+            Map<Queue.BuildableItem, Integer> keys = new IdentityHashMap<>(buildables.size());
+            for (Queue.BuildableItem item : buildables) {
+                keys.put(item, sortKeyOf(item));
+            }
+            // a stable sort, so that items with the same key keep the order they already have
+            buildables.sort(Comparator.comparingInt(keys::get));
+        }
+
+        /**
+         * Returns {@code true} if any of the items belongs to a project with the property.
+         *
+         * @param buildables the buildable items.
+         * @return {@code true} if any of the items could be prioritized.
+         */
+        private static boolean anyPrioritized(List<Queue.BuildableItem> buildables) {
+            for (Queue.BuildableItem item : buildables) {
+                if (item.task instanceof Job && ((Job<?, ?>) item.task).getParent() instanceof MultiBranchProject
+                        && ((MultiBranchProject<?, ?>) ((Job<?, ?>) item.task).getParent()).getProperties()
+                        .get(BranchPriorityProperty.class) != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
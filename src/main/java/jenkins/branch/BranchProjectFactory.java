@@ -23,6 +23,8 @@
  */
 package jenkins.branch;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.BulkChange;
@@ -42,14 +44,16 @@ import hudson.model.TopLevelItem;
 import hudson.tasks.BuildWrapper;
 import hudson.tasks.Publisher;
 import hudson.util.DescribableList;
-import java.io.File;
 import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
 import jenkins.scm.api.SCMHead;
 import jenkins.scm.api.SCMHead.HeadByItem;
 import jenkins.scm.api.SCMRevision;
 import jenkins.scm.api.SCMSource;
+import jenkins.util.SystemProperties;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.DoNotUse;
 
@@ -74,6 +78,20 @@ public abstract class BranchProjectFactory<P extends Job<P, R> & TopLevelItem,
     @CheckForNull
     private MultiBranchProject<P, R> owner = null;
 
+    /**
+     * Set to {@code true} to always apply all the {@link JobDecorator}s rather than skipping projects whose
+     * decoration inputs are unchanged.
+     */
+    static /* not final */ boolean DECORATION_FINGERPRINT_DISABLED = SystemProperties.getBoolean(
+        BranchProjectFactory.class.getName() + ".decorationFingerprintDisabled", false);
+
+    /**
+     * The fingerprint of each project as of its last {@link #decorate(Job)}, keyed by identity and held weakly so
+     * that it goes away with the project instance.
+     * The fingerprint references the instances weakly, since job properties reference their project.
+     */
+    private static final Cache<Job<?, ?>, Reference<?>[]> DECORATIONS = Caffeine.newBuilder().weakKeys().build();
+
     /**
      * Creates a new branch project.
      * {@link Item#getName} must match {@link Branch#getEncodedName}.
@@ -159,13 +177,8 @@ public abstract class BranchProjectFactory<P extends Job<P, R> & TopLevelItem,
      */
     @CheckForNull
     public SCMRevision getRevision(P project) {
-        XmlFile file = new XmlFile(new File(project.getRootDir(), "scm-revision-hash.xml"));
-        try {
-            return (SCMRevision) file.read();
-        } catch (IOException e) {
-            // ignore
-        }
-        return null;
+        return BranchRevisionCache.get(BranchRevisionStore.Kind.BUILT, project,
+            () -> readRevision(BranchRevisionStore.Kind.BUILT, project));
     }
 
     /**
@@ -176,8 +189,8 @@ public abstract class BranchProjectFactory<P extends Job<P, R> & TopLevelItem,
      * @throws IOException if there was an issue persisting the details.
      */
     public void setRevisionHash(P project, SCMRevision revision) throws IOException {
-        XmlFile file = new XmlFile(new File(project.getRootDir(), "scm-revision-hash.xml"));
-        file.write(revision);
+        BranchRevisionCache.put(BranchRevisionStore.Kind.BUILT, project, revision,
+            r -> writeRevision(BranchRevisionStore.Kind.BUILT, project, r));
     }
 
     /**
@@ -188,13 +201,8 @@ public abstract class BranchProjectFactory<P extends Job<P, R> & TopLevelItem,
      */
     @CheckForNull
     public SCMRevision getLastSeenRevision(P project) {
-        XmlFile file = new XmlFile(new File(project.getRootDir(), "scm-last-seen-revision-hash.xml"));
-        try {
-            return (SCMRevision) file.read();
-        } catch (IOException e) {
-            // ignore
-        }
-        return null;
+        return BranchRevisionCache.get(BranchRevisionStore.Kind.SEEN, project,
+            () -> readRevision(BranchRevisionStore.Kind.SEEN, project));
     }
 
     /**
@@ -205,7 +213,32 @@ public abstract class BranchProjectFactory<P extends Job<P, R> & TopLevelItem,
      * @throws IOException if there was an issue persisting the details.
      */
     public void setLastSeenRevisionHash(P project, SCMRevision revision) throws IOException {
-        XmlFile file = new XmlFile(new File(project.getRootDir(), "scm-last-seen-revision-hash.xml"));
+        BranchRevisionCache.put(BranchRevisionStore.Kind.SEEN, project, revision,
+            r -> writeRevision(BranchRevisionStore.Kind.SEEN, project, r));
+    }
+
+    @CheckForNull
+    private SCMRevision readRevision(BranchRevisionStore.Kind kind, P project) {
+        BranchRevisionStore store = BranchRevisionStore.of(project);
+        if (store != null) {
+            return store.get(kind, project);
+        }
+        XmlFile file = new XmlFile(kind.legacyFile(project));
+        try {
+            return (SCMRevision) file.read();
+        } catch (IOException e) {
+            // ignore
+        }
+        return null;
+    }
+
+    private void writeRevision(BranchRevisionStore.Kind kind, P project, SCMRevision revision) throws IOException {
+        BranchRevisionStore store = BranchRevisionStore.of(project);
+        if (store != null) {
+            store.set(kind, project, revision);
+            return;
+        }
+        XmlFile file = new XmlFile(kind.legacyFile(project));
         file.write(revision);
     }
 
@@ -223,6 +256,25 @@ public abstract class BranchProjectFactory<P extends Job<P, R> & TopLevelItem,
             return project;
         }
         Branch branch = getBranch(project);
+        List<Object> fingerprint = DECORATION_FINGERPRINT_DISABLED ? null : decorationFingerprint(branch, project);
+        if (fingerprint != null && sameInstances(DECORATIONS.getIfPresent(project), fingerprint)) {
+            // nothing that we track has changed since we last decorated the project, but the final layer can touch
+            // anything so it is always applied
+            BulkChange bc = new BulkChange(project);
+            try {
+                List<BranchProperty> properties = new ArrayList<>(branch.getProperties());
+                properties.sort(DescriptorOrder.reverse(BranchProperty.class));
+                for (BranchProperty property : properties) {
+                    JobDecorator<P, R> decorator = property.jobDecorator((Class) project.getClass());
+                    if (decorator != null) {
+                        decorator.project(project);
+                    }
+                }
+            } finally {
+                bc.abort();
+            }
+            return project;
+        }
         // HACK ALERT
         // ==========
         // We don't want to trigger a save, so we will do some trickery to inject the new values
@@ -240,20 +292,18 @@ public abstract class BranchProjectFactory<P extends Job<P, R> & TopLevelItem,
                         DescribableList<BuildWrapper, Descriptor<BuildWrapper>> buildWrappersList = ((Project) project).getBuildWrappersList();
                         List<Publisher> publishers = ((ProjectDecorator) decorator).publishers(publishersList.toList());
                         List<BuildWrapper> buildWrappers = ((ProjectDecorator) decorator).buildWrappers(buildWrappersList.toList());
-                        publishersList.replaceBy(publishers);
-                        buildWrappersList.replaceBy(buildWrappers);
+                        if (!sameInstances(publishers, publishersList.toList())) {
+                            publishersList.replaceBy(publishers);
+                        }
+                        if (!sameInstances(buildWrappers, buildWrappersList.toList())) {
+                            buildWrappersList.replaceBy(buildWrappers);
+                        }
                     }
                     // we can always feed the job properties... but just not as easily as we'd like
 
+                    List<JobProperty<? super P>> current = new ArrayList<>(project.getAllProperties());
                     List<JobProperty<? super P>> jobProperties = decorator.jobProperties(project.getAllProperties());
-                    // HACK: need to replace all properties but no nice method... we will iterate our way through
-                    // both removal and addition
-                    for (JobProperty<? super P> p : project.getAllProperties()) {
-                        project.removeProperty(p);
-                    }
-                    for (JobProperty<? super P> p : jobProperties) {
-                        project.addProperty(p);
-                    }
+                    applyJobProperties(project, current, jobProperties);
 
                     // now apply the final layer
                     decorator.project(project);
@@ -264,9 +314,139 @@ public abstract class BranchProjectFactory<P extends Job<P, R> & TopLevelItem,
         } finally {
             bc.abort();
         }
+        if (fingerprint != null) {
+            List<Object> decorated = decorationFingerprint(branch, project);
+            Reference<?>[] references = new Reference<?>[decorated.size()];
+            for (int i = 0; i < references.length; i++) {
+                Object part = decorated.get(i);
+                references[i] = part == null ? null : new WeakReference<>(part);
+            }
+            DECORATIONS.put(project, references);
+        }
         return project;
     }
 
+    /**
+     * Replaces the job properties of a project with minimal churn: when the decorated list only removes some of the
+     * current properties and appends new ones, only those are removed and added, otherwise all the properties are
+     * replaced so that the decorated order is preserved.
+     *
+     * @param project       the project.
+     * @param current       the current job properties.
+     * @param jobProperties the decorated job properties.
+     * @throws IOException if the project could not be updated.
+     */
+    private void applyJobProperties(P project, List<JobProperty<? super P>> current,
+                                    List<JobProperty<? super P>> jobProperties) throws IOException {
+        if (sameInstances(current, jobProperties)) {
+            return;
+        }
+        List<JobProperty<? super P>> retained = new ArrayList<>(current.size());
+        List<JobProperty<? super P>> removed = new ArrayList<>();
+        for (JobProperty<? super P> p : current) {
+            if (containsInstance(jobProperties, p)) {
+                retained.add(p);
+            } else {
+                removed.add(p);
+            }
+        }
+        if (sameInstances(retained, jobProperties.subList(0, Math.min(retained.size(), jobProperties.size())))) {
+            for (JobProperty<? super P> p : removed) {
+                project.removeProperty(p);
+            }
+            for (JobProperty<? super P> p : jobProperties.subList(retained.size(), jobProperties.size())) {
+                project.addProperty(p);
+            }
+            return;
+        }
+        // HACK: need to replace all properties but no nice method... we will iterate our way through
+        // both removal and addition
+        for (JobProperty<? super P> p : current) {
+            project.removeProperty(p);
+        }
+        for (JobProperty<? super P> p : jobProperties) {
+            project.addProperty(p);
+        }
+    }
+
+    /**
+     * Checks whether two lists hold the same instances in the same order.
+     *
+     * @param a the first list.
+     * @param b the second list.
+     * @return {@code true} if the lists hold the same instances in the same order.
+     */
+    private static boolean sameInstances(List<?> a, List<?> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a recorded fingerprint still references exactly the instances of the current one.
+     *
+     * @param recorded the recorded fingerprint, if any.
+     * @param current  the current fingerprint.
+     * @return {@code true} if each recorded reference is still to the same instance.
+     */
+    private static boolean sameInstances(@CheckForNull Reference<?>[] recorded, List<Object> current) {
+        if (recorded == null || recorded.length != current.size()) {
+            return false;
+        }
+        for (int i = 0; i < recorded.length; i++) {
+            Object part = current.get(i);
+            if (recorded[i] == null ? part != null : part == null || recorded[i].get() != part) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsInstance(List<?> list, Object o) {
+        for (Object x : list) {
+            if (x == o) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the fingerprint of everything that {@link #decorate(Job)} reads and writes: the branch properties and
+     * their classes, the job properties, the build discarder and, for {@link Project}s, the publishers and build
+     * wrappers. Instances are compared by identity so comparing fingerprints is cheap.
+     *
+     * @param branch  the branch.
+     * @param project the project.
+     * @return the fingerprint, with {@code null} separating the lists.
+     */
+    @SuppressWarnings("rawtypes")
+    private static List<Object> decorationFingerprint(Branch branch, Job<?, ?> project) {
+        List<Object> parts = new ArrayList<>();
+        parts.add(project.getClass());
+        for (BranchProperty property : branch.getProperties()) {
+            parts.add(property);
+            parts.add(property.getClass());
+        }
+        parts.add(null);
+        parts.addAll(project.getAllProperties());
+        parts.add(null);
+        parts.add(project.getBuildDiscarder());
+        if (project instanceof Project) {
+            parts.add(null);
+            parts.addAll(((Project) project).getPublishersList().toList());
+            parts.add(null);
+            parts.addAll(((Project) project).getBuildWrappersList().toList());
+        }
+        return parts;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,378 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.branch;
+
+import static hudson.Functions.printStackTrace;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.init.Terminator;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.scm.api.SCMRevision;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Caches the last built and last seen {@link SCMRevision} of branch jobs so that observing an unchanged head does
+ * not need to go to disk, and defers writing changed revisions so that a burst of updates costs a single write.
+ * <p>
+ * Revisions waiting to be written are held outside the bounded cache so that they are never evicted, and are always
+ * consulted first. They are written by a timer, on shutdown, or when {@link #flush()} is called, and are discarded if
+ * the job is deleted in the meantime. A revision that cannot be written stays pending and is retried by the next
+ * flush, which reports the failure to its listener if it has one. If Jenkins stops abruptly the revisions recorded in
+ * the last {@link #WRITE_BEHIND_MILLIS} may be lost, which at worst causes a branch to be built again.
+ */
+@Restricted(NoExternalUse.class)
+final class BranchRevisionCache {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(BranchRevisionCache.class.getName());
+
+    /**
+     * The maximum number of branch jobs cached.
+     */
+    static final long MAX_SIZE =
+        SystemProperties.getLong(BranchRevisionCache.class.getName() + ".maxSize", 10000L);
+
+    /**
+     * How long, in milliseconds, changed revisions may wait before being written, {@code 0} to write immediately.
+     */
+    static /* not final */ long WRITE_BEHIND_MILLIS =
+        SystemProperties.getLong(BranchRevisionCache.class.getName() + ".writeBehindMillis", 5000L);
+
+    /**
+     * The cached revisions.
+     */
+    private static final Cache<Job<?, ?>, Revisions> CACHE = Caffeine.newBuilder()
+        .weakKeys()
+        .maximumSize(MAX_SIZE)
+        .build();
+
+    /**
+     * The revisions waiting to be written, guarded by itself.
+     */
+    private static final Map<Job<?, ?>, Map<BranchRevisionStore.Kind, Pending>> PENDING = new IdentityHashMap<>();
+
+    /**
+     * Serializes {@link #flush()}.
+     */
+    private static final Object FLUSH_LOCK = new Object();
+
+    /**
+     * Whether a flush has been scheduled, guarded by {@link #PENDING}.
+     */
+    private static boolean flushScheduled;
+
+    private BranchRevisionCache() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Reads a revision.
+     */
+    interface Reader {
+        /**
+         * Reads the revision from storage.
+         *
+         * @return the revision or {@code null}.
+         */
+        @CheckForNull
+        SCMRevision read();
+    }
+
+    /**
+     * Writes a revision.
+     */
+    interface Writer {
+        /**
+         * Writes the revision to storage.
+         *
+         * @param revision the revision or {@code null}.
+         * @throws IOException if the revision could not be written.
+         */
+        void write(@CheckForNull SCMRevision revision) throws IOException;
+    }
+
+    /**
+     * Gets a revision of a job.
+     *
+     * @param kind   the kind of revision.
+     * @param job    the job.
+     * @param reader reads the revision from storage on a cache miss.
+     * @return the revision or {@code null}.
+     */
+    @CheckForNull
+    static SCMRevision get(@NonNull BranchRevisionStore.Kind kind, @NonNull Job<?, ?> job, @NonNull Reader reader) {
+        synchronized (PENDING) {
+            Map<BranchRevisionStore.Kind, Pending> pending = PENDING.get(job);
+            Pending p = pending == null ? null : pending.get(kind);
+            if (p != null) {
+                return p.revision;
+            }
+        }
+        Revisions revisions = CACHE.get(job, k -> new Revisions());
+        synchronized (revisions) {
+            if (revisions.loaded.containsKey(kind)) {
+                return revisions.loaded.get(kind);
+            }
+        }
+        SCMRevision revision = reader.read();
+        synchronized (revisions) {
+            revisions.loaded.putIfAbsent(kind, revision);
+            return revisions.loaded.get(kind);
+        }
+    }
+
+    /**
+     * Sets a revision of a job.
+     *
+     * @param kind     the kind of revision.
+     * @param job      the job.
+     * @param revision the revision or {@code null}.
+     * @param writer   writes the revision to storage.
+     * @throws IOException if the revision was written immediately and could not be written, failures of deferred
+     *                     writes are reported by {@link #flush(TaskListener)} instead.
+     */
+    static void put(@NonNull BranchRevisionStore.Kind kind, @NonNull Job<?, ?> job,
+                    @CheckForNull SCMRevision revision, @NonNull Writer writer) throws IOException {
+        Revisions revisions = CACHE.get(job, k -> new Revisions());
+        long delay = WRITE_BEHIND_MILLIS;
+        if (delay <= 0L) {
+            try {
+                writer.write(revision);
+            } catch (IOException | RuntimeException e) {
+                synchronized (revisions) {
+                    // we no longer know what is on disk
+                    revisions.loaded.remove(kind);
+                }
+                throw e;
+            }
+            synchronized (revisions) {
+                revisions.loaded.put(kind, revision);
+            }
+            return;
+        }
+        synchronized (revisions) {
+            revisions.loaded.put(kind, revision);
+        }
+        synchronized (PENDING) {
+            PENDING.computeIfAbsent(job, k -> new EnumMap<>(BranchRevisionStore.Kind.class))
+                .put(kind, new Pending(revision, writer));
+            if (!flushScheduled) {
+                flushScheduled = true;
+                Timer.get().schedule(BranchRevisionCache::flush, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Writes all the pending revisions, logging any that could not be written.
+     */
+    @Terminator
+    public static void flush() {
+        flush(null);
+    }
+
+    /**
+     * Writes all the pending revisions. Revisions that could not be written are kept pending for the next flush, so
+     * that a transient failure does not lose them.
+     *
+     * @param listener the listener to report failures to or {@code null} to log them.
+     */
+    static void flush(@CheckForNull TaskListener listener) {
+        // serialize flushes so that an older revision can never overwrite a newer one
+        synchronized (FLUSH_LOCK) {
+            List<Map.Entry<Job<?, ?>, Map<BranchRevisionStore.Kind, Pending>>> work;
+            synchronized (PENDING) {
+                flushScheduled = false;
+                work = new ArrayList<>(PENDING.entrySet());
+                PENDING.clear();
+            }
+            write(work, listener);
+        }
+    }
+
+    /**
+     * Writes the pending revisions of some jobs, leaving those of other jobs to the timer.
+     *
+     * @param jobs     the jobs.
+     * @param listener the listener to report failures to or {@code null} to log them.
+     */
+    static void flush(@NonNull Collection<? extends Job<?, ?>> jobs, @CheckForNull TaskListener listener) {
+        if (jobs.isEmpty()) {
+            return;
+        }
+        synchronized (FLUSH_LOCK) {
+            List<Map.Entry<Job<?, ?>, Map<BranchRevisionStore.Kind, Pending>>> work = new ArrayList<>();
+            synchronized (PENDING) {
+                for (Job<?, ?> job : jobs) {
+                    Map<BranchRevisionStore.Kind, Pending> pending = PENDING.remove(job);
+                    if (pending != null) {
+                        work.add(new AbstractMap.SimpleImmutableEntry<>(job, pending));
+                    }
+                }
+            }
+            write(work, listener);
+        }
+    }
+
+    private static void write(@NonNull List<Map.Entry<Job<?, ?>, Map<BranchRevisionStore.Kind, Pending>>> work,
+                              @CheckForNull TaskListener listener) {
+        for (Map.Entry<Job<?, ?>, Map<BranchRevisionStore.Kind, Pending>> entry : work) {
+            Job<?, ?> job = entry.getKey();
+            for (Map.Entry<BranchRevisionStore.Kind, Pending> p : entry.getValue().entrySet()) {
+                try {
+                    p.getValue().writer.write(p.getValue().revision);
+                } catch (IOException | RuntimeException e) {
+                    String message = "Could not update last " + (p.getKey() == BranchRevisionStore.Kind.BUILT
+                        ? "revision hash of " : "seen revision hash of ") + job.getFullName();
+                    if (listener != null) {
+                        printStackTrace(e, listener.error(message));
+                    } else {
+                        LOGGER.log(Level.WARNING, message + ", will retry on the next flush", e);
+                    }
+                    requeue(job, p.getKey(), p.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts back a revision that could not be written, unless the job has since been deleted or a newer revision is
+     * waiting. The retry waits for the next flush rather than scheduling one, so that a persistent failure does not
+     * keep the timer busy.
+     *
+     * @param job     the job.
+     * @param kind    the kind of revision.
+     * @param pending the revision that could not be written.
+     */
+    private static void requeue(@NonNull Job<?, ?> job, @NonNull BranchRevisionStore.Kind kind,
+                                @NonNull Pending pending) {
+        // the item may be hidden from whoever is flushing, so look it up as the system
+        try (ACLContext as = ACL.as2(ACL.SYSTEM2)) {
+            if (job.getParent().getItem(job.getName()) != job) {
+                // deleted or replaced since it was changed
+                return;
+            }
+        }
+        synchronized (PENDING) {
+            PENDING.computeIfAbsent(job, k -> new EnumMap<>(BranchRevisionStore.Kind.class))
+                .putIfAbsent(kind, pending);
+        }
+    }
+
+    /**
+     * Forgets a job, discarding any pending writes.
+     *
+     * @param job the job.
+     */
+    static void invalidate(@NonNull Job<?, ?> job) {
+        synchronized (PENDING) {
+            PENDING.remove(job);
+        }
+        CACHE.invalidate(job);
+    }
+
+    /**
+     * The cached revisions of a job.
+     */
+    private static final class Revisions {
+        /**
+         * The revisions that have been read or written, a {@code null} value records a known absent revision.
+         */
+        private final Map<BranchRevisionStore.Kind, SCMRevision> loaded = new EnumMap<>(BranchRevisionStore.Kind.class);
+    }
+
+    /**
+     * A revision waiting to be written.
+     */
+    private static final class Pending {
+        private final SCMRevision revision;
+        private final Writer writer;
+
+        Pending(SCMRevision revision, Writer writer) {
+            this.revision = revision;
+            this.writer = writer;
+        }
+    }
+
+    /**
+     * Discards the revisions of deleted jobs.
+     */
+    @Extension
+    public static class ListenerImpl extends ItemListener {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onDeleted(Item item) {
+            if (item instanceof Job) {
+                invalidate((Job<?, ?>) item);
+            }
+            // the children of a deleted folder are not notified individually
+            String prefix = item.getFullName() + "/";
+            List<Job<?, ?>> children = new ArrayList<>();
+            synchronized (PENDING) {
+                for (Job<?, ?> job : PENDING.keySet()) {
+                    if (job.getFullName().startsWith(prefix)) {
+                        children.add(job);
+                    }
+                }
+            }
+            for (Job<?, ?> job : CACHE.asMap().keySet()) {
+                if (job.getFullName().startsWith(prefix)) {
+                    children.add(job);
+                }
+            }
+            for (Job<?, ?> job : children) {
+                invalidate(job);
+            }
+        }
+    }
+}
@@ -0,0 +1,457 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.branch;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Items;
+import hudson.model.Job;
+import hudson.model.listeners.ItemListener;
+import hudson.util.TextFile;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.scm.api.SCMRevision;
+import jenkins.util.SystemProperties;
+import org.apache.commons.io.FileUtils;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Stores the last built and last seen {@link SCMRevision} of every branch job of a {@link MultiBranchProject} in a
+ * single append-only log in the project's root directory, rather than in two XML files in every branch job directory.
+ * <p>
+ * Each record is one line: {@code <kind> <encoded branch name> <revision>} where the kind is {@code B} for the last
+ * built revision and {@code S} for the last seen revision, the name and the XStream form of the revision are base64
+ * encoded and {@code -} stands for no revision. Later records supersede earlier ones and the log is compacted once it
+ * holds more than twice as many records as there are live entries.
+ * <p>
+ * Branches without an entry fall back to the legacy {@code scm-revision-hash.xml} and
+ * {@code scm-last-seen-revision-hash.xml} files, whose content is then migrated into the log. The legacy files are
+ * left in place so that a downgrade sees at worst a stale revision. If the log cannot be read the legacy files are
+ * used for the rest of the session.
+ */
+@Restricted(NoExternalUse.class)
+class BranchRevisionStore {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(BranchRevisionStore.class.getName());
+
+    /**
+     * Set to {@code true} to keep using the legacy per-job files.
+     */
+    static /* not final */ boolean DISABLED =
+        SystemProperties.getBoolean(BranchRevisionStore.class.getName() + ".disabled", false);
+
+    /**
+     * The name of the log file in the project's root directory.
+     */
+    static final String FILE_NAME = "revisions.log";
+
+    /**
+     * The minimum number of records before the log is considered for compaction.
+     */
+    private static final int COMPACTION_THRESHOLD = 1000;
+
+    /**
+     * Marks a known absent revision.
+     */
+    private static final String ABSENT = "-";
+
+    /**
+     * The kinds of revision.
+     */
+    enum Kind {
+        /**
+         * The revision last built.
+         */
+        BUILT('B', "scm-revision-hash.xml"),
+        /**
+         * The revision last seen.
+         */
+        SEEN('S', "scm-last-seen-revision-hash.xml");
+
+        private final char code;
+        private final String legacyFileName;
+
+        Kind(char code, String legacyFileName) {
+            this.code = code;
+            this.legacyFileName = legacyFileName;
+        }
+
+        @CheckForNull
+        static Kind of(char code) {
+            for (Kind k : values()) {
+                if (k.code == code) {
+                    return k;
+                }
+            }
+            return null;
+        }
+
+        @NonNull
+        File legacyFile(@NonNull Job<?, ?> job) {
+            return new File(job.getRootDir(), legacyFileName);
+        }
+    }
+
+    /**
+     * The log file.
+     */
+    @NonNull
+    private final File file;
+
+    /**
+     * The XStream form of the revisions, keyed by kind then encoded branch name, where a {@code null} value records
+     * a known absent revision. {@code null} until loaded.
+     */
+    private Map<Kind, Map<String, String>> entries;
+
+    /**
+     * The number of records in the log.
+     */
+    private int records;
+
+    /**
+     * Set if the log could not be read, in which case the legacy files are used.
+     */
+    private boolean broken;
+
+    /**
+     * Constructor.
+     *
+     * @param rootDir the root directory of the project.
+     */
+    BranchRevisionStore(@NonNull File rootDir) {
+        this.file = new File(rootDir, FILE_NAME);
+    }
+
+    /**
+     * Checks if this store belongs to the project with the supplied root directory.
+     *
+     * @param rootDir the root directory of the project.
+     * @return {@code true} if this store keeps its log in the supplied directory.
+     */
+    boolean isFor(@NonNull File rootDir) {
+        return rootDir.equals(file.getParentFile());
+    }
+
+    /**
+     * Returns the store of the project's parent if the project is a branch job of a {@link MultiBranchProject}.
+     *
+     * @param job the branch job.
+     * @return the store or {@code null} if the legacy files should be used.
+     */
+    @CheckForNull
+    static BranchRevisionStore of(@NonNull Job<?, ?> job) {
+        if (DISABLED) {
+            return null;
+        }
+        ItemGroup<?> parent = job.getParent();
+        return parent instanceof MultiBranchProject ? ((MultiBranchProject<?, ?>) parent).getRevisionStore() : null;
+    }
+
+    /**
+     * Gets a revision of a branch job.
+     *
+     * @param kind the kind of revision.
+     * @param job  the branch job.
+     * @return the revision or {@code null}.
+     */
+    @CheckForNull
+    SCMRevision get(@NonNull Kind kind, @NonNull Job<?, ?> job) {
+        String xml;
+        synchronized (this) {
+            Map<String, String> map = load() ? entries.get(kind) : null;
+            if (map == null) {
+                return readLegacy(kind, job);
+            }
+            if (map.containsKey(job.getName())) {
+                xml = map.get(job.getName());
+            } else {
+                xml = migrate(kind, job);
+            }
+        }
+        if (xml == null) {
+            return null;
+        }
+        try {
+            return (SCMRevision) Items.XSTREAM2.fromXML(xml);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, "Could not read " + kind + " revision of " + job.getFullName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Sets a revision of a branch job.
+     *
+     * @param kind     the kind of revision.
+     * @param job      the branch job.
+     * @param revision the revision or {@code null}.
+     * @throws IOException if the revision could not be persisted.
+     */
+    void set(@NonNull Kind kind, @NonNull Job<?, ?> job, @CheckForNull SCMRevision revision) throws IOException {
+        String xml = revision == null ? null : Items.XSTREAM2.toXML(revision);
+        synchronized (this) {
+            Map<String, String> map = load() ? entries.get(kind) : null;
+            if (map == null) {
+                new XmlFile(kind.legacyFile(job)).write(revision);
+                return;
+            }
+            String name = job.getName();
+            if (map.containsKey(name) && Objects.equals(map.get(name), xml)) {
+                return;
+            }
+            map.put(name, xml);
+            append(kind, name, xml);
+        }
+    }
+
+    /**
+     * Forgets all the revisions of a branch job, to be called when the job is deleted.
+     *
+     * @param name the encoded branch name.
+     */
+    synchronized void remove(@NonNull String name) {
+        if (!load()) {
+            return;
+        }
+        for (Kind kind : Kind.values()) {
+            Map<String, String> map = entries.get(kind);
+            if (map.remove(name) != null) {
+                try {
+                    // record the absence so that we do not fall back to stale legacy files after a restart
+                    append(kind, name, null);
+                    map.put(name, null);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Could not update " + file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the revisions of a branch job, to be called when the job is renamed.
+     *
+     * @param oldName the old encoded branch name.
+     * @param newName the new encoded branch name.
+     */
+    synchronized void rename(@NonNull String oldName, @NonNull String newName) {
+        if (!load()) {
+            return;
+        }
+        for (Kind kind : Kind.values()) {
+            Map<String, String> map = entries.get(kind);
+            if (map.containsKey(oldName)) {
+                String xml = map.remove(oldName);
+                map.put(newName, xml);
+                try {
+                    append(kind, oldName, null);
+                    append(kind, newName, xml);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Could not update " + file, e);
+                }
+            }
+        }
+    }
+
+    @CheckForNull
+    private static SCMRevision readLegacy(@NonNull Kind kind, @NonNull Job<?, ?> job) {
+        try {
+            return (SCMRevision) new XmlFile(kind.legacyFile(job)).read();
+        } catch (IOException e) {
+            // ignore
+        }
+        return null;
+    }
+
+    @CheckForNull
+    private String migrate(@NonNull Kind kind, @NonNull Job<?, ?> job) {
+        File legacy = kind.legacyFile(job);
+        String xml = null;
+        if (legacy.isFile()) {
+            SCMRevision revision = readLegacy(kind, job);
+            xml = revision == null ? null : Items.XSTREAM2.toXML(revision);
+        }
+        entries.get(kind).put(job.getName(), xml);
+        try {
+            append(kind, job.getName(), xml);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not migrate " + legacy, e);
+        }
+        return xml;
+    }
+
+    /**
+     * Loads the log if not already loaded.
+     *
+     * @return {@code false} if the log is unusable.
+     */
+    private boolean load() {
+        if (broken) {
+            return false;
+        }
+        if (entries != null) {
+            return true;
+        }
+        Map<Kind, Map<String, String>> loaded = new HashMap<>();
+        for (Kind kind : Kind.values()) {
+            loaded.put(kind, new HashMap<>());
+        }
+        int count = 0;
+        if (file.isFile()) {
+            try (BufferedReader r = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = r.readLine()) != null) {
+                    String[] parts = line.split(" ");
+                    Kind kind = parts.length == 3 && parts[0].length() == 1 ? Kind.of(parts[0].charAt(0)) : null;
+                    if (kind == null) {
+                        // most likely a torn write at the end of the log
+                        LOGGER.log(Level.FINE, "Ignoring malformed record in {0}", file);
+                        continue;
+                    }
+                    try {
+                        loaded.get(kind).put(decode(parts[1]), ABSENT.equals(parts[2]) ? null : decode(parts[2]));
+                    } catch (IllegalArgumentException e) {
+                        LOGGER.log(Level.FINE, "Ignoring malformed record in {0}", file);
+                        continue;
+                    }
+                    count++;
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not read " + file + ", falling back to per-branch files", e);
+                broken = true;
+                return false;
+            }
+        }
+        entries = loaded;
+        records = count;
+        return true;
+    }
+
+    private void append(@NonNull Kind kind, @NonNull String name, @CheckForNull String xml) throws IOException {
+        FileUtils.forceMkdir(file.getParentFile());
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            out.write(record(kind, name, xml).getBytes(StandardCharsets.UTF_8));
+        }
+        records++;
+        int live = 0;
+        for (Map<String, String> map : entries.values()) {
+            live += map.size();
+        }
+        if (records > COMPACTION_THRESHOLD && records > 2 * live) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the log with only the live entries.
+     *
+     * @throws IOException if the log could not be rewritten.
+     */
+    private void compact() throws IOException {
+        StringBuilder b = new StringBuilder();
+        int count = 0;
+        for (Map.Entry<Kind, Map<String, String>> e : entries.entrySet()) {
+            for (Map.Entry<String, String> entry : e.getValue().entrySet()) {
+                b.append(record(e.getKey(), entry.getKey(), entry.getValue()));
+                count++;
+            }
+        }
+        new TextFile(file).write(b.toString());
+        LOGGER.log(Level.FINE, "Compacted {0} from {1} to {2} records", new Object[]{file, records, count});
+        records = count;
+    }
+
+    private static String record(@NonNull Kind kind, @NonNull String name, @CheckForNull String xml) {
+        return kind.code + " " + encode(name) + " " + (xml == null ? ABSENT : encode(xml)) + "\n";
+    }
+
+    private static String encode(String s) {
+        return Base64.getEncoder().encodeToString(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String s) {
+        return new String(Base64.getDecoder().decode(s), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Keeps the stores in step with the lifecycle of the branch jobs.
+     */
+    @Extension
+    public static class ListenerImpl extends ItemListener {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onCreated(Item item) {
+            // a new job must never inherit the revisions of a previous job with the same name
+            onDeleted(item);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onDeleted(Item item) {
+            if (item instanceof Job && item.getParent() instanceof MultiBranchProject && !DISABLED) {
+                ((MultiBranchProject<?, ?>) item.getParent()).getRevisionStore().remove(item.getName());
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            if (item instanceof Job && item.getParent() instanceof MultiBranchProject && !DISABLED) {
+                String oldName = oldFullName.substring(oldFullName.lastIndexOf('/') + 1);
+                if (!oldName.equals(item.getName())
+                    && newFullName.substring(0, newFullName.lastIndexOf('/') + 1)
+                    .equals(oldFullName.substring(0, oldFullName.lastIndexOf('/') + 1))) {
+                    ((MultiBranchProject<?, ?>) item.getParent()).getRevisionStore().rename(oldName, item.getName());
+                }
+            }
+        }
+    }
+}
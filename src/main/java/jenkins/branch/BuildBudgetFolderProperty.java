@@ -0,0 +1,465 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import com.cloudbees.hudson.plugins.folder.AbstractFolder;
+import com.cloudbees.hudson.plugins.folder.AbstractFolderProperty;
+import com.cloudbees.hudson.plugins.folder.AbstractFolderPropertyDescriptor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.queue.CauseOfBlockage;
+import hudson.model.queue.QueueListener;
+import hudson.model.queue.QueueTaskDispatcher;
+import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.scm.api.metadata.PrimaryInstanceMetadataAction;
+import jenkins.util.SystemProperties;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+/**
+ * Limits how many builds all the branch projects of a {@link MultiBranchProject}, or of all the multibranch projects
+ * of an {@link OrganizationFolder}, can start within a time period, where builds of primary branches go first when
+ * builds are scarce.
+ * <p>
+ * Where {@link RateLimitBranchProperty} throttles each branch project on its own, this budget is shared: every build
+ * start of any branch project takes one build from it and it earns them back at the configured rate, up to the
+ * configured number of builds. When both the multibranch project and its organization folder have a budget, a build
+ * needs one from each. While builds of primary branches are ready to start, a share of the budget is kept for them and
+ * the other branch projects only get the builds above that share.
+ */
+public class BuildBudgetFolderProperty extends AbstractFolderProperty<AbstractFolder<?>> {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(BuildBudgetFolderProperty.class.getName());
+
+    /**
+     * The budgets of the folders, held weakly so that they go away with the folder instance.
+     */
+    private static final Cache<AbstractFolder<?>, Budget> BUDGETS = Caffeine.newBuilder().weakKeys().build();
+
+    /**
+     * The percentage of the budget kept for the builds of primary branches that are ready to start, {@code 0} lets
+     * every build compete for the budget on an equal footing.
+     */
+    static /* not final */ int PRIMARY_RESERVE_PERCENT =
+        SystemProperties.getInteger(BuildBudgetFolderProperty.class.getName() + ".primaryReservePercent", 25);
+
+    /**
+     * The maximum builds within the duration.
+     */
+    private final int count;
+
+    /**
+     * The name of the duration.
+     */
+    private final String durationName;
+
+    /**
+     * Constructor.
+     *
+     * @param count        the maximum builds within the duration.
+     * @param durationName the name of the duration.
+     */
+    @DataBoundConstructor
+    public BuildBudgetFolderProperty(int count, String durationName) {
+        this.count = Math.min(Math.max(1, count), 100000);
+        this.durationName = durationName == null || !RateLimitBranchProperty.DURATIONS.containsKey(durationName)
+                ? "hour"
+                : durationName;
+    }
+
+    /**
+     * Gets the maximum builds within the duration.
+     *
+     * @return the maximum builds within the duration.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the duration name.
+     *
+     * @return the duration name.
+     */
+    public String getDurationName() {
+        return durationName;
+    }
+
+    /**
+     * Returns the time it takes to earn back one build.
+     *
+     * @return the time it takes to earn back one build.
+     */
+    public long getMillisecondsBetweenBuilds() {
+        Long duration = RateLimitBranchProperty.DURATIONS.get(durationName);
+        return (duration == null ? TimeUnit.HOURS.toMillis(1) : duration) / Math.max(1, count);
+    }
+
+    /**
+     * Returns the folders whose budgets apply to a branch project.
+     *
+     * @param job the branch project.
+     * @return the folders that have a budget, closest first.
+     */
+    @NonNull
+    private static List<AbstractFolder<?>> budgetFolders(@NonNull Job<?, ?> job) {
+        List<AbstractFolder<?>> result = new ArrayList<>(2);
+        ItemGroup<?> parent = job.getParent();
+        if (parent instanceof MultiBranchProject) {
+            MultiBranchProject<?, ?> project = (MultiBranchProject<?, ?>) parent;
+            if (project.getProperties().get(BuildBudgetFolderProperty.class) != null) {
+                result.add(project);
+            }
+            if (project.getParent() instanceof OrganizationFolder) {
+                OrganizationFolder folder = (OrganizationFolder) project.getParent();
+                if (folder.getProperties().get(BuildBudgetFolderProperty.class) != null) {
+                    result.add(folder);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the budget of a folder.
+     *
+     * @param folder the folder.
+     * @return the budget.
+     */
+    @NonNull
+    private static Budget budget(@NonNull AbstractFolder<?> folder) {
+        return BUDGETS.get(folder, f -> new Budget(
+                f.getProperties().get(BuildBudgetFolderProperty.class).getCount(), System.currentTimeMillis()));
+    }
+
+    /**
+     * Returns {@code true} if the job is the branch project of a primary branch.
+     *
+     * @param job the job.
+     * @return {@code true} if the job is the branch project of a primary branch.
+     */
+    private static boolean isPrimary(@NonNull Job<?, ?> job) {
+        return job.getAction(PrimaryInstanceMetadataAction.class) != null;
+    }
+
+    /**
+     * The in-memory state of the budget of a folder.
+     * <p>
+     * A queue item only spends a build when it starts. Until then the items that the budget let through and that
+     * became buildable are holding a build, so that the budget is not promised to more items than it has builds for.
+     */
+    static final class Budget {
+        /**
+         * The available builds, including those held by {@link #holding}.
+         */
+        private double tokens;
+        /**
+         * When {@link #tokens} was last refilled.
+         */
+        private long lastRefill;
+        /**
+         * The ids of the primary branch queue items that are ready to start but do not hold a build yet.
+         */
+        private final Set<Long> competing = new HashSet<>();
+        /**
+         * The ids of the queue items that became buildable with a build of the budget but have not started yet.
+         */
+        private final Set<Long> holding = new HashSet<>();
+
+        /**
+         * Constructor.
+         *
+         * @param tokens the available builds.
+         * @param now    the current time.
+         */
+        Budget(double tokens, long now) {
+            this.tokens = tokens;
+            this.lastRefill = now;
+        }
+
+        private void refill(long now, int count, long betweenBuilds) {
+            if (betweenBuilds <= 0L) {
+                tokens = count;
+            } else if (now > lastRefill) {
+                tokens = Math.min(count, tokens + (double) (now - lastRefill) / betweenBuilds);
+            } else {
+                tokens = Math.min(count, tokens);
+            }
+            lastRefill = Math.max(lastRefill, now);
+        }
+
+        /**
+         * Returns the number of builds kept for the primary branch queue items that are ready to start.
+         *
+         * @param count the maximum builds within the duration.
+         * @return the number of builds kept for primary branches.
+         */
+        private int reserve(int count) {
+            if (competing.isEmpty() || PRIMARY_RESERVE_PERCENT <= 0) {
+                return 0;
+            }
+            return Math.min(competing.size(),
+                    Math.max(1, (int) Math.ceil(count * Math.min(100, PRIMARY_RESERVE_PERCENT) / 100.0)));
+        }
+
+        /**
+         * Checks whether a queue item could start as far as the budget is concerned, without spending anything.
+         *
+         * @param id            the queue item id.
+         * @param primary       {@code true} if the item builds a primary branch.
+         * @param now           the current time.
+         * @param count         the maximum builds within the duration.
+         * @param betweenBuilds the time it takes to earn back one build.
+         * @return {@code 0} if the item can start, a negative value if the builds left are kept for primary branches
+         * or else the milliseconds until a build is available.
+         */
+        synchronized long check(long id, boolean primary, long now, int count, long betweenBuilds) {
+            refill(now, count, betweenBuilds);
+            boolean held = holding.contains(id);
+            if (primary && !held) {
+                competing.add(id);
+            }
+            // the queue checks buildable items again, they count on the build they hold
+            double available = tokens - holding.size() + (held ? 1.0 : 0.0);
+            if (available >= 1.0 + (primary ? 0 : reserve(count))) {
+                return 0L;
+            }
+            if (available >= 1.0) {
+                return -1L;
+            }
+            return Math.max(1L, (long) Math.ceil((1.0 - available) * betweenBuilds));
+        }
+
+        /**
+         * Records that a queue item became buildable, so it holds a build until it starts or goes back to waiting.
+         *
+         * @param id the queue item id.
+         */
+        synchronized void hold(long id) {
+            holding.add(id);
+            competing.remove(id);
+        }
+
+        /**
+         * Records that a queue item went back to waiting or to being blocked, by the budget or by anything else.
+         *
+         * @param id the queue item id.
+         */
+        synchronized void release(long id) {
+            holding.remove(id);
+        }
+
+        /**
+         * Records that a queue item has left the queue, which spends its build if it started.
+         *
+         * @param id        the queue item id.
+         * @param cancelled {@code true} if the item was cancelled rather than started.
+         */
+        synchronized void left(long id, boolean cancelled) {
+            if (holding.remove(id) && !cancelled) {
+                tokens -= 1.0;
+            }
+            competing.remove(id);
+        }
+    }
+
+    /**
+     * Our descriptor.
+     */
+    @Extension
+    @Symbol("buildBudget")
+    public static class DescriptorImpl extends AbstractFolderPropertyDescriptor {
+
+        /**
+         * {@inheritDoc}
+         */
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return Messages.BuildBudgetFolderProperty_DisplayName();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isApplicable(Class<? extends AbstractFolder> containerType) {
+            return MultiBranchProject.class.isAssignableFrom(containerType)
+                    || OrganizationFolder.class.isAssignableFrom(containerType);
+        }
+
+        /**
+         * Fill the duration names.
+         *
+         * @return the duration names.
+         */
+        @SuppressWarnings("unused") // by stapler
+        public ListBoxModel doFillDurationNameItems() {
+            return Jenkins.get().getDescriptorByType(RateLimitBranchProperty.JobPropertyImpl.DescriptorImpl.class)
+                    .doFillDurationNameItems();
+        }
+
+        /**
+         * Check the count.
+         *
+         * @param value        the count.
+         * @param durationName the duration name.
+         * @return the form validation.
+         */
+        @SuppressWarnings("unused") // by stapler
+        public FormValidation doCheckCount(@QueryParameter int value, @QueryParameter String durationName) {
+            return Jenkins.get().getDescriptorByType(RateLimitBranchProperty.JobPropertyImpl.DescriptorImpl.class)
+                    .doCheckCount(value, durationName);
+        }
+    }
+
+    /**
+     * Blocks branch builds while a budget is exhausted.
+     */
+    @Extension
+    @SuppressWarnings("unused") // instantiated by Jenkins
+    public static class QueueTaskDispatcherImpl extends QueueTaskDispatcher {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public CauseOfBlockage canRun(Queue.Item item) {
+            if (!(item.task instanceof Job)) {
+                return null;
+            }
+            Job<?, ?> job = (Job<?, ?>) item.task;
+            List<AbstractFolder<?>> folders = budgetFolders(job);
+            if (folders.isEmpty()) {
+                return null;
+            }
+            // the queue only asks once the quiet period is over and nothing about the task itself blocks it
+            boolean primary = isPrimary(job);
+            long now = System.currentTimeMillis();
+            for (AbstractFolder<?> folder : folders) {
+                BuildBudgetFolderProperty property = folder.getProperties().get(BuildBudgetFolderProperty.class);
+                long delay = budget(folder).check(item.getId(), primary, now, property.getCount(),
+                        property.getMillisecondsBetweenBuilds());
+                if (delay < 0L) {
+                    LOGGER.log(Level.FINE, "{0} with queue id {1} waits for primary branches of {2}",
+                            new Object[]{job.getFullName(), item.getId(), folder.getFullName()});
+                    return CauseOfBlockage.fromMessage(
+                            Messages._BuildBudgetFolderProperty_PrimaryFirst(folder.getFullDisplayName()));
+                }
+                if (delay > 0L) {
+                    LOGGER.log(Level.FINE, "{0} with queue id {1} waits {2}ms for the build budget of {3}",
+                            new Object[]{job.getFullName(), item.getId(), delay, folder.getFullName()});
+                    return CauseOfBlockage.fromMessage(Messages._BuildBudgetFolderProperty_BuildBlocked(
+                            folder.getFullDisplayName(),
+                            new Date(now + delay)));
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Keeps the budgets up to date with the queue.
+     */
+    @Extension
+    @SuppressWarnings("unused") // instantiated by Jenkins
+    public static class QueueListenerImpl extends QueueListener {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onEnterBuildable(Queue.BuildableItem bi) {
+            // every dispatcher let the item through, so it will start unless something changes
+            if (bi.task instanceof Job) {
+                for (AbstractFolder<?> folder : budgetFolders((Job<?, ?>) bi.task)) {
+                    budget(folder).hold(bi.getId());
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onEnterBlocked(Queue.BlockedItem bi) {
+            release(bi);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onEnterWaiting(Queue.WaitingItem wi) {
+            release(wi);
+        }
+
+        private static void release(Queue.Item item) {
+            if (item.task instanceof Job) {
+                for (Budget budget : BUDGETS.asMap().values()) {
+                    budget.release(item.getId());
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onLeft(Queue.LeftItem li) {
+            if (!(li.task instanceof Job)) {
+                return;
+            }
+            // go by what the budgets recorded for the item, the configuration may have changed since
+            for (Map.Entry<AbstractFolder<?>, Budget> entry : BUDGETS.asMap().entrySet()) {
+                if (entry.getKey().getProperties().get(BuildBudgetFolderProperty.class) == null) {
+                    // the budget was removed, a new one starts afresh
+                    BUDGETS.invalidate(entry.getKey());
+                } else {
+                    entry.getValue().left(li.getId(), li.isCancelled());
+                }
+            }
+        }
+    }
+}
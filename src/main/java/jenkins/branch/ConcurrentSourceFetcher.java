@@ -0,0 +1,237 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.branch;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.ClassLoaderSanityThreadFactory;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.ExceptionCatchingThreadFactory;
+import hudson.util.NamingThreadFactory;
+import hudson.util.StreamTaskListener;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import jenkins.model.Jenkins;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMHeadObserver;
+import jenkins.scm.api.SCMRevision;
+import jenkins.scm.api.SCMSource;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.springframework.security.core.Authentication;
+
+/**
+ * Fetches the heads of several {@link SCMSource} instances concurrently, so that indexing a project with several
+ * sources takes as long as the slowest source rather than the sum of all of them.
+ * <p>
+ * The heads reported by each source are recorded and then replayed into the real observers one source at a time in
+ * priority order, exactly as if the sources had been fetched sequentially, so that the priority and takeover rules
+ * give the same result. The log output of each fetch is buffered and copied to the indexing log in the same order.
+ */
+@Restricted(NoExternalUse.class)
+class ConcurrentSourceFetcher {
+
+    /**
+     * The maximum number of sources fetched concurrently across all projects. Values less than {@code 2} disable
+     * concurrent fetching.
+     */
+    static /* not final */ int PARALLELISM =
+        SystemProperties.getInteger(MultiBranchProject.class.getName() + ".sourceFetchParallelism", 1);
+
+    /**
+     * The executor, created on first use.
+     */
+    private static ExecutorService executorService;
+
+    /**
+     * Supplies the observer for a source.
+     */
+    interface ObserverFactory {
+        /**
+         * Creates the observer for a source.
+         *
+         * @param source the source.
+         * @return the observer.
+         */
+        @NonNull
+        SCMHeadObserver create(@NonNull SCMSource source);
+    }
+
+    /**
+     * Returns {@code true} if concurrent fetching is enabled.
+     *
+     * @return {@code true} if concurrent fetching is enabled.
+     */
+    static boolean isEnabled() {
+        return PARALLELISM > 1;
+    }
+
+    private static synchronized ExecutorService executorService() {
+        if (executorService == null) {
+            ThreadPoolExecutor tpe = new ThreadPoolExecutor(PARALLELISM, PARALLELISM, 10L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ExceptionCatchingThreadFactory(
+                    new NamingThreadFactory(
+                        new ClassLoaderSanityThreadFactory(new DaemonThreadFactory()),
+                        "MultiBranchProject.sourceFetch")));
+            tpe.allowCoreThreadTimeOut(true);
+            executorService = tpe;
+        }
+        return executorService;
+    }
+
+    /**
+     * Fetches the heads of all the sources concurrently and then replays them in order.
+     *
+     * @param sources  the sources in priority order.
+     * @param listener the indexing listener.
+     * @param factory  supplies the observer for each source.
+     * @param pool     the pool that the observers submit to, which is drained after each source is replayed.
+     * @throws IOException          if a source could not be fetched.
+     * @throws InterruptedException if interrupted.
+     */
+    static void fetch(@NonNull List<SCMSource> sources, @NonNull TaskListener listener,
+                      @NonNull ObserverFactory factory, @CheckForNull HeadObservationPool pool)
+        throws IOException, InterruptedException {
+        Authentication auth = Jenkins.getAuthentication2();
+        List<Fetch> fetches = new ArrayList<>(sources.size());
+        try {
+            for (SCMSource source : sources) {
+                Fetch fetch = new Fetch(source);
+                fetch.future = executorService().submit(() -> {
+                    try (ACLContext ctx = ACL.as2(auth)) {
+                        fetch.run();
+                    }
+                    return null;
+                });
+                fetches.add(fetch);
+            }
+            for (Fetch fetch : fetches) {
+                Throwable failure = fetch.await();
+                listener.getLogger().print(fetch.log.toString(StandardCharsets.UTF_8));
+                try {
+                    if (failure != null) {
+                        throw rethrow(failure);
+                    }
+                    fetch.recorder.replay(factory.create(fetch.source));
+                    if (pool != null) {
+                        pool.awaitCompletion();
+                    }
+                } catch (IOException | InterruptedException | RuntimeException e) {
+                    listener.error("[%tc] Could not fetch branches from source %s",
+                        System.currentTimeMillis(), fetch.source.getId());
+                    throw e;
+                }
+            }
+        } finally {
+            for (Fetch fetch : fetches) {
+                // no-op unless we are bailing out early
+                fetch.future.cancel(true);
+            }
+        }
+    }
+
+    private static IOException rethrow(Throwable failure) throws InterruptedException {
+        if (failure instanceof IOException) {
+            return (IOException) failure;
+        }
+        if (failure instanceof InterruptedException) {
+            throw (InterruptedException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        return new IOException(failure);
+    }
+
+    /**
+     * The fetch of a single source.
+     */
+    private static final class Fetch {
+        private final SCMSource source;
+        private final RecordingObserver recorder = new RecordingObserver();
+        private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+        private Future<?> future;
+
+        Fetch(SCMSource source) {
+            this.source = source;
+        }
+
+        void run() throws IOException, InterruptedException {
+            try (StreamTaskListener listener = new StreamTaskListener(log, StandardCharsets.UTF_8)) {
+                source.fetch(recorder, listener);
+            }
+        }
+
+        @CheckForNull
+        Throwable await() throws InterruptedException {
+            try {
+                future.get();
+                return null;
+            } catch (ExecutionException e) {
+                return e.getCause() != null ? e.getCause() : e;
+            }
+        }
+    }
+
+    /**
+     * Records the observed heads so that they can be replayed later.
+     */
+    private static final class RecordingObserver extends SCMHeadObserver {
+        private final List<SCMHead> heads = new ArrayList<>();
+        private final List<SCMRevision> revisions = new ArrayList<>();
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void observe(@NonNull SCMHead head, @NonNull SCMRevision revision) {
+            heads.add(head);
+            revisions.add(revision);
+        }
+
+        void replay(@NonNull SCMHeadObserver observer) throws IOException, InterruptedException {
+            for (int i = 0; i < heads.size() && observer.isObserving(); i++) {
+                observer.observe(heads.get(i), revisions.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.branch;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.ClassLoaderSanityThreadFactory;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.ExceptionCatchingThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.springframework.security.core.Authentication;
+
+/**
+ * Runs the observation of individual heads concurrently during branch indexing.
+ * <p>
+ * At most {@link #PARALLELISM} heads are in flight per pool, the submitting thread blocks when that limit is reached,
+ * and observations of the same encoded branch name are serialized. {@link #awaitCompletion()} must be called after
+ * every source has been fetched so that the heads of a higher priority source are fully observed before a lower
+ * priority source is considered.
+ */
+@Restricted(NoExternalUse.class)
+class HeadObservationPool {
+
+    /**
+     * The number of heads observed concurrently by each indexing, values less than {@code 2} observe heads
+     * sequentially on the indexing thread.
+     */
+    static /* not final */ int PARALLELISM =
+        SystemProperties.getInteger(MultiBranchProject.class.getName() + ".headObservationParallelism", 1);
+
+    /**
+     * The shared executor, created on first use.
+     */
+    private static ExecutorService executorService;
+
+    /**
+     * Limits the number of heads in flight.
+     */
+    private final Semaphore permits;
+
+    /**
+     * The authentication of the indexing thread.
+     */
+    private final Authentication auth;
+
+    /**
+     * The locks of the encoded branch names.
+     */
+    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+
+    /**
+     * The first failure since the last {@link #awaitCompletion()}.
+     */
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    /**
+     * The observations that have not completed, an observation only leaves once it is no longer running.
+     */
+    private final Set<FutureTask<Void>> inFlight = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Constructor.
+     *
+     * @param parallelism the maximum number of heads in flight.
+     */
+    HeadObservationPool(int parallelism) {
+        this.permits = new Semaphore(parallelism);
+        this.auth = Jenkins.getAuthentication2();
+    }
+
+    /**
+     * Creates a pool if concurrent head observation is enabled.
+     *
+     * @return the pool or {@code null} if heads should be observed sequentially.
+     */
+    @CheckForNull
+    static HeadObservationPool create() {
+        int parallelism = PARALLELISM;
+        return parallelism > 1 ? new HeadObservationPool(parallelism) : null;
+    }
+
+    private static synchronized ExecutorService executorService() {
+        if (executorService == null) {
+            int threads = Math.max(2, PARALLELISM);
+            ThreadPoolExecutor tpe = new ThreadPoolExecutor(threads, threads, 10L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ExceptionCatchingThreadFactory(
+                    new NamingThreadFactory(
+                        new ClassLoaderSanityThreadFactory(new DaemonThreadFactory()),
+                        "MultiBranchProject.headObservation")));
+            tpe.allowCoreThreadTimeOut(true);
+            executorService = tpe;
+        }
+        return executorService;
+    }
+
+    /**
+     * Submits the observation of a head.
+     *
+     * @param encodedName the encoded branch name.
+     * @param task        the observation.
+     * @throws InterruptedException if interrupted while waiting for a free slot.
+     */
+    void submit(@NonNull String encodedName, @NonNull Task task) throws InterruptedException {
+        permits.acquire();
+        // whoever sets this first, the observation itself or a cancellation before it started, completes it
+        AtomicBoolean started = new AtomicBoolean();
+        AtomicReference<FutureTask<Void>> self = new AtomicReference<>();
+        FutureTask<Void> future = new FutureTask<Void>(() -> {
+            if (!started.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                if (failure.get() != null) {
+                    // fail fast, the indexing is going to fail anyway
+                    return null;
+                }
+                try (ACLContext ctx = ACL.as2(auth)) {
+                    ReentrantLock lock = locks.computeIfAbsent(encodedName, k -> new ReentrantLock());
+                    lock.lockInterruptibly();
+                    try {
+                        task.run();
+                    } finally {
+                        lock.unlock();
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                }
+                return null;
+            } finally {
+                completed(self.get());
+            }
+        }) {
+            @Override
+            protected void done() {
+                // a cancelled future is done as soon as it is interrupted, while the observation may still run
+                if (started.compareAndSet(false, true)) {
+                    completed(this);
+                }
+            }
+        };
+        self.set(future);
+        synchronized (this) {
+            inFlight.add(future);
+        }
+        try {
+            executorService().execute(future);
+        } catch (RuntimeException e) {
+            future.cancel(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Records that an observation is no longer running.
+     *
+     * @param future the observation.
+     */
+    private void completed(FutureTask<Void> future) {
+        permits.release();
+        synchronized (this) {
+            inFlight.remove(future);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits for all submitted observations to complete.
+     *
+     * @throws IOException          if an observation failed with an {@link IOException}.
+     * @throws InterruptedException if interrupted, in which case the outstanding observations are cancelled.
+     */
+    void awaitCompletion() throws IOException, InterruptedException {
+        try {
+            synchronized (this) {
+                while (!inFlight.isEmpty()) {
+                    wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            throw e;
+        }
+        Throwable t = failure.getAndSet(null);
+        if (t == null) {
+            return;
+        }
+        if (t instanceof IOException) {
+            throw (IOException) t;
+        }
+        if (t instanceof InterruptedException) {
+            throw (InterruptedException) t;
+        }
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new IOException(t);
+    }
+
+    /**
+     * Cancels the outstanding observations and waits for those that are running to exit, so that nothing changes the
+     * branch projects once this returns. The interrupted status of the calling thread is preserved.
+     */
+    void cancel() {
+        FutureTask<?>[] futures;
+        synchronized (this) {
+            futures = inFlight.toArray(new FutureTask<?>[0]);
+        }
+        for (FutureTask<?> future : futures) {
+            future.cancel(true);
+        }
+        boolean interrupted = Thread.interrupted();
+        synchronized (this) {
+            while (!inFlight.isEmpty()) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The observation of a head.
+     */
+    interface Task {
+        /**
+         * Observes the head.
+         *
+         * @throws IOException          if something goes wrong.
+         * @throws InterruptedException if interrupted.
+         */
+        void run() throws IOException, InterruptedException;
+    }
+}
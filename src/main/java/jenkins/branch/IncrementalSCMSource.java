@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import jenkins.scm.api.SCMHeadObserver;
+import jenkins.scm.api.SCMSource;
+
+/**
+ * Mix-in for {@link SCMSource} implementations that can report the heads changed since a previous point in time,
+ * allowing a {@link MultiBranchProject} to index them incrementally.
+ * <p>
+ * Incremental indexing is opt-in through the {@code jenkins.branch.MultiBranchProject.incrementalIndexing} system
+ * property. When it is used the heads that the source does not report are assumed to be unchanged: their branch
+ * projects are kept without being updated. A full {@link SCMSource#fetch(SCMHeadObserver, TaskListener)} is still
+ * performed periodically and whenever the previous indexing cannot be trusted.
+ */
+public interface IncrementalSCMSource {
+
+    /**
+     * Returns a cursor representing the current state of the source. This is called before a full fetch so that any
+     * change made during the fetch will be reported by the next
+     * {@link #fetchChanges(String, SCMHeadObserver, TaskListener)}.
+     *
+     * @param listener the listener to report progress to.
+     * @return the cursor or {@code null} if the source cannot currently provide one.
+     * @throws IOException          if there was an I/O error.
+     * @throws InterruptedException if interrupted.
+     */
+    @CheckForNull
+    String currentCursor(@NonNull TaskListener listener) throws IOException, InterruptedException;
+
+    /**
+     * Observes the heads that were created or changed since the supplied cursor and reports the heads that were
+     * removed.
+     *
+     * @param cursor   a cursor previously returned by {@link #currentCursor(TaskListener)} or
+     *                 {@link Changes#getCursor()}.
+     * @param observer the observer to report the created and changed heads to.
+     * @param listener the listener to report progress to.
+     * @return the changes or {@code null} if the cursor can no longer be used, in which case a full fetch will be
+     * performed.
+     * @throws IOException          if there was an I/O error.
+     * @throws InterruptedException if interrupted.
+     */
+    @CheckForNull
+    Changes fetchChanges(@NonNull String cursor, @NonNull SCMHeadObserver observer, @NonNull TaskListener listener)
+        throws IOException, InterruptedException;
+
+    /**
+     * The outcome of {@link #fetchChanges(String, SCMHeadObserver, TaskListener)}.
+     */
+    final class Changes {
+        /**
+         * The cursor to use next time.
+         */
+        @NonNull
+        private final String cursor;
+        /**
+         * The names of the heads that were removed.
+         */
+        @NonNull
+        private final Set<String> removed;
+
+        /**
+         * Constructor.
+         *
+         * @param cursor  the cursor to use next time.
+         * @param removed the names of the heads that were removed.
+         */
+        public Changes(@NonNull String cursor, @NonNull Set<String> removed) {
+            this.cursor = cursor;
+            this.removed = Collections.unmodifiableSet(new LinkedHashSet<>(removed));
+        }
+
+        /**
+         * Returns the cursor to use next time.
+         *
+         * @return the cursor to use next time.
+         */
+        @NonNull
+        public String getCursor() {
+            return cursor;
+        }
+
+        /**
+         * Returns the names of the heads that were removed.
+         *
+         * @return the names of the heads that were removed.
+         */
+        @NonNull
+        public Set<String> getRemoved() {
+            return removed;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.util.SystemProperties;
+import org.apache.commons.io.FileUtils;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Records which heads a branch indexing has fully processed so that an indexing interrupted by an abort or a restart
+ * can resume without processing them again.
+ * <p>
+ * The checkpoint is an append-only log in {@link MultiBranchProject#getComputationDir()}: a header line with the time
+ * the indexing started and the ids of its sources, followed by one {@code base64(sourceId) base64(name)
+ * base64(revision)} line per processed head. Processed heads are written every {@link #INTERVAL} heads, only after
+ * the pending saves and revision updates have been flushed, and when the indexing ends abnormally. A successful
+ * indexing deletes the checkpoint.
+ * <p>
+ * A resumed indexing still fetches every head, so the orphan set is computed as usual, but heads that were processed
+ * at the same revision are only marked as observed.
+ */
+@Restricted(NoExternalUse.class)
+final class IndexingCheckpoint {
+
+    private static final Logger LOGGER = Logger.getLogger(IndexingCheckpoint.class.getName());
+
+    /**
+     * The name of the file in {@link MultiBranchProject#getComputationDir()}.
+     */
+    static final String FILE_NAME = "indexing-checkpoint.log";
+
+    /**
+     * Set to {@code true} to always restart interrupted indexing from the beginning.
+     */
+    static /* not final */ boolean DISABLED =
+        SystemProperties.getBoolean(IndexingCheckpoint.class.getName() + ".disabled", false);
+
+    /**
+     * The number of processed heads between checkpoints.
+     */
+    static /* not final */ int INTERVAL =
+        SystemProperties.getInteger(IndexingCheckpoint.class.getName() + ".interval", 100);
+
+    /**
+     * The maximum age of a checkpoint that can be resumed from.
+     */
+    static /* not final */ long MAX_AGE_MILLIS =
+        SystemProperties.getLong(IndexingCheckpoint.class.getName() + ".maxAgeMillis", 6 * 60 * 60 * 1000L);
+
+    private static final String HEADER = "#";
+
+    /**
+     * The checkpoint file.
+     */
+    @NonNull
+    private final File file;
+
+    /**
+     * The batch whose saves must be flushed before heads are recorded as processed, or {@code null}.
+     */
+    @CheckForNull
+    private final IndexingWriteBatch batch;
+
+    /**
+     * The revisions of the heads processed by the interrupted indexing, keyed by source id then head name.
+     */
+    private final Map<String, Map<String, String>> resumed;
+
+    /**
+     * The processed heads that are not yet in the file.
+     */
+    private final List<String> pending = new ArrayList<>();
+
+    /**
+     * Whether the header has been written.
+     */
+    private boolean started;
+
+    private IndexingCheckpoint(@NonNull File file, @CheckForNull IndexingWriteBatch batch,
+                               @NonNull Map<String, Map<String, String>> resumed, boolean started) {
+        this.file = file;
+        this.batch = batch;
+        this.resumed = resumed;
+        this.started = started;
+    }
+
+    /**
+     * Opens the checkpoint of a project, resuming the interrupted indexing if its checkpoint is recent and was made
+     * with the same sources.
+     *
+     * @param project   the project.
+     * @param sourceIds the ids of the sources in priority order.
+     * @param batch     the batch whose saves must be flushed before heads are recorded as processed or {@code null}.
+     * @return the checkpoint or {@code null} if checkpoints are disabled.
+     */
+    @CheckForNull
+    static IndexingCheckpoint open(@NonNull MultiBranchProject<?, ?> project, @NonNull List<String> sourceIds,
+                                   @CheckForNull IndexingWriteBatch batch) {
+        if (DISABLED) {
+            return null;
+        }
+        File file = new File(project.getComputationDir(), FILE_NAME);
+        Map<String, Map<String, String>> resumed = new HashMap<>();
+        boolean started = false;
+        if (file.isFile()) {
+            try (BufferedReader r = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String header = r.readLine();
+                if (header != null && matches(header, sourceIds)) {
+                    String line;
+                    while ((line = r.readLine()) != null) {
+                        String[] parts = line.split(" ");
+                        if (parts.length != 3) {
+                            // most likely a torn write at the end of the log
+                            continue;
+                        }
+                        try {
+                            resumed.computeIfAbsent(decode(parts[0]), k -> new HashMap<>())
+                                .put(decode(parts[1]), decode(parts[2]));
+                        } catch (IllegalArgumentException e) {
+                            // ignore malformed record
+                        }
+                    }
+                    started = true;
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Could not read " + file + ", indexing from the beginning", e);
+                resumed.clear();
+            }
+            if (!started) {
+                // stale or for a different set of sources
+                try {
+                    Files.deleteIfExists(file.toPath());
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Could not delete " + file, e);
+                }
+            }
+        }
+        IndexingCheckpoint checkpoint = new IndexingCheckpoint(file, batch, resumed, started);
+        if (!started) {
+            checkpoint.pending.add(header(System.currentTimeMillis(), sourceIds));
+        }
+        return checkpoint;
+    }
+
+    private static String header(long timestamp, List<String> sourceIds) {
+        StringBuilder b = new StringBuilder(HEADER).append(' ').append(timestamp);
+        for (String id : sourceIds) {
+            b.append(' ').append(encode(id));
+        }
+        return b.append('\n').toString();
+    }
+
+    private static boolean matches(String header, List<String> sourceIds) {
+        String[] parts = header.split(" ");
+        if (parts.length != sourceIds.size() + 2 || !HEADER.equals(parts[0])) {
+            return false;
+        }
+        try {
+            if (System.currentTimeMillis() - Long.parseLong(parts[1]) > MAX_AGE_MILLIS) {
+                return false;
+            }
+            for (int i = 0; i < sourceIds.size(); i++) {
+                if (!sourceIds.get(i).equals(decode(parts[i + 2]))) {
+                    return false;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of heads the interrupted indexing had processed.
+     *
+     * @return the number of heads the interrupted indexing had processed.
+     */
+    int getResumedCount() {
+        int count = 0;
+        for (Map<String, String> heads : resumed.values()) {
+            count += heads.size();
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether the interrupted indexing had processed a head at the same revision.
+     *
+     * @param sourceId the source id.
+     * @param name     the head name.
+     * @param revision the {@link Object#toString()} of the revision.
+     * @return {@code true} if the head can be skipped.
+     */
+    boolean isProcessed(@NonNull String sourceId, @NonNull String name, @NonNull String revision) {
+        Map<String, String> heads = resumed.get(sourceId);
+        return heads != null && revision.equals(heads.get(name));
+    }
+
+    /**
+     * Records that a head has been processed.
+     *
+     * @param sourceId the source id.
+     * @param name     the head name.
+     * @param revision the {@link Object#toString()} of the revision.
+     * @throws InterruptedException if interrupted while flushing the pending saves.
+     */
+    void processed(@NonNull String sourceId, @NonNull String name, @NonNull String revision)
+        throws InterruptedException {
+        boolean write;
+        synchronized (pending) {
+            pending.add(encode(sourceId) + ' ' + encode(name) + ' ' + encode(revision) + '\n');
+            write = pending.size() >= INTERVAL;
+        }
+        if (write) {
+            write();
+        }
+    }
+
+    /**
+     * Writes the processed heads, after making sure that their changes are on disk.
+     *
+     * @throws InterruptedException if interrupted while flushing the pending saves.
+     */
+    void write() throws InterruptedException {
+        List<String> lines;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            lines = new ArrayList<>(pending);
+            pending.clear();
+        }
+        if (batch != null) {
+            batch.flush();
+        } else {
+            BranchRevisionCache.flush();
+        }
+        synchronized (this) {
+            try {
+                FileUtils.forceMkdir(file.getParentFile());
+                try (OutputStream out = new FileOutputStream(file, true)) {
+                    for (String line : lines) {
+                        out.write(line.getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+                started = true;
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Could not write " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Discards the checkpoint, to be called once the indexing has completed.
+     */
+    void complete() {
+        synchronized (pending) {
+            pending.clear();
+        }
+        synchronized (this) {
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Could not delete " + file, e);
+            }
+        }
+    }
+
+    private static String encode(String s) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String s) {
+        return new String(Base64.getUrlDecoder().decode(s), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Queue;
+import hudson.model.queue.CauseOfBlockage;
+import hudson.model.queue.QueueListener;
+import hudson.model.queue.QueueTaskDispatcher;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import jenkins.scm.api.SCMSource;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Admits {@link MultiBranchProject.BranchIndexing} runs through a bounded and fair queue, so that a restart or an
+ * organization scan does not start hundreds of indexings at once.
+ * <p>
+ * Indexings are grouped by their nearest {@link OrganizationFolder} or, for stand-alone projects, by the kind of
+ * their primary {@link SCMSource}, which for most installations is one per SCM server. At most {@link #GLOBAL_LIMIT}
+ * indexings run at once, at most {@link #GROUP_LIMIT} per group, and when indexings of several groups are waiting for
+ * a slot the group with the fewest running indexings goes first. Waiting indexings stay in the build queue with the
+ * reason they are waiting for. Both limits default to {@code 0}, which means unlimited.
+ * <p>
+ * The number of running and waiting indexings of each group is kept up to date as indexings move through the queue,
+ * so that deciding whether one may start does not need to look at every executor and queued item.
+ */
+@Restricted(NoExternalUse.class)
+public final class IndexingScheduler {
+
+    /**
+     * The maximum number of branch indexings running at once, {@code 0} for no limit.
+     */
+    static /* not final */ int GLOBAL_LIMIT =
+        SystemProperties.getInteger(IndexingScheduler.class.getName() + ".globalLimit", 0);
+
+    /**
+     * The maximum number of branch indexings of the same group running at once, {@code 0} for no limit.
+     */
+    static /* not final */ int GROUP_LIMIT =
+        SystemProperties.getInteger(IndexingScheduler.class.getName() + ".groupLimit", 0);
+
+    /**
+     * Guards the counts.
+     */
+    private static final Object LOCK = new Object();
+
+    /**
+     * The queued indexings by queue id, guarded by {@link #LOCK}.
+     */
+    private static final Map<Long, Queued> QUEUED = new HashMap<>();
+
+    /**
+     * The group of the indexings that have left the queue to run, by project, guarded by {@link #LOCK}.
+     */
+    private static final Map<MultiBranchProject<?, ?>, String> STARTED = new IdentityHashMap<>();
+
+    /**
+     * The number of running indexings by group, including those about to start, guarded by {@link #LOCK}.
+     */
+    private static final Map<String, Integer> RUNNING = new HashMap<>();
+
+    /**
+     * The number of waiting indexings by group, guarded by {@link #LOCK}.
+     */
+    private static final Map<String, Integer> WAITING = new HashMap<>();
+
+    private IndexingScheduler() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Returns the group of a project.
+     *
+     * @param project the project.
+     * @return the group.
+     */
+    @NonNull
+    static String groupOf(@NonNull MultiBranchProject<?, ?> project) {
+        for (ItemGroup<?> g = project.getParent(); g instanceof Item; g = ((Item) g).getParent()) {
+            if (g instanceof OrganizationFolder) {
+                return ((Item) g).getFullName();
+            }
+        }
+        List<SCMSource> sources = project.getSCMSources();
+        if (!sources.isEmpty()) {
+            return sources.get(0).getDescriptor().getDisplayName();
+        }
+        return project.getFullName();
+    }
+
+    /**
+     * Decides whether an indexing may start.
+     *
+     * @param group       the group of the indexing.
+     * @param running     the number of running indexings by group.
+     * @param waiting     the number of other waiting indexings by group.
+     * @param globalLimit the maximum number of running indexings or {@code 0}.
+     * @param groupLimit  the maximum number of running indexings per group or {@code 0}.
+     * @return the reason the indexing must wait or {@code null} if it may start.
+     */
+    @CheckForNull
+    static CauseOfBlockage decide(@NonNull String group, @NonNull Map<String, Integer> running,
+                                  @NonNull Map<String, Integer> waiting, int globalLimit, int groupLimit) {
+        int ours = running.getOrDefault(group, 0);
+        if (groupLimit > 0 && ours >= groupLimit) {
+            return CauseOfBlockage.fromMessage(
+                Messages._IndexingScheduler_GroupLimit(ours, group, waiting.getOrDefault(group, 0)));
+        }
+        if (globalLimit <= 0) {
+            return null;
+        }
+        int total = 0;
+        for (int n : running.values()) {
+            total += n;
+        }
+        int totalWaiting = 0;
+        for (int n : waiting.values()) {
+            totalWaiting += n;
+        }
+        if (total >= globalLimit) {
+            return CauseOfBlockage.fromMessage(Messages._IndexingScheduler_GlobalLimit(total, totalWaiting));
+        }
+        // leave the free slots to the waiting indexings of groups that are less served
+        int lessServed = 0;
+        for (Map.Entry<String, Integer> entry : waiting.entrySet()) {
+            if (!group.equals(entry.getKey()) && running.getOrDefault(entry.getKey(), 0) < ours) {
+                lessServed += entry.getValue();
+            }
+        }
+        if (lessServed >= globalLimit - total) {
+            return CauseOfBlockage.fromMessage(Messages._IndexingScheduler_FairShare(ours, group));
+        }
+        return null;
+    }
+
+    /**
+     * Records that an indexing has entered a state of the queue.
+     *
+     * @param item      the queue item of the indexing.
+     * @param buildable {@code true} if every dispatcher let it through, so that it will start unless something changes.
+     */
+    private static void entered(@NonNull Queue.Item item, boolean buildable) {
+        synchronized (LOCK) {
+            Queued queued = QUEUED.get(item.getId());
+            if (queued == null) {
+                // the group is looked up once per queued indexing
+                queued = new Queued(groupOf((MultiBranchProject<?, ?>) item.task), buildable);
+                QUEUED.put(item.getId(), queued);
+            } else if (queued.buildable != buildable) {
+                count(queued.buildable ? RUNNING : WAITING, queued.group, -1);
+                queued.buildable = buildable;
+            } else {
+                return;
+            }
+            count(buildable ? RUNNING : WAITING, queued.group, 1);
+        }
+    }
+
+    /**
+     * Records that an indexing has left the queue.
+     *
+     * @param item the queue item of the indexing.
+     */
+    private static void left(@NonNull Queue.LeftItem item) {
+        synchronized (LOCK) {
+            Queued queued = QUEUED.remove(item.getId());
+            if (queued == null) {
+                return;
+            }
+            count(queued.buildable ? RUNNING : WAITING, queued.group, -1);
+            if (!item.isCancelled()) {
+                String previous = STARTED.put((MultiBranchProject<?, ?>) item.task, queued.group);
+                if (previous != null) {
+                    count(RUNNING, previous, -1);
+                }
+                count(RUNNING, queued.group, 1);
+            }
+        }
+    }
+
+    /**
+     * Records that the indexing of a project has finished.
+     *
+     * @param project the project.
+     */
+    static void finished(@NonNull MultiBranchProject<?, ?> project) {
+        synchronized (LOCK) {
+            String group = STARTED.remove(project);
+            if (group != null) {
+                count(RUNNING, group, -1);
+            }
+        }
+    }
+
+    private static void count(@NonNull Map<String, Integer> counts, @NonNull String group, int delta) {
+        counts.compute(group, (k, n) -> {
+            int result = (n == null ? 0 : n) + delta;
+            return result > 0 ? result : null;
+        });
+    }
+
+    /**
+     * A queued indexing.
+     */
+    private static final class Queued {
+        /**
+         * The group of the indexing.
+         */
+        private final String group;
+        /**
+         * Whether the indexing is about to start, guarded by {@link #LOCK}.
+         */
+        private boolean buildable;
+
+        Queued(String group, boolean buildable) {
+            this.group = group;
+            this.buildable = buildable;
+        }
+    }
+
+    /**
+     * Applies the limits to queued branch indexings.
+     */
+    @Extension
+    public static class QueueTaskDispatcherImpl extends QueueTaskDispatcher {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public CauseOfBlockage canRun(Queue.Item item) {
+            int globalLimit = GLOBAL_LIMIT;
+            int groupLimit = GROUP_LIMIT;
+            if (globalLimit <= 0 && groupLimit <= 0 || !(item.task instanceof MultiBranchProject)) {
+                return null;
+            }
+            String group;
+            Map<String, Integer> running;
+            Map<String, Integer> waiting;
+            synchronized (LOCK) {
+                Queued queued = QUEUED.get(item.getId());
+                group = queued != null ? queued.group : groupOf((MultiBranchProject<?, ?>) item.task);
+                running = new HashMap<>(RUNNING);
+                waiting = new HashMap<>(WAITING);
+                if (queued != null) {
+                    // the indexing does not compete with itself
+                    count(queued.buildable ? running : waiting, group, -1);
+                }
+            }
+            return decide(group, running, waiting, globalLimit, groupLimit);
+        }
+    }
+
+    /**
+     * Keeps the counts up to date with the queue.
+     */
+    @Extension
+    @SuppressWarnings("unused") // instantiated by Jenkins
+    public static class QueueListenerImpl extends QueueListener {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onEnterWaiting(Queue.WaitingItem wi) {
+            if (wi.task instanceof MultiBranchProject) {
+                entered(wi, false);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onEnterBlocked(Queue.BlockedItem bi) {
+            if (bi.task instanceof MultiBranchProject) {
+                entered(bi, false);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onEnterBuildable(Queue.BuildableItem bi) {
+            if (bi.task instanceof MultiBranchProject) {
+                entered(bi, true);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onLeft(Queue.LeftItem li) {
+            if (li.task instanceof MultiBranchProject) {
+                left(li);
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.XmlFile;
+import hudson.model.Items;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * The heads reported by each source of a {@link MultiBranchProject} at the end of its last indexing, used for
+ * {@link IncrementalSCMSource incremental indexing}.
+ */
+@Restricted(NoExternalUse.class)
+final class IndexingSnapshot {
+
+    private static final Logger LOGGER = Logger.getLogger(IndexingSnapshot.class.getName());
+
+    /**
+     * The name of the file in {@link MultiBranchProject#getComputationDir()}.
+     */
+    static final String FILE_NAME = "heads.xml";
+
+    /**
+     * The sources in priority order, keyed by {@link jenkins.scm.api.SCMSource#getId()}.
+     */
+    private final LinkedHashMap<String, Source> sources = new LinkedHashMap<>();
+
+    /**
+     * Returns the snapshot of a source.
+     *
+     * @param sourceId the source id.
+     * @return the snapshot or {@code null} if the source was not indexed last time.
+     */
+    @CheckForNull
+    Source get(@NonNull String sourceId) {
+        return sources.get(sourceId);
+    }
+
+    /**
+     * Records the snapshot of a source, sources must be recorded in priority order.
+     *
+     * @param sourceId the source id.
+     * @param source   the snapshot.
+     */
+    void put(@NonNull String sourceId, @NonNull Source source) {
+        sources.put(sourceId, source);
+    }
+
+    /**
+     * Returns the source ids in priority order.
+     *
+     * @return the source ids in priority order.
+     */
+    @NonNull
+    List<String> getSourceIds() {
+        return new ArrayList<>(sources.keySet());
+    }
+
+    /**
+     * Loads the snapshot of a project.
+     *
+     * @param project the project.
+     * @return the snapshot, empty if there is none or it cannot be read.
+     */
+    @NonNull
+    static IndexingSnapshot load(@NonNull MultiBranchProject<?, ?> project) {
+        XmlFile file = file(project);
+        if (file.exists()) {
+            try {
+                Object o = file.read();
+                if (o instanceof IndexingSnapshot) {
+                    return (IndexingSnapshot) o;
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Could not read " + file + ", the next indexing will be a full indexing", e);
+            }
+        }
+        return new IndexingSnapshot();
+    }
+
+    /**
+     * Saves this snapshot for a project.
+     *
+     * @param project the project.
+     * @throws IOException if the snapshot could not be written.
+     */
+    void save(@NonNull MultiBranchProject<?, ?> project) throws IOException {
+        file(project).write(this);
+    }
+
+    private static XmlFile file(MultiBranchProject<?, ?> project) {
+        return new XmlFile(Items.XSTREAM2, new File(project.getComputationDir(), FILE_NAME));
+    }
+
+    /**
+     * The heads reported by a single source.
+     */
+    static final class Source {
+        /**
+         * The {@link IncrementalSCMSource} cursor or {@code null}.
+         */
+        @CheckForNull
+        private final String cursor;
+        /**
+         * When the last full fetch of the source started.
+         */
+        private final long fullFetchTimestamp;
+        /**
+         * The {@link jenkins.scm.api.SCMHead#getName()} of each head.
+         */
+        private final LinkedHashSet<String> heads;
+
+        Source(@CheckForNull String cursor, long fullFetchTimestamp, @NonNull Collection<String> heads) {
+            this.cursor = cursor;
+            this.fullFetchTimestamp = fullFetchTimestamp;
+            this.heads = new LinkedHashSet<>(heads);
+        }
+
+        @CheckForNull
+        String getCursor() {
+            return cursor;
+        }
+
+        long getFullFetchTimestamp() {
+            return fullFetchTimestamp;
+        }
+
+        @NonNull
+        Set<String> getHeads() {
+            return heads == null ? Collections.emptySet() : Collections.unmodifiableSet(heads);
+        }
+    }
+}
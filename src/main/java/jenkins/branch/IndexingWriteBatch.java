@@ -0,0 +1,255 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import static hudson.Functions.printStackTrace;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.ClassLoaderSanityThreadFactory;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.ExceptionCatchingThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import jenkins.security.ImpersonatingExecutorService;
+import jenkins.util.ContextResettingExecutorService;
+import jenkins.util.ErrorLoggingExecutorService;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Defers the saving of branch projects changed during branch indexing so that they are written together, in parallel,
+ * at the end of each source fetch rather than one at a time as each head is observed.
+ * <p>
+ * The pending saves are also written whenever {@link #MAX_PENDING} projects are waiting or the oldest has waited
+ * {@link #MAX_DELAY_MILLIS}, and the pending {@link BranchRevisionCache} writes
+ * of the projects that this batch changed are flushed with them.
+ */
+@Restricted(NoExternalUse.class)
+class IndexingWriteBatch {
+
+    /**
+     * Set to {@code true} to save each branch project as soon as it changes.
+     */
+    static /* not final */ boolean DISABLED =
+        SystemProperties.getBoolean(IndexingWriteBatch.class.getName() + ".disabled", false);
+
+    /**
+     * The number of branch projects saved concurrently, values less than {@code 2} save sequentially on the
+     * flushing thread.
+     */
+    static /* not final */ int PARALLELISM =
+        SystemProperties.getInteger(IndexingWriteBatch.class.getName() + ".parallelism", 4);
+
+    /**
+     * The number of pending saves that forces a flush.
+     */
+    static /* not final */ int MAX_PENDING =
+        SystemProperties.getInteger(IndexingWriteBatch.class.getName() + ".maxPending", 1000);
+
+    /**
+     * The age of the oldest pending save that forces a flush.
+     */
+    static /* not final */ long MAX_DELAY_MILLIS =
+        SystemProperties.getLong(IndexingWriteBatch.class.getName() + ".maxDelayMillis", 30000L);
+
+    /**
+     * The shared executor, created on first use.
+     */
+    private static ExecutorService executorService;
+
+    /**
+     * The listener to report failures to.
+     */
+    @NonNull
+    private final TaskListener listener;
+
+    /**
+     * The projects waiting to be saved and the names to report them by.
+     */
+    private final Map<Job<?, ?>, String> pending = new LinkedHashMap<>();
+
+    /**
+     * The projects whose revisions may be waiting in the {@link BranchRevisionCache}, guarded by {@link #pending}.
+     */
+    private final Set<Job<?, ?>> revised = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * When the oldest pending save was requested.
+     */
+    private long oldest;
+
+    /**
+     * Constructor.
+     *
+     * @param listener the listener to report failures to.
+     */
+    IndexingWriteBatch(@NonNull TaskListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Creates a batch if batching is enabled.
+     *
+     * @param listener the listener to report failures to.
+     * @return the batch or {@code null} if projects should be saved immediately.
+     */
+    @CheckForNull
+    static IndexingWriteBatch create(@NonNull TaskListener listener) {
+        return DISABLED ? null : new IndexingWriteBatch(listener);
+    }
+
+    private static synchronized ExecutorService executorService() {
+        if (executorService == null) {
+            int threads = Math.max(2, PARALLELISM);
+            ThreadPoolExecutor tpe = new ThreadPoolExecutor(threads, threads, 10L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ExceptionCatchingThreadFactory(
+                    new NamingThreadFactory(
+                        new ClassLoaderSanityThreadFactory(new DaemonThreadFactory()),
+                        "MultiBranchProject.indexingSave")));
+            tpe.allowCoreThreadTimeOut(true);
+            executorService = new ContextResettingExecutorService(
+                new ImpersonatingExecutorService(new ErrorLoggingExecutorService(tpe), ACL.SYSTEM2));
+        }
+        return executorService;
+    }
+
+    /**
+     * Requests that a project be saved.
+     *
+     * @param project the project.
+     * @param rawName the name to report failures with.
+     */
+    void save(@NonNull Job<?, ?> project, @NonNull String rawName) {
+        boolean flush;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                oldest = System.currentTimeMillis();
+            }
+            pending.put(project, rawName);
+            flush = pending.size() >= MAX_PENDING || System.currentTimeMillis() - oldest >= MAX_DELAY_MILLIS;
+        }
+        if (flush) {
+            flush();
+        }
+    }
+
+    /**
+     * Records that the revisions of a project have been changed, so that the next flush writes them.
+     *
+     * @param project the project.
+     */
+    void revised(@NonNull Job<?, ?> project) {
+        synchronized (pending) {
+            revised.add(project);
+        }
+    }
+
+    /**
+     * Returns the number of projects waiting to be saved.
+     *
+     * @return the number of projects waiting to be saved.
+     */
+    int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Saves all the pending projects and writes the pending revisions.
+     *
+     * @throws InterruptedException if interrupted while waiting for the saves.
+     */
+    void flush() throws InterruptedException {
+        Map<Job<?, ?>, String> work;
+        List<Job<?, ?>> revisions;
+        synchronized (pending) {
+            revisions = new ArrayList<>(revised);
+            revised.clear();
+            if (pending.isEmpty()) {
+                BranchRevisionCache.flush(revisions, listener);
+                return;
+            }
+            work = new LinkedHashMap<>(pending);
+            pending.clear();
+        }
+        if (PARALLELISM < 2 || work.size() < 2) {
+            for (Map.Entry<Job<?, ?>, String> entry : work.entrySet()) {
+                save(entry.getKey(), entry.getValue());
+            }
+        } else {
+            Map<Future<?>, String> futures = new LinkedHashMap<>();
+            for (Map.Entry<Job<?, ?>, String> entry : work.entrySet()) {
+                futures.put(executorService().submit(() -> save(entry.getKey(), entry.getValue())), entry.getValue());
+            }
+            for (Map.Entry<Future<?>, String> future : futures.entrySet()) {
+                try {
+                    future.getKey().get();
+                } catch (ExecutionException e) {
+                    printStackTrace(e.getCause(), listener.error("Could not save changes to " + future.getValue()));
+                }
+            }
+        }
+        BranchRevisionCache.flush(revisions, listener);
+    }
+
+    private void save(Job<?, ?> project, String rawName) {
+        ItemGroup<?> parent = project.getParent();
+        // the item may be hidden from whoever is flushing, so look it up as the system
+        try (ACLContext as = ACL.as2(ACL.SYSTEM2)) {
+            if (parent.getItem(project.getName()) != project) {
+                // deleted or replaced since it was changed
+                return;
+            }
+        }
+        try {
+            project.save();
+        } catch (IOException e) {
+            printStackTrace(e, listener.error("Could not save changes to " + rawName));
+        }
+    }
+}
@@ -27,7 +27,6 @@ package jenkins.branch;
 import com.cloudbees.hudson.plugins.folder.FolderIcon;
 import com.cloudbees.hudson.plugins.folder.computed.ChildObserver;
 import com.cloudbees.hudson.plugins.folder.computed.ComputedFolder;
-import com.cloudbees.hudson.plugins.folder.computed.EventOutputStreams;
 import com.cloudbees.hudson.plugins.folder.computed.FolderComputation;
 import com.cloudbees.hudson.plugins.folder.views.AbstractFolderViewHolder;
 import com.thoughtworks.xstream.XStreamException;
@@ -74,12 +73,14 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
@@ -133,6 +134,19 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
     private static /* not final */ boolean FIRE_SCM_SOURCE_BUILDS_AFTER_SAVE =
         SystemProperties.getBoolean(MultiBranchProject.class.getName() + ".fireSCMSourceBuildsAfterSave", true);
 
+    /**
+     * Set to {@code true} to let branch indexing only fetch the heads changed since the previous indexing from
+     * sources that are {@link IncrementalSCMSource}s.
+     */
+    static /* not final */ boolean INCREMENTAL_INDEXING =
+        SystemProperties.getBoolean(MultiBranchProject.class.getName() + ".incrementalIndexing", false);
+
+    /**
+     * The maximum age of the last full fetch of a source before incremental indexing performs another one.
+     */
+    static /* not final */ long FULL_INDEXING_INTERVAL_MILLIS = SystemProperties.getLong(
+        MultiBranchProject.class.getName() + ".fullIndexingIntervalMillis", TimeUnit.HOURS.toMillis(24));
+
     /**
      * Our logger.
      */
@@ -162,6 +176,21 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
 
     private transient String srcDigest, facDigest;
 
+    /**
+     * The lookup tables for the current {@link #sources}, lazily rebuilt after {@link #sourcesVersion} changes.
+     */
+    private transient volatile SourcesSnapshot sourcesSnapshot;
+
+    /**
+     * Incremented whenever the {@link #sources} change.
+     */
+    private transient volatile int sourcesVersion;
+
+    /**
+     * The revisions of the branch jobs, created on first use.
+     */
+    private transient BranchRevisionStore revisionStore;
+
     /**
      * Constructor, mandated by {@link TopLevelItem}.
      *
@@ -182,6 +211,7 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
     public void onLoad(ItemGroup<? extends Item> parent, String name) throws IOException {
         super.onLoad(parent, name);
         init2();
+        SCMEventRoutingIndex.update(this);
         PropertyMigration.applyAll(this);
         try {
             srcDigest = Util.getDigestOf(Items.XSTREAM2.toXML(sources));
@@ -257,6 +287,7 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
                 id = Integer.toString(count);
                 s.setId(id);
                 LOGGER.fine(() -> "assigned id to " + s + " in " + this);
+                invalidateSourcesSnapshot();
             }
             if (!sourceMap.containsKey(id)) { // only the first match should win
                 sourceMap.put(id, s);
@@ -265,12 +296,40 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
         return sourceMap;
     }
 
+    /**
+     * Returns the lookup tables for the current sources.
+     *
+     * @return the lookup tables for the current sources.
+     */
+    @NonNull
+    private SourcesSnapshot sourcesSnapshot() {
+        SourcesSnapshot snapshot = sourcesSnapshot;
+        int version = sourcesVersion;
+        if (snapshot == null || snapshot.version != version) {
+            // a concurrent modification will bump the version again so a stale snapshot is never used for long
+            snapshot = new SourcesSnapshot(version, sources == null ? Collections.emptyList() : sources.toList());
+            sourcesSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Discards the lookup tables for the sources, to be called whenever the sources are modified.
+     */
+    private synchronized void invalidateSourcesSnapshot() {
+        sourcesVersion++;
+    }
+
     /**
      * Consolidated initialization code.
      */
     private synchronized void init2() {
+        invalidateSourcesSnapshot();
         if (sources == null) {
-            sources = new PersistedList<>(this);
+            sources = new BranchSourceList(this);
+        } else if (!(sources instanceof BranchSourceList)) {
+            // ensure modifications are always tracked
+            sources = new BranchSourceList(this, sources);
         }
         if (nullSCMSource == null) {
             nullSCMSource = new NullSCMSource();
@@ -417,6 +476,21 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
         }
     }
 
+    /**
+     * Returns the store of the last built and last seen revisions of the branch jobs.
+     *
+     * @return the revision store.
+     */
+    @NonNull
+    /*package*/ synchronized BranchRevisionStore getRevisionStore() {
+        File rootDir = getRootDir();
+        if (revisionStore == null || !revisionStore.isFor(rootDir)) {
+            // (re)create if we have been moved
+            revisionStore = new BranchRevisionStore(rootDir);
+        }
+        return revisionStore;
+    }
+
     /**
      * Offers direct access to the configurable list of branch sources.
      * Intended for use from scripting and testing.
@@ -534,13 +608,8 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
      */
     @NonNull
     public List<SCMSource> getSCMSources() {
-        List<SCMSource> result = new ArrayList<>();
-        if (sources != null) {
-            for (BranchSource source : sources) {
-                result.add(source.getSource());
-            }
-        } // else, ok to ignore and return empty, this object is still being constructed
-        return result;
+        // if sources is null, ok to return empty, this object is still being constructed
+        return new ArrayList<>(sourcesSnapshot().sources);
     }
 
     /**
@@ -548,12 +617,8 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
      */
     @CheckForNull
     public SCMSource getSCMSource(@CheckForNull String sourceId) {
-        for (SCMSource source : getSCMSources()) {
-            if (source.getId().equals(sourceId)) {
-                return source;
-            }
-        }
-        return nullSCMSource;
+        SCMSource source = sourcesSnapshot().source(sourceId);
+        return source != null ? source : nullSCMSource;
     }
 
     /**
@@ -565,9 +630,14 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
      */
     @CheckForNull
     public BranchPropertyStrategy getBranchPropertyStrategy(@NonNull SCMSource source) {
-        for (BranchSource s : getSources()) {
-            if (s.getSource().equals(source)) {
-                return s.getStrategy();
+        BranchSource s = sourcesSnapshot().branchSource(source.getId());
+        if (s != null && s.getSource().equals(source)) {
+            return s.getStrategy();
+        }
+        for (BranchSource b : getSources()) {
+            // slow path, for sources that are not one of ours by id
+            if (b.getSource().equals(source)) {
+                return b.getStrategy();
             }
         }
         return null;
@@ -641,6 +711,22 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
         }
         long start = System.currentTimeMillis();
         listener.getLogger().format("[%tc] Starting branch indexing...%n", start);
+        if (AdaptiveIndexing.ENABLED) {
+            int multiplier = AdaptiveIndexing.indexingStarted(this);
+            if (multiplier > 1) {
+                listener.getLogger().format("Events are keeping this project up to date, periodic indexing "
+                    + "interval is stretched %d times%n", multiplier);
+            }
+            int divisor = AdaptiveIndexing.getDivisor(this);
+            if (divisor > 1) {
+                listener.getLogger().format("Recent indexings found changes that events had missed, periodic "
+                    + "indexing interval is shortened %d times%n", divisor);
+            }
+        }
+        HeadObservationPool pool = null;
+        IndexingWriteBatch batch = null;
+        IndexingCheckpoint checkpoint = null;
+        boolean completed = false;
         try {
             final BranchProjectFactory<P, R> _factory = getProjectFactory();
             List<SCMSource> scmSources = getSCMSources();
@@ -688,23 +774,190 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
                     bc.abort();
                 }
             }
+            pool = HeadObservationPool.create();
+            final HeadObservationPool _pool = pool;
+            batch = IndexingWriteBatch.create(listener);
+            final IndexingWriteBatch _batch = batch;
+            IndexingSnapshot previous = IndexingSnapshot.load(this);
+            IndexingSnapshot next = new IndexingSnapshot();
+            List<String> sourceIds = new ArrayList<>();
+            for (SCMSource source : scmSources) {
+                sourceIds.add(source.getId());
+            }
+            checkpoint = IndexingCheckpoint.open(this, sourceIds, _batch);
+            final IndexingCheckpoint _checkpoint = checkpoint;
+            if (_checkpoint != null && _checkpoint.getResumedCount() > 0) {
+                listener.getLogger().format("Resuming interrupted branch indexing, %d heads were already processed%n",
+                    _checkpoint.getResumedCount());
+            }
+            if (ConcurrentSourceFetcher.isEnabled() && scmSources.size() > 1) {
+                Map<String, Set<String>> heads = new ConcurrentHashMap<>();
+                ConcurrentSourceFetcher.fetch(scmSources, listener, source -> new SCMHeadObserverImpl(source,
+                    observer, listener, _factory, new IndexingCauseFactory(), null, _pool, _batch)
+                    .recordingInto(heads.computeIfAbsent(source.getId(),
+                        k -> Collections.synchronizedSet(new LinkedHashSet<>())))
+                    .checkpointingInto(_checkpoint), _pool);
+                for (SCMSource source : scmSources) {
+                    next.put(source.getId(), new IndexingSnapshot.Source(null, start,
+                        heads.getOrDefault(source.getId(), Collections.emptySet())));
+                }
+                saveIndexingSnapshot(next, listener);
+                completed = true;
+                return;
+            }
+            // heads not reported by an incremental fetch can only be assumed unchanged while the heads reported by
+            // higher priority sources are stable
+            boolean stable = sourceIds.equals(previous.getSourceIds());
             for (final SCMSource source : scmSources) {
                 try {
-                    source.fetch(new SCMHeadObserverImpl(source, observer, listener, _factory,
-                        new IndexingCauseFactory(), null), listener);
+                    stable = fetchSource(source, previous.get(source.getId()), stable, next, observer, listener,
+                        _factory, _pool, _batch, _checkpoint) && stable;
+                    if (_batch != null) {
+                        _batch.flush();
+                    }
                 } catch (IOException | InterruptedException | RuntimeException e) {
                     listener.error("[%tc] Could not fetch branches from source %s",
                         System.currentTimeMillis(), source.getId());
                     throw e;
                 }
             }
+            saveIndexingSnapshot(next, listener);
+            completed = true;
         } finally {
+            if (pool != null) {
+                // no-op unless we are bailing out with observations still in flight
+                pool.cancel();
+            }
+            // an aborted indexing has been interrupted, but what it did must still reach the disk
+            boolean interrupted = Thread.interrupted();
+            try {
+                if (checkpoint != null && !completed) {
+                    // flushes the batch before recording what was processed
+                    checkpoint.write();
+                } else if (batch != null) {
+                    // no-op unless the sources were fetched concurrently
+                    batch.flush();
+                }
+                if (batch == null) {
+                    // report any revision that could not be written to this indexing rather than only to the log
+                    BranchRevisionCache.flush(listener);
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (checkpoint != null && completed) {
+                checkpoint.complete();
+            }
             long end = System.currentTimeMillis();
             listener.getLogger().format("[%tc] Finished branch indexing. Indexing took %s%n", end,
                 Util.getTimeSpanString(end - start));
         }
     }
 
+    /**
+     * Fetches the heads of a single source during branch indexing, incrementally when possible.
+     *
+     * @param source   the source.
+     * @param previous the heads reported by the source at the end of the previous indexing.
+     * @param stable   {@code true} if the heads reported by higher priority sources are known to be stable.
+     * @param next     the snapshot to record the heads reported by the source into.
+     * @param observer the child observer.
+     * @param listener the task listener.
+     * @param _factory the project factory.
+     * @param pool     the pool to observe heads concurrently or {@code null}.
+     * @param batch    the batch to defer saves to or {@code null}.
+     * @param checkpoint the checkpoint to record processed heads into or {@code null}.
+     * @return {@code true} if no head previously reported by the source is known to have gone away.
+     * @throws IOException          if there was an I/O error.
+     * @throws InterruptedException if interrupted.
+     */
+    private boolean fetchSource(@NonNull SCMSource source, @CheckForNull IndexingSnapshot.Source previous,
+                                boolean stable, @NonNull IndexingSnapshot next, @NonNull ChildObserver<P> observer,
+                                @NonNull TaskListener listener, @NonNull BranchProjectFactory<P, R> _factory,
+                                @CheckForNull HeadObservationPool pool, @CheckForNull IndexingWriteBatch batch,
+                                @CheckForNull IndexingCheckpoint checkpoint)
+        throws IOException, InterruptedException {
+        Set<String> heads = Collections.synchronizedSet(new LinkedHashSet<>());
+        SCMHeadObserverImpl headObserver = new SCMHeadObserverImpl(source, observer, listener, _factory,
+            new IndexingCauseFactory(), null, pool, batch).recordingInto(heads).checkpointingInto(checkpoint);
+        IncrementalSCMSource incremental = source instanceof IncrementalSCMSource ? (IncrementalSCMSource) source : null;
+        if (incremental != null && INCREMENTAL_INDEXING && stable && previous != null && previous.getCursor() != null
+            && System.currentTimeMillis() - previous.getFullFetchTimestamp() < FULL_INDEXING_INTERVAL_MILLIS) {
+            IncrementalSCMSource.Changes changes = incremental.fetchChanges(previous.getCursor(), headObserver,
+                listener);
+            if (changes != null) {
+                if (pool != null) {
+                    pool.awaitCompletion();
+                }
+                int changed = heads.size();
+                int unchanged = 0;
+                for (String name : previous.getHeads()) {
+                    if (heads.contains(name) || changes.getRemoved().contains(name)) {
+                        continue;
+                    }
+                    if (keepUnchanged(source, name, observer, _factory)) {
+                        heads.add(name);
+                        unchanged++;
+                    }
+                }
+                listener.getLogger().format("Incrementally indexed source %s: %d changed, %d unchanged, %d removed%n",
+                    source.getId(), changed, unchanged, changes.getRemoved().size());
+                next.put(source.getId(), new IndexingSnapshot.Source(changes.getCursor(),
+                    previous.getFullFetchTimestamp(), heads));
+                return changes.getRemoved().isEmpty();
+            }
+            listener.getLogger().format("Source %s cannot report the changes since the previous indexing%n",
+                source.getId());
+        }
+        long fetchStart = System.currentTimeMillis();
+        String cursor = incremental == null ? null : incremental.currentCursor(listener);
+        source.fetch(headObserver, listener);
+        if (pool != null) {
+            // the heads of this source must be settled before lower priority sources are observed
+            pool.awaitCompletion();
+        }
+        next.put(source.getId(), new IndexingSnapshot.Source(cursor, fetchStart, heads));
+        return previous == null || heads.containsAll(previous.getHeads());
+    }
+
+    /**
+     * Marks the branch project of a head that an incremental fetch did not report as observed, without updating it.
+     *
+     * @param source   the source.
+     * @param name     the name of the head.
+     * @param observer the child observer.
+     * @param _factory the project factory.
+     * @return {@code true} if the branch project is still owned by the source.
+     * @throws InterruptedException if interrupted.
+     */
+    private boolean keepUnchanged(@NonNull SCMSource source, @NonNull String name, @NonNull ChildObserver<P> observer,
+                                  @NonNull BranchProjectFactory<P, R> _factory) throws InterruptedException {
+        String encodedName = NameEncoder.encode(name);
+        P project = observer.shouldUpdate(encodedName);
+        try {
+            if (project == null || !_factory.isProject(project)) {
+                // taken by a higher priority source or deleted, the next full fetch will sort it out
+                return false;
+            }
+            Branch branch = _factory.getBranch(project);
+            return !(branch instanceof Branch.Dead) && source.getId().equals(branch.getSourceId());
+        } finally {
+            observer.completed(encodedName);
+        }
+    }
+
+    private void saveIndexingSnapshot(@NonNull IndexingSnapshot snapshot, @NonNull TaskListener listener) {
+        try {
+            snapshot.save(this);
+        } catch (IOException e) {
+            printStackTrace(e, listener.error("Could not record the heads of this indexing"));
+        }
+    }
+
     private void scheduleBuild(BranchProjectFactory<P, R> factory, final P item, SCMRevision revision, TaskListener listener, String name, Cause[] causes, Action... actions) {
         if (!isBuildable()) {
             listener.getLogger().printf("Did not schedule build for branch: %s (%s is disabled)%n",
@@ -740,8 +993,11 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
             }
             _actions[0] = new CauseAction(_causes);
         }
-        if (ParameterizedJobMixIn.scheduleBuild2(item, -1, _actions) != null) {
-            listener.getLogger().println("Scheduled build for branch: " + name);
+        SupersedeBranchProperty supersede = factory.getBranch(item).getProperty(SupersedeBranchProperty.class);
+        boolean superseded = supersede != null && supersede.supersede(item, revision, listener, _actions);
+        if (superseded || ParameterizedJobMixIn.scheduleBuild2(item, -1, _actions) != null) {
+            listener.getLogger().println(
+                (superseded ? "Superseded queued build for branch: " : "Scheduled build for branch: ") + name);
             try {
                 factory.setRevisionHash(item, revision);
             } catch (IOException e) {
@@ -768,8 +1024,12 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
             if (!(b instanceof Branch.Dead)) {
                 _factory.decorate(
                     _factory.setBranch(project, new Branch.Dead(b)));
+                AdaptiveIndexing.driftDetected(this);
             }
         }
+        if (AdaptiveIndexing.ENABLED) {
+            AdaptiveIndexing.indexingCompleted(this);
+        }
         return super.orphanedItems(orphaned, listener);
     }
 
@@ -1037,6 +1297,18 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
             super(project, previousIndexing);
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                IndexingScheduler.finished(getParent());
+            }
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -1160,15 +1432,85 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
             super(owner);
         }
 
+        BranchSourceList(MultiBranchProject<?, ?> owner, Collection<BranchSource> initial) {
+            super(initial);
+            setOwner(owner);
+        }
+
         /**
          * {@inheritDoc}
          */
         @Override
         protected void onModified() throws IOException {
+            ((MultiBranchProject<?, ?>) owner).invalidateSourcesSnapshot();
             super.onModified();
             for (BranchSource branchSource : this) {
                 branchSource.getSource().setOwner((MultiBranchProject) owner);
             }
+            SCMEventRoutingIndex.update((MultiBranchProject<?, ?>) owner);
+        }
+    }
+
+    /**
+     * An immutable set of lookup tables over the sources of a project, so that source and priority lookups do not
+     * need to iterate the sources.
+     */
+    private static final class SourcesSnapshot {
+        /**
+         * The {@link MultiBranchProject#sourcesVersion} that this snapshot was built from.
+         */
+        private final int version;
+        /**
+         * The sources in priority order.
+         */
+        private final List<SCMSource> sources;
+        /**
+         * The first {@link BranchSource} with each source id.
+         */
+        private final Map<String, BranchSource> branchSources;
+        /**
+         * The priority of each source id, where {@code 1} is the highest priority.
+         */
+        private final Map<String, Integer> priorities;
+
+        SourcesSnapshot(int version, List<BranchSource> branchSources) {
+            this.version = version;
+            List<SCMSource> sources = new ArrayList<>(branchSources.size());
+            Map<String, BranchSource> byId = new HashMap<>();
+            Map<String, Integer> priorities = new HashMap<>();
+            int priority = 1;
+            for (BranchSource b : branchSources) {
+                SCMSource source = b.getSource();
+                sources.add(source);
+                // only the first match should win
+                byId.putIfAbsent(source.getId(), b);
+                priorities.putIfAbsent(source.getId(), priority++);
+            }
+            this.sources = Collections.unmodifiableList(sources);
+            this.branchSources = byId;
+            this.priorities = priorities;
+        }
+
+        @CheckForNull
+        SCMSource source(@CheckForNull String id) {
+            BranchSource b = branchSources.get(id);
+            return b == null ? null : b.getSource();
+        }
+
+        @CheckForNull
+        BranchSource branchSource(@CheckForNull String id) {
+            return branchSources.get(id);
+        }
+
+        /**
+         * Returns the priority of a source.
+         *
+         * @param id the source id.
+         * @return the priority, where {@code 1} is the highest, or {@link Integer#MAX_VALUE} for an unknown source.
+         */
+        int priority(@CheckForNull String id) {
+            Integer priority = priorities.get(id);
+            return priority == null ? Integer.MAX_VALUE : priority;
         }
     }
 
@@ -1178,9 +1520,14 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
     @Extension
     public static class SCMEventListenerImpl extends SCMEventListener {
 
-        private final EventOutputStreams globalEvents = createGlobalEvents();
+        private final AsyncEventLog globalEvents = createGlobalEvents();
+
+        /**
+         * Dispatches the per-project work of head events.
+         */
+        private final SCMHeadEventDispatcher dispatcher = new SCMHeadEventDispatcher(this::globalEventsListener);
 
-        private EventOutputStreams createGlobalEvents() {
+        private AsyncEventLog createGlobalEvents() {
             File logsDir = new File(Jenkins.get().getRootDir(), "logs");
             if (!logsDir.isDirectory() && !logsDir.mkdirs()) {
                 LOGGER.log(Level.WARNING, "Could not create logs directory: {0}", logsDir);
@@ -1194,19 +1541,7 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
                     }
                 }
             }
-            return new EventOutputStreams(new EventOutputStreams.OutputFile() {
-                @NonNull
-                @Override
-                public File get() {
-                    return eventsFile;
-                }
-            },
-                250, TimeUnit.MILLISECONDS,
-                1024,
-                true,
-                FileUtils.ONE_MB,
-                5
-            );
+            return new AsyncEventLog(eventsFile, FileUtils.ONE_MB, 5);
         }
 
         /**
@@ -1278,11 +1613,48 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
             }
         }
 
+        /**
+         * Records how long the work for an event was queued before it could be processed and how many earlier events
+         * it replaced.
+         *
+         * @param listener  the project's events listener.
+         * @param lag       the queue lag in milliseconds.
+         * @param coalesced the number of earlier events that were coalesced into this one.
+         */
+        private static void logDispatch(TaskListener listener, long lag, int coalesced) {
+            if (lag > 0) {
+                listener.getLogger().format("Event was queued for %s before processing%n", Util.getTimeSpanString(lag));
+            }
+            if (coalesced > 0) {
+                listener.getLogger().format("Event replaced %d earlier events for the same branches%n", coalesced);
+            }
+        }
+
+        /**
+         * Computes the key used to coalesce a burst of events for the same branches of a project. Only
+         * {@link SCMEvent.Type#UPDATED} events are coalesced as it is only the latest revision that matters.
+         *
+         * @param event   the event.
+         * @param matches the matched heads of the project keyed by source.
+         * @return the key or {@code null} if the event should not be coalesced.
+         */
+        @CheckForNull
+        private static String coalesceKey(SCMHeadEvent<?> event, Map<SCMSource, SCMHead> matches) {
+            if (SCMEvent.Type.UPDATED != event.getType()) {
+                return null;
+            }
+            Set<String> keys = new TreeSet<>();
+            for (Map.Entry<SCMSource, SCMHead> m : matches.entrySet()) {
+                keys.add(m.getKey().getId() + '/' + m.getValue().getName());
+            }
+            return String.join("\u0000", keys);
+        }
+
         private int processHeadCreate(SCMHeadEvent<?> event, TaskListener global, String eventDescription,
                                       String eventType, String eventOrigin, long eventTimestamp, int matchCount)
             throws IOException, InterruptedException {
             Set<String> sourceIds = new HashSet<>();
-            for (MultiBranchProject<?, ?> p : Jenkins.get().getAllItems(MultiBranchProject.class)) {
+            for (MultiBranchProject<?, ?> p : SCMEventRoutingIndex.candidates(event)) {
                 String pFullName = p.getFullName();
                 if (!p.isBuildable()) {
                     LOGGER.log(Level.FINER, "{0} {1} {2,date} {2,time}: Ignoring {3} because it is disabled",
@@ -1403,48 +1775,52 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
                     sourceIds.add(source.getId());
                 }
                 if (haveMatch) {
-                    long start = System.currentTimeMillis();
-                    try (StreamTaskListener listener = p.getComputation().createEventsListener();
-                         ChildObserver childObserver = p.openEventsChildObserver()) {
-                        try {
-                            listener.getLogger().format("[%tc] Received %s %s event from %s with timestamp %tc%n",
-                                start, eventDescription, eventType, eventOrigin, eventTimestamp);
-                            for (SCMSource source : p.getSCMSources()) {
-                                if (event.isMatch(source)) {
-                                    source.fetch(
-                                        p.getSCMSourceCriteria(source),
-                                        p.new SCMHeadObserverImpl(
-                                            source,
-                                            childObserver,
-                                            listener,
-                                            _factory,
-                                            new EventCauseFactory(event),
-                                            event),
-                                        event,
-                                        listener
-                                    );
+                    dispatcher.dispatch(p, eventDescription, global, (globalLog, lag, coalesced) -> {
+                        long start = System.currentTimeMillis();
+                        try (StreamTaskListener listener = p.getComputation().createEventsListener();
+                             ChildObserver childObserver = p.openEventsChildObserver()) {
+                            try {
+                                listener.getLogger().format("[%tc] Received %s %s event from %s with timestamp %tc%n",
+                                    start, eventDescription, eventType, eventOrigin, eventTimestamp);
+                                logDispatch(listener, lag, coalesced);
+                                AdaptiveIndexing.eventProcessed(p);
+                                for (SCMSource source : p.getSCMSources()) {
+                                    if (event.isMatch(source)) {
+                                        source.fetch(
+                                            p.getSCMSourceCriteria(source),
+                                            p.new SCMHeadObserverImpl(
+                                                source,
+                                                childObserver,
+                                                listener,
+                                                _factory,
+                                                new EventCauseFactory(event),
+                                                event),
+                                            event,
+                                            listener
+                                        );
+                                    }
                                 }
+                            } catch (IOException e) {
+                                printStackTrace(e, listener.error(e.getMessage()));
+                            } catch (InterruptedException e) {
+                                listener.error(e.getMessage());
+                                throw e;
+                            } finally {
+                                long end = System.currentTimeMillis();
+                                listener.getLogger()
+                                    .format("[%tc] %s %s event from %s with timestamp %tc processed in %s%n",
+                                        end, eventDescription, eventType, eventOrigin, eventTimestamp,
+                                        Util.getTimeSpanString(end - start));
                             }
                         } catch (IOException e) {
-                            printStackTrace(e, listener.error(e.getMessage()));
+                            printStackTrace(e, globalLog.error("[%tc] %s encountered an error while processing %s %s event from %s with timestamp %tc",
+                                System.currentTimeMillis(), ModelHyperlinkNote.encodeTo(p), eventDescription, eventType, eventOrigin, eventTimestamp));
                         } catch (InterruptedException e) {
-                            listener.error(e.getMessage());
+                            globalLog.error("[%tc] %s was interrupted while processing %s %s event from %s with timestamp %tc",
+                                System.currentTimeMillis(), ModelHyperlinkNote.encodeTo(p), eventDescription, eventType, eventOrigin, eventTimestamp);
                             throw e;
-                        } finally {
-                            long end = System.currentTimeMillis();
-                            listener.getLogger()
-                                .format("[%tc] %s %s event from %s with timestamp %tc processed in %s%n",
-                                    end, eventDescription, eventType, eventOrigin, eventTimestamp,
-                                    Util.getTimeSpanString(end - start));
                         }
-                    } catch (IOException e) {
-                        printStackTrace(e, global.error("[%tc] %s encountered an error while processing %s %s event from %s with timestamp %tc",
-                            System.currentTimeMillis(), ModelHyperlinkNote.encodeTo(p), eventDescription, eventType, eventOrigin, eventTimestamp));
-                    } catch (InterruptedException e) {
-                        global.error("[%tc] %s was interrupted while processing %s %s event from %s with timestamp %tc",
-                            System.currentTimeMillis(), ModelHyperlinkNote.encodeTo(p), eventDescription, eventType, eventOrigin, eventTimestamp);
-                        throw e;
-                    }
+                    });
                 }
             }
             return matchCount;
@@ -1457,7 +1833,7 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
             Set<String> candidateNames = new HashSet<>();
             Map<SCMSource, Map<SCMHead, SCMRevision>> revisionMaps = new IdentityHashMap<>();
             Set<Job<?, ?>> jobs = new HashSet<>();
-            for (MultiBranchProject<?, ?> p : Jenkins.get().getAllItems(MultiBranchProject.class)) {
+            for (MultiBranchProject<?, ?> p : SCMEventRoutingIndex.candidates(event)) {
                 String pFullName = p.getFullName();
                 if (!p.isBuildable()) {
                     LOGGER.log(Level.FINER, "{0} {1} {2,date} {2,time}: Ignoring {3} because it is disabled",
@@ -1546,27 +1922,23 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
                             );
 
                             // check who has priority
+                            SourcesSnapshot snapshot = p.sourcesSnapshot();
+                            int oldPriority = snapshot.priority(src.getId());
                             int ourPriority = Integer.MAX_VALUE;
-                            int oldPriority = Integer.MAX_VALUE;
                             SCMSource ourSource = null;
-                            int priority = 1;
-                            for (SCMSource s : p.getSCMSources()) {
-                                String sId = s.getId();
-                                Map<SCMHead, SCMRevision> rMap = revisionMaps.get(s);
-                                if (ourPriority > priority && oldPriority > priority && rMap != null) {
+                            for (Map.Entry<SCMSource, Map<SCMHead, SCMRevision>> r : revisionMaps.entrySet()) {
+                                int priority = snapshot.priority(r.getKey().getId());
+                                if (priority >= ourPriority || priority >= oldPriority) {
                                     // only need to check for takeover when the event is higher priority
-                                    for (SCMHead h : rMap.keySet()) {
-                                        if (branch.getName().equals(h.getName())) {
-                                            ourPriority = priority;
-                                            ourSource = s;
-                                            break;
-                                        }
-                                    }
+                                    continue;
                                 }
-                                if (sId.equals(src.getId())) {
-                                    oldPriority = priority;
+                                for (SCMHead h : r.getValue().keySet()) {
+                                    if (branch.getName().equals(h.getName())) {
+                                        ourPriority = priority;
+                                        ourSource = r.getKey();
+                                        break;
+                                    }
                                 }
-                                priority++;
                             }
                             if (oldPriority < ourPriority) {
                                 LOGGER.log(Level.FINEST,
@@ -1643,75 +2015,82 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
                 if (!matches.isEmpty()) {
                     matchCount++;
                     global.getLogger().format("Found match against %s%n", pFullName);
-                    long start = System.currentTimeMillis();
-                    try (StreamTaskListener listener = p.getComputation().createEventsListener();
-                         ChildObserver childObserver = p.openEventsChildObserver()) {
-                        try {
-                            listener.getLogger().format("[%tc] Received %s %s event from %s with timestamp %tc%n",
-                                start, eventDescription, eventType, eventOrigin, eventTimestamp);
-                            for (Map.Entry<SCMSource, SCMHead> m : matches.entrySet()) {
-                                m.getKey().fetch(
-                                    p.getSCMSourceCriteria(m.getKey()),
-                                    p.new SCMHeadObserverImpl(
-                                        m.getKey(),
-                                        childObserver,
-                                        listener,
-                                        _factory,
-                                        new EventCauseFactory(event),
-                                        event),
-                                    event,
-                                    listener
-                                );
-                            }
-                            // now dis-associate branches that no-longer exist
-                            Set<String> names = childObserver.observed();
-                            for (Job<?, ?> j : jobs) {
-                                if (names.contains(j.getName())) {
-                                    // observed, so not dead
-                                    continue;
+                    final Map<SCMSource, SCMHead> _matches = new IdentityHashMap<>(matches);
+                    final Set<Job<?, ?>> _jobs = new HashSet<>(jobs);
+                    dispatcher.dispatch(p, eventDescription, global, coalesceKey(event, _matches),
+                        (globalLog, lag, coalesced) -> {
+                        long start = System.currentTimeMillis();
+                        try (StreamTaskListener listener = p.getComputation().createEventsListener();
+                             ChildObserver childObserver = p.openEventsChildObserver()) {
+                            try {
+                                listener.getLogger().format("[%tc] Received %s %s event from %s with timestamp %tc%n",
+                                    start, eventDescription, eventType, eventOrigin, eventTimestamp);
+                                logDispatch(listener, lag, coalesced);
+                                AdaptiveIndexing.eventProcessed(p);
+                                for (Map.Entry<SCMSource, SCMHead> m : _matches.entrySet()) {
+                                    m.getKey().fetch(
+                                        p.getSCMSourceCriteria(m.getKey()),
+                                        p.new SCMHeadObserverImpl(
+                                            m.getKey(),
+                                            childObserver,
+                                            listener,
+                                            _factory,
+                                            new EventCauseFactory(event),
+                                            event),
+                                        event,
+                                        listener
+                                    );
                                 }
-                                Branch branch = _factory.getBranch(j);
-                                String sourceId = branch.getSourceId();
-                                boolean foundSource = false;
-                                for (SCMSource s : matches.keySet()) {
-                                    if (sourceId.equals(s.getId())) {
-                                        foundSource = true;
+                                // now dis-associate branches that no-longer exist
+                                Set<String> names = childObserver.observed();
+                                for (Job<?, ?> j : _jobs) {
+                                    if (names.contains(j.getName())) {
+                                        // observed, so not dead
+                                        continue;
                                     }
+                                    Branch branch = _factory.getBranch(j);
+                                    String sourceId = branch.getSourceId();
+                                    boolean foundSource = false;
+                                    for (SCMSource s : _matches.keySet()) {
+                                        if (sourceId.equals(s.getId())) {
+                                            foundSource = true;
+                                        }
+                                    }
+                                    if (!foundSource) {
+                                        // not safe to switch to a dead branch
+                                        continue;
+                                    }
+                                    _factory.decorate(_factory.setBranch(
+                                        j,
+                                        new Branch.Dead(branch)
+                                    ));
+                                    j.save();
                                 }
-                                if (!foundSource) {
-                                    // not safe to switch to a dead branch
-                                    continue;
-                                }
-                                _factory.decorate(_factory.setBranch(
-                                    j,
-                                    new Branch.Dead(branch)
-                                ));
-                                j.save();
+                            } catch (IOException e) {
+                                printStackTrace(e, listener.error(e.getMessage()));
+                            } catch (InterruptedException e) {
+                                listener.error(e.getMessage());
+                                throw e;
+                            } finally {
+                                long end = System.currentTimeMillis();
+                                listener.getLogger()
+                                    .format("[%tc] %s %s event from %s with timestamp %tc processed in %s%n",
+                                        end, eventDescription, eventType, eventOrigin, eventTimestamp,
+                                        Util.getTimeSpanString(end - start));
                             }
                         } catch (IOException e) {
-                            printStackTrace(e, listener.error(e.getMessage()));
+                            printStackTrace(e, globalLog.error(
+                                "[%tc] %s encountered an error while processing %s %s event from %s with timestamp %tc",
+                                System.currentTimeMillis(), ModelHyperlinkNote.encodeTo(p), eventDescription, eventType,
+                                eventOrigin, eventTimestamp));
                         } catch (InterruptedException e) {
-                            listener.error(e.getMessage());
+                            globalLog.error(
+                                "[%tc] %s was interrupted while processing %s %s event from %s with timestamp %tc",
+                                System.currentTimeMillis(), ModelHyperlinkNote.encodeTo(p), eventDescription, eventType,
+                                eventOrigin, eventTimestamp);
                             throw e;
-                        } finally {
-                            long end = System.currentTimeMillis();
-                            listener.getLogger()
-                                .format("[%tc] %s %s event from %s with timestamp %tc processed in %s%n",
-                                    end, eventDescription, eventType, eventOrigin, eventTimestamp,
-                                    Util.getTimeSpanString(end - start));
                         }
-                    } catch (IOException e) {
-                        printStackTrace(e, global.error(
-                            "[%tc] %s encountered an error while processing %s %s event from %s with timestamp %tc",
-                            System.currentTimeMillis(), ModelHyperlinkNote.encodeTo(p), eventDescription, eventType,
-                            eventOrigin, eventTimestamp));
-                    } catch (InterruptedException e) {
-                        global.error(
-                            "[%tc] %s was interrupted while processing %s %s event from %s with timestamp %tc",
-                            System.currentTimeMillis(), ModelHyperlinkNote.encodeTo(p), eventDescription, eventType,
-                            eventOrigin, eventTimestamp);
-                        throw e;
-                    }
+                    });
                 } else {
                     // didn't match an existing branch, maybe the criteria now match against an updated branch
                     boolean haveMatch = false;
@@ -1733,55 +2112,59 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
                         }
                     }
                     if (haveMatch) {
-                        long start = System.currentTimeMillis();
-                        try (StreamTaskListener listener = p.getComputation().createEventsListener();
-                             ChildObserver childObserver = p.openEventsChildObserver()) {
-                            listener.getLogger().format("[%tc] Received %s %s event from %s with timestamp %tc%n",
-                                start, eventDescription, eventType, eventOrigin, eventTimestamp);
-                            try {
-                                for (SCMSource source : p.getSCMSources()) {
-                                    if (event.isMatch(source)) {
-                                        source.fetch(
-                                            p.getSCMSourceCriteria(source),
-                                            p.new SCMHeadObserverImpl(
-                                                source,
-                                                childObserver,
-                                                listener,
-                                                _factory,
-                                                new EventCauseFactory(event),
-                                                event
-                                            ),
-                                            event,
-                                            listener
-                                        );
+                        dispatcher.dispatch(p, eventDescription, global, (globalLog, lag, coalesced) -> {
+                            long start = System.currentTimeMillis();
+                            try (StreamTaskListener listener = p.getComputation().createEventsListener();
+                                 ChildObserver childObserver = p.openEventsChildObserver()) {
+                                listener.getLogger().format("[%tc] Received %s %s event from %s with timestamp %tc%n",
+                                    start, eventDescription, eventType, eventOrigin, eventTimestamp);
+                                logDispatch(listener, lag, coalesced);
+                                AdaptiveIndexing.eventProcessed(p);
+                                try {
+                                    for (SCMSource source : p.getSCMSources()) {
+                                        if (event.isMatch(source)) {
+                                            source.fetch(
+                                                p.getSCMSourceCriteria(source),
+                                                p.new SCMHeadObserverImpl(
+                                                    source,
+                                                    childObserver,
+                                                    listener,
+                                                    _factory,
+                                                    new EventCauseFactory(event),
+                                                    event
+                                                ),
+                                                event,
+                                                listener
+                                            );
+                                        }
                                     }
+                                } catch (IOException e) {
+                                    printStackTrace(e, listener.error(e.getMessage()));
+                                } catch (InterruptedException e) {
+                                    listener.error(e.getMessage());
+                                    throw e;
+                                } finally {
+                                    long end = System.currentTimeMillis();
+                                    listener.getLogger().format(
+                                        "[%tc] %s %s event from %s with timestamp %tc processed in %s%n",
+                                        end, eventDescription, eventType, eventOrigin, eventTimestamp,
+                                        Util.getTimeSpanString(end - start));
                                 }
                             } catch (IOException e) {
-                                printStackTrace(e, listener.error(e.getMessage()));
+                                printStackTrace(e, globalLog.error(
+                                    "[%tc] %s encountered an error while processing %s %s event from %s with "
+                                        + "timestamp %tc",
+                                    System.currentTimeMillis(), ModelHyperlinkNote.encodeTo(p), eventDescription, eventType,
+                                    eventOrigin, eventTimestamp));
                             } catch (InterruptedException e) {
-                                listener.error(e.getMessage());
+                                globalLog.error(
+                                    "[%tc] %s was interrupted while processing %s %s event from %s with "
+                                        + "timestamp %tc",
+                                    System.currentTimeMillis(), ModelHyperlinkNote.encodeTo(p), eventDescription, eventType,
+                                    eventOrigin, eventTimestamp);
                                 throw e;
-                            } finally {
-                                long end = System.currentTimeMillis();
-                                listener.getLogger().format(
-                                    "[%tc] %s %s event from %s with timestamp %tc processed in %s%n",
-                                    end, eventDescription, eventType, eventOrigin, eventTimestamp,
-                                    Util.getTimeSpanString(end - start));
                             }
-                        } catch (IOException e) {
-                            printStackTrace(e, global.error(
-                                "[%tc] %s encountered an error while processing %s %s event from %s with "
-                                    + "timestamp %tc",
-                                System.currentTimeMillis(), ModelHyperlinkNote.encodeTo(p), eventDescription, eventType,
-                                eventOrigin, eventTimestamp));
-                        } catch (InterruptedException e) {
-                            global.error(
-                                "[%tc] %s was interrupted while processing %s %s event from %s with "
-                                    + "timestamp %tc",
-                                System.currentTimeMillis(), ModelHyperlinkNote.encodeTo(p), eventDescription, eventType,
-                                eventOrigin, eventTimestamp);
-                            throw e;
-                        }
+                        });
                     }
                 }
             }
@@ -1805,8 +2188,7 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
                 if (SCMEvent.Type.UPDATED == event.getType()) {
                     // we are only interested in updates as they would trigger the actions being updated
                     try {
-                        for (MultiBranchProject<?, ?> p : Jenkins.get()
-                            .getAllItems(MultiBranchProject.class)) {
+                        for (MultiBranchProject<?, ?> p : SCMEventRoutingIndex.candidates(event)) {
                             if (!p.isBuildable()) {
                                 if (LOGGER.isLoggable(Level.FINER)) {
                                     LOGGER.log(Level.FINER,
@@ -2012,6 +2394,26 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
          */
         @CheckForNull
         private final SCMHeadEvent<?> event;
+        /**
+         * The pool to observe heads concurrently or {@code null} to observe heads on the calling thread.
+         */
+        @CheckForNull
+        private final HeadObservationPool pool;
+        /**
+         * The batch to defer saving changed projects to or {@code null} to save them immediately.
+         */
+        @CheckForNull
+        private final IndexingWriteBatch batch;
+        /**
+         * Where to record the observed heads or {@code null}.
+         */
+        @CheckForNull
+        private Set<String> recorded;
+        /**
+         * The checkpoint to skip and record processed heads with or {@code null}.
+         */
+        @CheckForNull
+        private IndexingCheckpoint checkpoint;
 
         /**
          * Constructor.
@@ -2032,6 +2434,37 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
         public SCMHeadObserverImpl(@NonNull SCMSource source, @NonNull ChildObserver<P> observer,
                                    @NonNull TaskListener listener, @NonNull BranchProjectFactory<P, R> _factory,
                                    @NonNull CauseFactory causeFactory, @CheckForNull SCMHeadEvent<?> event) {
+            this(source, observer, listener, _factory, causeFactory, event, null, null);
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param source
+         *     The source that we are observing.
+         * @param observer
+         *     The child observer.
+         * @param listener
+         *     The task listener.
+         * @param _factory
+         *     The project factory.
+         * @param causeFactory
+         *     A source of {@link Cause} instances to use when triggering builds.
+         * @param event
+         *     The optional event to use when scoping queries.
+         * @param pool
+         *     The pool to observe heads concurrently or {@code null} to observe heads on the calling thread, when
+         *     supplied the caller must {@link HeadObservationPool#awaitCompletion()} after the fetch.
+         * @param batch
+         *     The batch to defer saving changed projects to or {@code null} to save them immediately, when supplied
+         *     the caller must {@link IndexingWriteBatch#flush()} after the fetch.
+         */
+        SCMHeadObserverImpl(@NonNull SCMSource source, @NonNull ChildObserver<P> observer,
+                            @NonNull TaskListener listener, @NonNull BranchProjectFactory<P, R> _factory,
+                            @NonNull CauseFactory causeFactory, @CheckForNull SCMHeadEvent<?> event,
+                            @CheckForNull HeadObservationPool pool, @CheckForNull IndexingWriteBatch batch) {
+            this.pool = pool;
+            this.batch = batch;
             this.source = source;
             this.observer = observer;
             this.listener = listener;
@@ -2040,18 +2473,92 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
             this.event = event;
         }
 
+        /**
+         * Records every observed head into the supplied map.
+         *
+         * @param recorded the set to record the {@link SCMHead#getName()} of the observed heads into.
+         * @return this observer.
+         */
+        SCMHeadObserverImpl recordingInto(@NonNull Set<String> recorded) {
+            this.recorded = recorded;
+            return this;
+        }
+
+        /**
+         * Skips the heads that an interrupted indexing already processed and records every processed head into the
+         * supplied checkpoint.
+         *
+         * @param checkpoint the checkpoint or {@code null}.
+         * @return this observer.
+         */
+        SCMHeadObserverImpl checkpointingInto(@CheckForNull IndexingCheckpoint checkpoint) {
+            this.checkpoint = checkpoint;
+            return this;
+        }
+
         /**
          * {@inheritDoc}
          */
         @Override
         public void observe(@NonNull SCMHead head, @NonNull SCMRevision revision) throws IOException, InterruptedException {
+            if (checkpoint != null && checkpoint.isProcessed(source.getId(), head.getName(), revision.toString())
+                && skipProcessed(head, revision)) {
+                return;
+            }
             Branch branch = newBranch(source, head);
+            if (pool == null) {
+                observe(head, revision, branch);
+                processed(head, revision);
+            } else {
+                pool.submit(branch.getEncodedName(), () -> {
+                    observe(head, revision, branch);
+                    processed(head, revision);
+                });
+            }
+        }
+
+        /**
+         * Marks the branch project of a head that an interrupted indexing already processed as observed.
+         *
+         * @param head     the head.
+         * @param revision the revision.
+         * @return {@code false} if the head must be processed after all because its branch project does not exist.
+         * @throws InterruptedException if interrupted.
+         */
+        private boolean skipProcessed(@NonNull SCMHead head, @NonNull SCMRevision revision)
+            throws InterruptedException {
+            String encodedName = NameEncoder.encode(head.getName());
+            if (getItem(encodedName) == null) {
+                return false;
+            }
+            P project = observer.shouldUpdate(encodedName);
+            try {
+                if (recorded != null && project != null && _factory.isProject(project)) {
+                    recorded.add(head.getName());
+                }
+            } finally {
+                observer.completed(encodedName);
+            }
+            return true;
+        }
+
+        private void processed(@NonNull SCMHead head, @NonNull SCMRevision revision) throws InterruptedException {
+            if (checkpoint != null) {
+                checkpoint.processed(source.getId(), head.getName(), revision.toString());
+            }
+        }
+
+        private void observe(@NonNull SCMHead head, @NonNull SCMRevision revision, @NonNull Branch branch)
+            throws IOException, InterruptedException {
             String rawName = branch.getName();
             String encodedName = branch.getEncodedName();
             P project = observer.shouldUpdate(encodedName);
             try {
                 Branch origBranch = getOrigBranch(project);
                 setBranchActions(head, branch, origBranch);
+                if (recorded != null) {
+                    recorded.add(rawName);
+                }
                 Action[] revisionActions = getRevisionActions(revision, rawName);
                 if (project != null) {
                     if (origBranch == null) {
@@ -2071,8 +2578,7 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
                 || !(source.getId().equals(origBranch.getSourceId()));
             boolean needSave = !branch.equals(origBranch)
                 || !branch.getActions().equals(origBranch.getActions())
-                || !Util.getDigestOf(Items.XSTREAM2.toXML(branch.getScm()))
-                .equals(Util.getDigestOf(Items.XSTREAM2.toXML(origBranch.getScm())));
+                || !branch.getScmDigest().equals(origBranch.getScmDigest());
             _factory.decorate(_factory.setBranch(project, branch));
 
             String displayName = getProjectDisplayName(project, rawName);
@@ -2085,6 +2591,7 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
 
             if (rebuild) {
                 needSave = true;
+                driftDetected();
                 listener.getLogger().format(
                     "%s reopened: %s (%s)%n",
                     StringUtils.defaultIfEmpty(head.getPronoun(), "Branch"),
@@ -2102,6 +2609,7 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
                 if (changesDetected(revision, project, scmLastBuiltRevision)) {
                     listener.getLogger()
                         .format("Changes detected: %s (%s → %s)%n", rawName, scmLastBuiltRevision, revision);
+                    driftDetected();
 
                     needSave = true;
                     // get the previous seen revision
@@ -2116,10 +2624,17 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
 
             try {
                 if (needSave) {
-                    project.save();
+                    if (batch != null) {
+                        batch.save(project, rawName);
+                    } else {
+                        project.save();
+                    }
                 }
             } catch (IOException e) {
                 printStackTrace(e, listener.error("Could not save changes to " + rawName));
+            } catch (InterruptedException e) {
+                // the batch was flushed on our thread and the indexing is being aborted
+                Thread.currentThread().interrupt();
             }
         }
 
@@ -2148,9 +2663,19 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
             } catch (IOException e) {
                 // Ignored
             }
+            driftDetected();
             doAutomaticBuilds(head, revision, rawName, project, revisionActions, null, null);
         }
 
+        /**
+         * Records that an indexing found a change that events had missed.
+         */
+        private void driftDetected() {
+            if (event == null) {
+                AdaptiveIndexing.driftDetected(MultiBranchProject.this);
+            }
+        }
+
         private String getProjectDisplayName(@NonNull P project, @NonNull String rawName) {
             MultiBranchProjectDisplayNamingStrategy naming = null;
             List<SCMSourceTrait> traits = source.getTraits();
@@ -2243,19 +2768,9 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
                     if (!(origBranch instanceof Branch.Dead)) {
                         if (!source.getId().equals(origBranch.getSourceId())) {
                             // check who has priority
-                            int ourPriority = Integer.MAX_VALUE;
-                            int oldPriority = Integer.MAX_VALUE;
-                            int p = 1;
-                            for (BranchSource s : sources) {
-                                String sId = s.getSource().getId();
-                                if (sId.equals(source.getId())) {
-                                    ourPriority = p;
-                                }
-                                if (sId.equals(origBranch.getSourceId())) {
-                                    oldPriority = p;
-                                }
-                                p++;
-                            }
+                            SourcesSnapshot snapshot = sourcesSnapshot();
+                            int ourPriority = snapshot.priority(source.getId());
+                            int oldPriority = snapshot.priority(origBranch.getSourceId());
                             if (oldPriority < ourPriority) {
                                 listener.getLogger().println(
                                     "Ignoring " + ModelHyperlinkNote.encodeTo(project) + " from source #"
@@ -2314,6 +2829,10 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
             } catch (IOException e) {
                 printStackTrace(e, listener.error("Could not update last seen revision hash"));
             }
+            if (batch != null) {
+                // only once the revisions are recorded, or a concurrent flush could miss them
+                batch.revised(project);
+            }
         }
 
         /**
@@ -2333,13 +2852,7 @@ public abstract class MultiBranchProject<P extends Job<P, R> & TopLevelItem,
                                          @NonNull SCMRevision currRevision,
                                          @CheckForNull SCMRevision lastBuiltRevision,
                                          @CheckForNull SCMRevision lastSeenRevision) {
-            BranchSource branchSource = null;
-            for (BranchSource s : MultiBranchProject.this.sources) {
-                if (s.getSource().getId().equals(source.getId())) {
-                    branchSource = s;
-                    break;
-                }
-            }
+            BranchSource branchSource = sourcesSnapshot().branchSource(source.getId());
             if (branchSource == null) {
                 // no match, means no build
                 return false;
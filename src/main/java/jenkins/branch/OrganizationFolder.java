@@ -31,7 +31,6 @@ import com.cloudbees.hudson.plugins.folder.FolderIcon;
 import com.cloudbees.hudson.plugins.folder.FolderIconDescriptor;
 import com.cloudbees.hudson.plugins.folder.computed.ChildObserver;
 import com.cloudbees.hudson.plugins.folder.computed.ComputedFolder;
-import com.cloudbees.hudson.plugins.folder.computed.EventOutputStreams;
 import com.cloudbees.hudson.plugins.folder.computed.FolderComputation;
 import com.cloudbees.hudson.plugins.folder.computed.PeriodicFolderTrigger;
 import com.cloudbees.hudson.plugins.folder.views.AbstractFolderViewHolder;
@@ -70,7 +69,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
@@ -927,9 +925,9 @@ public final class OrganizationFolder extends ComputedFolder<MultiBranchProject<
     @Extension
     public static class SCMEventListenerImpl extends SCMEventListener {
 
-        private final EventOutputStreams globalEvents = createGlobalEvents();
+        private final AsyncEventLog globalEvents = createGlobalEvents();
 
-        private EventOutputStreams createGlobalEvents() {
+        private AsyncEventLog createGlobalEvents() {
             File logsDir = new File(Jenkins.get().getRootDir(), "logs");
             if (!logsDir.isDirectory() && !logsDir.mkdirs()) {
                 LOGGER.log(Level.WARNING, "Could not create logs directory: {0}", logsDir);
@@ -943,19 +941,7 @@ public final class OrganizationFolder extends ComputedFolder<MultiBranchProject<
                     }
                 }
             }
-            return new EventOutputStreams(new EventOutputStreams.OutputFile() {
-                @NonNull
-                @Override
-                public File get() {
-                    return eventsFile;
-                }
-            },
-                    250, TimeUnit.MILLISECONDS,
-                    1024,
-                    true,
-                    32 * 1024,
-                    5
-            );
+            return new AsyncEventLog(eventsFile, 32 * 1024, 5);
         }
 
         /**
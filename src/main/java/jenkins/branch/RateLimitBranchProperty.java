@@ -23,6 +23,8 @@
  */
 package jenkins.branch;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.model.Cause;
@@ -32,22 +34,27 @@ import hudson.model.JobPropertyDescriptor;
 import hudson.model.Queue;
 import hudson.model.Run;
 import hudson.model.queue.CauseOfBlockage;
+import hudson.model.queue.QueueListener;
 import hudson.model.queue.QueueTaskDispatcher;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
 import net.sf.json.JSONObject;
 import org.jenkinsci.Symbol;
 import org.jvnet.localizer.ResourceBundleHolder;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest2;
 
@@ -67,7 +74,18 @@ public class RateLimitBranchProperty extends BranchProperty {
     /**
      * The durations that we know about.
      */
-    private static final Map<String, Long> DURATIONS = createDurations();
+    static final Map<String, Long> DURATIONS = createDurations();
+
+    /**
+     * Set to {@code true} to enforce every throttle with a token bucket, even those that do not allow bursts.
+     */
+    static /* not final */ boolean TOKEN_BUCKET =
+            SystemProperties.getBoolean(RateLimitBranchProperty.class.getName() + ".tokenBucket", false);
+
+    /**
+     * The token buckets of the throttled jobs, held weakly so that they go away with the job instance.
+     */
+    private static final Cache<Job<?, ?>, TokenBucket> BUCKETS = Caffeine.newBuilder().weakKeys().build();
 
     /**
      * Initializer for {@link #DURATIONS}
@@ -101,6 +119,10 @@ public class RateLimitBranchProperty extends BranchProperty {
      * @since 2.0.16
      */
     private final boolean userBoost;
+    /**
+     * The maximum builds that can start in a burst.
+     */
+    private int burst = 1;
 
     /**
      * Constructor for stapler.
@@ -157,6 +179,25 @@ public class RateLimitBranchProperty extends BranchProperty {
         return userBoost;
     }
 
+    /**
+     * Gets the maximum builds that can start in a burst.
+     *
+     * @return the maximum builds that can start in a burst.
+     */
+    public int getBurst() {
+        return Math.max(1, burst);
+    }
+
+    /**
+     * Sets the maximum builds that can start in a burst.
+     *
+     * @param burst the maximum builds that can start in a burst.
+     */
+    @DataBoundSetter
+    public void setBurst(int burst) {
+        this.burst = Math.min(Math.max(1, burst), 1000);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -172,7 +213,12 @@ public class RateLimitBranchProperty extends BranchProperty {
             public List<JobProperty<? super P>> jobProperties(
                     @NonNull List<JobProperty<? super P>> properties) {
                 List<JobProperty<? super P>> result = asArrayList(properties);
-                result.add(new JobPropertyImpl(count == 0 ? null : new Throttle(count, durationName, userBoost)));
+                Throttle throttle = null;
+                if (count != 0) {
+                    throttle = new Throttle(count, durationName, userBoost);
+                    throttle.setBurst(burst);
+                }
+                result.add(new JobPropertyImpl(throttle));
                 return result;
             }
         };
@@ -239,6 +285,10 @@ public class RateLimitBranchProperty extends BranchProperty {
          * @since 2.0.16
          */
         private final boolean userBoost;
+        /**
+         * The maximum builds that can start in a burst.
+         */
+        private int burst = 1;
 
         /**
          * Constructor for stapler.
@@ -280,6 +330,25 @@ public class RateLimitBranchProperty extends BranchProperty {
         public boolean isUserBoost() {
             return userBoost;
         }
+
+        /**
+         * Gets the maximum builds that can start in a burst.
+         *
+         * @return the maximum builds that can start in a burst.
+         */
+        public int getBurst() {
+            return Math.max(1, burst);
+        }
+
+        /**
+         * Sets the maximum builds that can start in a burst.
+         *
+         * @param burst the maximum builds that can start in a burst.
+         */
+        @DataBoundSetter
+        public void setBurst(int burst) {
+            this.burst = Math.min(Math.max(1, burst), 1000);
+        }
     }
 
     public static class JobPropertyImpl extends JobProperty<Job<?, ?>> {
@@ -299,6 +368,10 @@ public class RateLimitBranchProperty extends BranchProperty {
          * @since 2.0.16
          */
         private final boolean userBoost;
+        /**
+         * The maximum builds that can start in a burst, {@code 0} in data from before bursts were supported.
+         */
+        private final int burst;
 
         /**
          * The milliseconds of the duration.
@@ -321,6 +394,7 @@ public class RateLimitBranchProperty extends BranchProperty {
             this.count = throttle == null ? 0 : Math.min(Math.max(0, throttle.getCount()), 1000);
             this.durationName = throttle == null ? "hour" : throttle.getDurationName();
             this.userBoost = throttle == null ? true : throttle.isUserBoost();
+            this.burst = throttle == null ? 1 : throttle.getBurst();
         }
 
         /**
@@ -350,6 +424,24 @@ public class RateLimitBranchProperty extends BranchProperty {
             return userBoost;
         }
 
+        /**
+         * Gets the maximum builds that can start in a burst.
+         *
+         * @return the maximum builds that can start in a burst, never more than {@link #getCount()}.
+         */
+        public int getBurst() {
+            return Math.max(1, Math.min(burst, getCount()));
+        }
+
+        /**
+         * Returns {@code true} if the throttle is enforced with a token bucket.
+         *
+         * @return {@code true} if the throttle is enforced with a token bucket.
+         */
+        boolean isTokenBucket() {
+            return TOKEN_BUCKET || getBurst() > 1;
+        }
+
         /**
          * Gets the duration.
          *
@@ -376,6 +468,7 @@ public class RateLimitBranchProperty extends BranchProperty {
             }
             if (throttle == null) {
                 throttle = new Throttle(count, durationName, userBoost);
+                throttle.setBurst(getBurst());
             }
             return throttle;
         }
@@ -507,6 +600,9 @@ public class RateLimitBranchProperty extends BranchProperty {
                                     property.getDurationName()
                             }
                     );
+                    if (property.isTokenBucket()) {
+                        return canRun(item, job, property);
+                    }
                     Run lastBuild = job.getLastBuild();
                     if (lastBuild != null) {
                         // we don't mind if the project type allows concurrent builds
@@ -555,5 +651,193 @@ public class RateLimitBranchProperty extends BranchProperty {
             }
             return null;
         }
+
+        /**
+         * Enforces the throttle with the token bucket of the job, without looking at its builds or the queue.
+         *
+         * @param item     the item.
+         * @param job      the job.
+         * @param property the throttle.
+         * @return the cause of blockage or {@code null} if the item can run.
+         */
+        private CauseOfBlockage canRun(Queue.Item item, Job<?, ?> job, JobPropertyImpl property) {
+            long now = System.currentTimeMillis();
+            long betweenBuilds = property.getMillisecondsBetweenBuilds();
+            long delay = bucket(job, property, now).delay(item.getId(), now, property.getBurst(), betweenBuilds);
+            if (delay == 0L) {
+                return null;
+            }
+            if (delay < 0L) {
+                LOGGER.log(Level.FINE, "{0} with queue id {1} blocked by an earlier queue item",
+                        new Object[]{
+                                job.getFullName(),
+                                item.getId()
+                        }
+                );
+                return CauseOfBlockage.fromMessage(Messages._RateLimitBranchProperty_BuildBlocked(
+                        new Date(now + betweenBuilds))
+                );
+            }
+            LOGGER.log(Level.FINE, "{0} will be delayed for another {1}ms until a build token is available",
+                    new Object[]{
+                            job.getFullName(),
+                            delay
+                    }
+            );
+            return CauseOfBlockage.fromMessage(Messages._RateLimitBranchProperty_BuildBlocked(
+                    new Date(now + delay))
+            );
+        }
+    }
+
+    /**
+     * Gets the token bucket of a job, creating it from the start time of the last build if necessary.
+     *
+     * @param job      the job.
+     * @param property the throttle.
+     * @param now      the current time.
+     * @return the token bucket.
+     */
+    @NonNull
+    private static TokenBucket bucket(Job<?, ?> job, JobPropertyImpl property, long now) {
+        return BUCKETS.get(job, j -> {
+            Run<?, ?> lastBuild = j.getLastBuild();
+            long betweenBuilds = property.getMillisecondsBetweenBuilds();
+            if (lastBuild == null || betweenBuilds <= 0L) {
+                return new TokenBucket(property.getBurst(), now);
+            }
+            long sinceLastBuild = Math.max(0L, now - lastBuild.getTimeInMillis());
+            return new TokenBucket(Math.min(property.getBurst(), (double) sinceLastBuild / betweenBuilds), now);
+        });
+    }
+
+    /**
+     * The in-memory throttle state of a job: a bucket that refills with one token every
+     * {@link JobPropertyImpl#getMillisecondsBetweenBuilds()} up to {@link JobPropertyImpl#getBurst()} tokens,
+     * where every build start takes one token, and the queue items of the job in the order they were scheduled.
+     */
+    static final class TokenBucket {
+        /**
+         * The available tokens.
+         */
+        private double tokens;
+        /**
+         * When {@link #tokens} was last refilled.
+         */
+        private long lastRefill;
+        /**
+         * The ids of the waiting queue items in the order they were scheduled.
+         */
+        private final LinkedHashSet<Long> waiting = new LinkedHashSet<>();
+
+        /**
+         * Constructor.
+         *
+         * @param tokens the available tokens.
+         * @param now    the current time.
+         */
+        TokenBucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.lastRefill = now;
+        }
+
+        private void refill(long now, int burst, long betweenBuilds) {
+            if (betweenBuilds <= 0L) {
+                tokens = burst;
+            } else if (now > lastRefill) {
+                tokens = Math.min(burst, tokens + (double) (now - lastRefill) / betweenBuilds);
+            } else {
+                tokens = Math.min(burst, tokens);
+            }
+            lastRefill = Math.max(lastRefill, now);
+        }
+
+        /**
+         * Records a queue item of the job.
+         *
+         * @param id the queue item id.
+         */
+        synchronized void enqueue(long id) {
+            waiting.add(id);
+        }
+
+        /**
+         * Records that a queue item of the job has left the queue.
+         *
+         * @param id            the queue item id.
+         * @param started       {@code true} if the item left the queue to start a build.
+         * @param now           the current time.
+         * @param burst         the maximum builds that can start in a burst.
+         * @param betweenBuilds the milliseconds it takes to earn a token.
+         */
+        synchronized void left(long id, boolean started, long now, int burst, long betweenBuilds) {
+            waiting.remove(id);
+            if (started) {
+                refill(now, burst, betweenBuilds);
+                // user boosted builds take a token they may not have, but never more than that
+                tokens = Math.max(0.0, tokens - 1.0);
+            }
+        }
+
+        /**
+         * Checks whether a queue item of the job can start.
+         *
+         * @param id            the queue item id.
+         * @param now           the current time.
+         * @param burst         the maximum builds that can start in a burst.
+         * @param betweenBuilds the milliseconds it takes to earn a token.
+         * @return {@code 0} if the item can start, a negative value if an earlier item must start first or else the
+         * milliseconds until a token is available.
+         */
+        synchronized long delay(long id, long now, int burst, long betweenBuilds) {
+            waiting.add(id);
+            Iterator<Long> first = waiting.iterator();
+            if (first.next() != id) {
+                return -1L;
+            }
+            refill(now, burst, betweenBuilds);
+            if (tokens >= 1.0) {
+                return 0L;
+            }
+            return Math.max(1L, (long) Math.ceil((1.0 - tokens) * betweenBuilds));
+        }
+    }
+
+    /**
+     * Keeps the token buckets up to date with the queue.
+     */
+    @Extension
+    @SuppressWarnings("unused") // instantiated by Jenkins
+    public static class QueueListenerImpl extends QueueListener {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onEnterWaiting(Queue.WaitingItem wi) {
+            if (wi.task instanceof Job) {
+                Job<?, ?> job = (Job) wi.task;
+                JobPropertyImpl property = job.getProperty(JobPropertyImpl.class);
+                if (property != null && property.getCount() > 0 && property.isTokenBucket()) {
+                    bucket(job, property, System.currentTimeMillis()).enqueue(wi.getId());
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onLeft(Queue.LeftItem li) {
+            if (li.task instanceof Job) {
+                Job<?, ?> job = (Job) li.task;
+                TokenBucket bucket = BUCKETS.getIfPresent(job);
+                if (bucket != null) {
+                    JobPropertyImpl property = job.getProperty(JobPropertyImpl.class);
+                    bucket.left(li.getId(), !li.isCancelled(), System.currentTimeMillis(),
+                            property == null ? 1 : property.getBurst(),
+                            property == null ? 0L : property.getMillisecondsBetweenBuilds());
+                }
+            }
+        }
     }
 }
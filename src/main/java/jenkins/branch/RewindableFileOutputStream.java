@@ -102,6 +102,18 @@ class RewindableFileOutputStream extends OutputStream {
         closeCurrent();
     }
 
+    /**
+     * Flushes and forces any data written so far to the storage device.
+     */
+    public synchronized void sync() throws IOException {
+        if (current != null) {
+            current.flush();
+            if (current instanceof FileOutputStream) {
+                ((FileOutputStream) current).getFD().sync();
+            }
+        }
+    }
+
     private void closeCurrent() throws IOException {
         if (current != null) {
             current.close();
@@ -0,0 +1,323 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.branch;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.listeners.ItemListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.scm.api.SCMEvent;
+import jenkins.scm.api.SCMSource;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Maintains a reverse index from the {@link SCMEventRoutingKeyProvider} keys of each {@link SCMSource} to the
+ * {@link MultiBranchProject} instances that own the sources, so that event processing only needs to check the
+ * candidate projects rather than every {@link MultiBranchProject} in the instance.
+ * <p>
+ * Sources that no provider can identify are tracked separately and their projects are always candidates, and when
+ * there are no providers installed event routing falls back to a full scan.
+ */
+@Restricted(NoExternalUse.class)
+@Extension
+public class SCMEventRoutingIndex extends ItemListener {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(SCMEventRoutingIndex.class.getName());
+
+    /**
+     * The projects keyed by the namespaced routing key of their sources.
+     */
+    private final Map<String, Set<MultiBranchProject<?, ?>>> byKey = new HashMap<>();
+
+    /**
+     * The projects that have at least one source identified by a provider, keyed by the provider class name.
+     */
+    private final Map<String, Set<MultiBranchProject<?, ?>>> byProvider = new HashMap<>();
+
+    /**
+     * The projects that have at least one source which no provider could identify.
+     */
+    private final Set<MultiBranchProject<?, ?>> unkeyed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * The entries for each indexed project, used to remove stale mappings.
+     */
+    private final Map<MultiBranchProject<?, ?>, Entry> entries = new IdentityHashMap<>();
+
+    /**
+     * Returns the projects that could be interested in the supplied event.
+     *
+     * @param event the event.
+     * @return the candidate projects, which will be all the projects if the event cannot be routed.
+     */
+    @NonNull
+    static Collection<MultiBranchProject<?, ?>> candidates(@NonNull SCMEvent<?> event) {
+        ExtensionList<SCMEventRoutingIndex> indexes = ExtensionList.lookup(SCMEventRoutingIndex.class);
+        Collection<MultiBranchProject<?, ?>> result = indexes.isEmpty() ? null : indexes.get(0).lookup(event);
+        if (result == null) {
+            result = new ArrayList<>();
+            for (MultiBranchProject<?, ?> p : Jenkins.get().getAllItems(MultiBranchProject.class)) {
+                result.add(p);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Updates the index entry of the supplied project, to be called whenever the sources of the project change.
+     *
+     * @param project the project.
+     */
+    static void update(@NonNull MultiBranchProject<?, ?> project) {
+        for (SCMEventRoutingIndex index : ExtensionList.lookup(SCMEventRoutingIndex.class)) {
+            index.put(project);
+        }
+    }
+
+    /**
+     * Looks up the candidate projects for an event.
+     *
+     * @param event the event.
+     * @return the candidate projects or {@code null} if the event cannot be routed and a full scan is required.
+     */
+    @CheckForNull
+    /*package*/ Collection<MultiBranchProject<?, ?>> lookup(@NonNull SCMEvent<?> event) {
+        List<SCMEventRoutingKeyProvider> providers = SCMEventRoutingKeyProvider.all();
+        if (providers.isEmpty()) {
+            return null;
+        }
+        Map<String, String> eventKeys = new HashMap<>();
+        for (SCMEventRoutingKeyProvider provider : providers) {
+            String key;
+            try {
+                key = provider.keyOf(event);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Could not compute routing key of " + event + " using " + provider, e);
+                return null;
+            }
+            eventKeys.put(provider.getClass().getName(), key);
+        }
+        Set<MultiBranchProject<?, ?>> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        synchronized (this) {
+            result.addAll(unkeyed);
+            for (Map.Entry<String, String> e : eventKeys.entrySet()) {
+                Set<MultiBranchProject<?, ?>> matches = e.getValue() == null
+                    ? byProvider.get(e.getKey())
+                    : byKey.get(namespaced(e.getKey(), e.getValue()));
+                if (matches != null) {
+                    result.addAll(matches);
+                }
+            }
+        }
+        List<MultiBranchProject<?, ?>> candidates = new ArrayList<>(result.size());
+        for (MultiBranchProject<?, ?> p : result) {
+            if (isLive(p)) {
+                candidates.add(p);
+            }
+        }
+        LOGGER.log(Level.FINEST, "{0} routed to {1} candidate projects", new Object[]{event, candidates.size()});
+        return candidates;
+    }
+
+    /**
+     * (Re)indexes the supplied project.
+     *
+     * @param project the project.
+     */
+    /*package*/ void put(@NonNull MultiBranchProject<?, ?> project) {
+        Entry entry = new Entry();
+        List<SCMEventRoutingKeyProvider> providers = SCMEventRoutingKeyProvider.all();
+        for (SCMSource source : project.getSCMSources()) {
+            boolean keyed = false;
+            for (SCMEventRoutingKeyProvider provider : providers) {
+                String key;
+                try {
+                    key = provider.keyOf(source);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Could not compute routing key of " + source + " using " + provider, e);
+                    key = null;
+                }
+                if (key != null) {
+                    keyed = true;
+                    entry.providers.add(provider.getClass().getName());
+                    entry.keys.add(namespaced(provider.getClass().getName(), key));
+                }
+            }
+            entry.unkeyed = entry.unkeyed || !keyed;
+        }
+        synchronized (this) {
+            removeEntry(project);
+            entries.put(project, entry);
+            for (String key : entry.keys) {
+                byKey.computeIfAbsent(key, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(project);
+            }
+            for (String provider : entry.providers) {
+                byProvider.computeIfAbsent(provider, k -> Collections.newSetFromMap(new IdentityHashMap<>()))
+                    .add(project);
+            }
+            if (entry.unkeyed) {
+                unkeyed.add(project);
+            }
+        }
+    }
+
+    /**
+     * Removes the supplied project from the index.
+     *
+     * @param project the project.
+     */
+    /*package*/ synchronized void remove(@NonNull MultiBranchProject<?, ?> project) {
+        removeEntry(project);
+    }
+
+    /**
+     * Removes the projects within the supplied folder from the index, as the folder is deleted without the items
+     * inside it being notified.
+     *
+     * @param folder the folder.
+     */
+    /*package*/ synchronized void removeWithin(@NonNull ItemGroup<?> folder) {
+        String prefix = folder.getFullName() + "/";
+        for (MultiBranchProject<?, ?> project : new ArrayList<>(entries.keySet())) {
+            if (project.getFullName().startsWith(prefix)) {
+                removeEntry(project);
+            }
+        }
+    }
+
+    private void removeEntry(@NonNull MultiBranchProject<?, ?> project) {
+        Entry old = entries.remove(project);
+        if (old == null) {
+            return;
+        }
+        for (String key : old.keys) {
+            removeMapping(byKey, key, project);
+        }
+        for (String provider : old.providers) {
+            removeMapping(byProvider, provider, project);
+        }
+        unkeyed.remove(project);
+    }
+
+    private static void removeMapping(Map<String, Set<MultiBranchProject<?, ?>>> map, String key,
+                                      MultiBranchProject<?, ?> project) {
+        Set<MultiBranchProject<?, ?>> projects = map.get(key);
+        if (projects != null) {
+            projects.remove(project);
+            if (projects.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+
+    private static String namespaced(String provider, String key) {
+        return provider + '\u0000' + key;
+    }
+
+    /**
+     * Guards against a project that has been removed without us being notified.
+     *
+     * @param project the project.
+     * @return {@code true} if the project is still reachable from the root, which a project within a deleted folder
+     * is not even though the folder still holds it.
+     */
+    private static boolean isLive(MultiBranchProject<?, ?> project) {
+        try (ACLContext as = ACL.as2(ACL.SYSTEM2)) {
+            return Jenkins.get().getItemByFullName(project.getFullName()) == project;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onCreated(Item item) {
+        if (item instanceof MultiBranchProject) {
+            put((MultiBranchProject<?, ?>) item);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onDeleted(Item item) {
+        if (item instanceof MultiBranchProject) {
+            remove((MultiBranchProject<?, ?>) item);
+        }
+        if (item instanceof ItemGroup) {
+            removeWithin((ItemGroup<?>) item);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+        if (item instanceof MultiBranchProject) {
+            put((MultiBranchProject<?, ?>) item);
+        }
+    }
+
+    /**
+     * The keys of an indexed project.
+     */
+    private static class Entry {
+        /**
+         * The namespaced keys of the identified sources.
+         */
+        private final Set<String> keys = new HashSet<>();
+        /**
+         * The class names of the providers that identified at least one source.
+         */
+        private final Set<String> providers = new HashSet<>();
+        /**
+         * {@code true} if at least one source could not be identified.
+         */
+        private boolean unkeyed;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.branch;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import jenkins.scm.api.SCMEvent;
+import jenkins.scm.api.SCMSource;
+
+/**
+ * Exposes a stable identity (for example server URL + repository owner + repository name) for {@link SCMSource}
+ * instances and the {@link SCMEvent} instances that could match them. {@link MultiBranchProject} uses these keys to
+ * route events to the handful of projects that could be interested instead of calling
+ * {@link jenkins.scm.api.SCMHeadEvent#isMatch(SCMSource)} against every source of every project.
+ * <p>
+ * The contract is that whenever {@code event.isMatch(source)} could return {@code true}, {@link #keyOf(SCMEvent)}
+ * and {@link #keyOf(SCMSource)} must return the same key (or either of them must return {@code null}). Keys from
+ * different providers are never compared with each other.
+ */
+public abstract class SCMEventRoutingKeyProvider implements ExtensionPoint {
+
+    /**
+     * Returns the routing key of the supplied source.
+     *
+     * @param source the source.
+     * @return the routing key or {@code null} if this provider does not know how to identify the source, in which
+     * case the source will be considered for every event.
+     */
+    @CheckForNull
+    public abstract String keyOf(@NonNull SCMSource source);
+
+    /**
+     * Returns the routing key of the supplied event.
+     *
+     * @param event the event.
+     * @return the routing key or {@code null} if this provider does not know how to identify the event, in which
+     * case the event will be checked against every source that this provider has identified.
+     */
+    @CheckForNull
+    public abstract String keyOf(@NonNull SCMEvent<?> event);
+
+    /**
+     * Returns all the registered {@link SCMEventRoutingKeyProvider} instances.
+     *
+     * @return all the registered {@link SCMEventRoutingKeyProvider} instances.
+     */
+    @NonNull
+    public static ExtensionList<SCMEventRoutingKeyProvider> all() {
+        return ExtensionList.lookup(SCMEventRoutingKeyProvider.class);
+    }
+}
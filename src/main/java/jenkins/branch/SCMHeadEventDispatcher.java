@@ -0,0 +1,430 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.branch;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.util.ClassLoaderSanityThreadFactory;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.ExceptionCatchingThreadFactory;
+import hudson.util.NamingThreadFactory;
+import hudson.util.StreamTaskListener;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.scm.api.SCMHeadEvent;
+import jenkins.security.ImpersonatingExecutorService;
+import jenkins.util.ContextResettingExecutorService;
+import jenkins.util.ErrorLoggingExecutorService;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Dispatches the per-project work of a {@link SCMHeadEvent} so that a slow {@link MultiBranchProject} does not hold up
+ * event processing for every other project.
+ * <p>
+ * The work for each project is queued in arrival order and drained by at most one thread at a time, so events for the
+ * same project are always processed in order, while different projects are processed concurrently on a bounded pool.
+ * When the total number of queued tasks reaches the configured depth, callers block until capacity is available.
+ * <p>
+ * With the default pool size of {@code 0} the work is performed inline on the calling thread, which is the historical
+ * behaviour.
+ * <p>
+ * When a coalescing window is configured (and the pool is enabled) tasks that carry a coalescing key are held back for
+ * the window, and a task dispatched for the same project with the same key while the previous one is still the last
+ * pending task replaces it, so that a burst of events is processed only once, for the latest event.
+ */
+@Restricted(NoExternalUse.class)
+class SCMHeadEventDispatcher {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(SCMHeadEventDispatcher.class.getName());
+
+    /**
+     * The number of threads used to process events, {@code 0} to process events on the thread that received them.
+     */
+    static final int POOL_SIZE =
+        SystemProperties.getInteger(SCMHeadEventDispatcher.class.getName() + ".POOL_SIZE", 0);
+
+    /**
+     * The maximum number of tasks that can be queued across all projects before callers are blocked.
+     */
+    static final int QUEUE_DEPTH =
+        Math.max(1, SystemProperties.getInteger(SCMHeadEventDispatcher.class.getName() + ".QUEUE_DEPTH", 1024));
+
+    /**
+     * How long, in milliseconds, to hold back tasks with a coalescing key so that later tasks for the same key can
+     * replace them, {@code 0} to disable coalescing. Only effective when {@link #POOL_SIZE} is positive.
+     */
+    static final long COALESCE_WINDOW_MILLIS =
+        SystemProperties.getLong(SCMHeadEventDispatcher.class.getName() + ".COALESCE_WINDOW_MILLIS", 0L);
+
+    /**
+     * Supplies the listener for the global events log to tasks that run asynchronously.
+     */
+    @NonNull
+    private final Supplier<StreamTaskListener> globalListener;
+
+    /**
+     * The executor or {@code null} if tasks are run inline.
+     */
+    private final ExecutorService executorService;
+
+    /**
+     * The capacity remaining before callers are blocked.
+     */
+    private final Semaphore capacity;
+
+    /**
+     * The queues of the projects with pending or running tasks.
+     */
+    private final Map<MultiBranchProject<?, ?>, ProjectQueue> queues = new IdentityHashMap<>();
+
+    /**
+     * The coalescing window in milliseconds.
+     */
+    private final long coalesceWindow;
+
+    /**
+     * The number of tasks that have been replaced by a later task with the same coalescing key.
+     */
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param globalListener supplies the listener for the global events log to tasks that run asynchronously.
+     */
+    SCMHeadEventDispatcher(@NonNull Supplier<StreamTaskListener> globalListener) {
+        this(globalListener, POOL_SIZE, QUEUE_DEPTH, COALESCE_WINDOW_MILLIS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param globalListener supplies the listener for the global events log to tasks that run asynchronously.
+     * @param poolSize       the number of threads, {@code 0} to run tasks inline.
+     * @param queueDepth     the maximum number of queued tasks.
+     * @param coalesceWindow the coalescing window in milliseconds, {@code 0} to disable coalescing.
+     */
+    SCMHeadEventDispatcher(@NonNull Supplier<StreamTaskListener> globalListener, int poolSize, int queueDepth,
+                           long coalesceWindow) {
+        this.globalListener = globalListener;
+        this.coalesceWindow = poolSize > 0 ? Math.max(0L, coalesceWindow) : 0L;
+        if (poolSize > 0) {
+            ThreadPoolExecutor tpe = new ThreadPoolExecutor(poolSize, poolSize, 10L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ExceptionCatchingThreadFactory(
+                    new NamingThreadFactory(
+                        new ClassLoaderSanityThreadFactory(new DaemonThreadFactory()),
+                        "SCMHeadEventDispatcher")));
+            tpe.allowCoreThreadTimeOut(true);
+            this.executorService = new ContextResettingExecutorService(
+                new ImpersonatingExecutorService(new ErrorLoggingExecutorService(tpe), ACL.SYSTEM2));
+            this.capacity = new Semaphore(queueDepth, true);
+        } else {
+            this.executorService = null;
+            this.capacity = null;
+        }
+    }
+
+    /**
+     * Returns {@code true} if tasks are run on the calling thread.
+     *
+     * @return {@code true} if tasks are run on the calling thread.
+     */
+    boolean isInline() {
+        return executorService == null;
+    }
+
+    /**
+     * Dispatches the work of an event for a project.
+     *
+     * @param project     the project.
+     * @param description the description of the event, for logging.
+     * @param global      the listener for the global events log of the calling thread.
+     * @param task        the work.
+     * @throws InterruptedException if interrupted while running an inline task or while waiting for queue capacity.
+     */
+    void dispatch(@NonNull MultiBranchProject<?, ?> project, @NonNull String description,
+                  @NonNull TaskListener global, @NonNull Task task) throws InterruptedException {
+        dispatch(project, description, global, null, task);
+    }
+
+    /**
+     * Dispatches the work of an event for a project, replacing the last pending task of the project if it has the
+     * same coalescing key.
+     *
+     * @param project     the project.
+     * @param description the description of the event, for logging.
+     * @param global      the listener for the global events log of the calling thread.
+     * @param key         the coalescing key or {@code null} if the task must not be coalesced.
+     * @param task        the work.
+     * @throws InterruptedException if interrupted while running an inline task or while waiting for queue capacity.
+     */
+    void dispatch(@NonNull MultiBranchProject<?, ?> project, @NonNull String description,
+                  @NonNull TaskListener global, @CheckForNull String key, @NonNull Task task)
+        throws InterruptedException {
+        if (executorService == null) {
+            task.run(global, 0L, 0);
+            return;
+        }
+        if (coalesceWindow <= 0L) {
+            key = null;
+        }
+        if (key != null && coalesce(project, description, key, task)) {
+            global.getLogger().format("[%tc] Coalesced %s with the pending event for %s (%d events coalesced so far)%n",
+                System.currentTimeMillis(), description, project.getFullName(), getCoalescedCount());
+            return;
+        }
+        if (!capacity.tryAcquire()) {
+            LOGGER.log(Level.FINE, "Event queue is full, waiting to dispatch {0} to {1}",
+                new Object[]{description, project.getFullName()});
+            global.getLogger().format("[%tc] Event queue is full with %d events, waiting to dispatch %s to %s%n",
+                System.currentTimeMillis(), getQueueSize(), description, project.getFullName());
+            capacity.acquire();
+        }
+        boolean start;
+        ProjectQueue queue;
+        int ahead;
+        synchronized (queues) {
+            queue = queues.computeIfAbsent(project, ProjectQueue::new);
+            ahead = queue.pending.size();
+            queue.pending.add(new Entry(description, key, task, key == null ? 0L : coalesceWindow));
+            start = !queue.running;
+            queue.running = true;
+        }
+        if (ahead > 0) {
+            global.getLogger().format("[%tc] Queued %s for %s behind %d pending events, the oldest queued %s ago; "
+                    + "%d events pending in total%n", System.currentTimeMillis(), description, project.getFullName(),
+                ahead, Util.getTimeSpanString(getQueueLag(project)), getQueueSize());
+        }
+        if (start) {
+            try {
+                executorService.execute(() -> drain(queue));
+            } catch (RuntimeException e) {
+                // rejected, most likely because we are shutting down
+                synchronized (queues) {
+                    capacity.release(queue.pending.size());
+                    queue.pending.clear();
+                    queue.running = false;
+                    queues.remove(project);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Replaces the last pending task of the project if it has not started and has the same coalescing key.
+     *
+     * @param project     the project.
+     * @param description the description of the replacement.
+     * @param key         the coalescing key.
+     * @param task        the replacement.
+     * @return {@code true} if the task was coalesced.
+     */
+    private boolean coalesce(MultiBranchProject<?, ?> project, String description, String key, Task task) {
+        synchronized (queues) {
+            ProjectQueue queue = queues.get(project);
+            // only the tail can be replaced, otherwise we would reorder events
+            Entry last = queue == null ? null : queue.pending.peekLast();
+            if (last == null || !key.equals(last.key)) {
+                return false;
+            }
+            last.description = description;
+            last.task = task;
+            last.coalesced++;
+            coalesced.incrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * Returns the number of tasks that have been replaced by a later task with the same coalescing key.
+     *
+     * @return the number of coalesced tasks.
+     */
+    long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * Returns how long the oldest pending task of a project has been waiting.
+     *
+     * @param project the project.
+     * @return the queue lag in milliseconds, {@code 0} if the project has nothing pending.
+     */
+    long getQueueLag(@NonNull MultiBranchProject<?, ?> project) {
+        synchronized (queues) {
+            ProjectQueue queue = queues.get(project);
+            Entry oldest = queue == null ? null : queue.pending.peek();
+            return oldest == null ? 0L : Math.max(0L, System.currentTimeMillis() - oldest.queued);
+        }
+    }
+
+    /**
+     * Returns the number of tasks pending across all projects.
+     *
+     * @return the number of tasks pending across all projects.
+     */
+    int getQueueSize() {
+        synchronized (queues) {
+            int size = 0;
+            for (ProjectQueue queue : queues.values()) {
+                size += queue.pending.size();
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Runs the tasks of a project until its queue is empty.
+     *
+     * @param queue the project's queue.
+     */
+    private void drain(ProjectQueue queue) {
+        while (true) {
+            Entry entry;
+            synchronized (queues) {
+                entry = queue.pending.peek();
+                if (entry == null) {
+                    queue.running = false;
+                    queues.remove(queue.project);
+                    return;
+                }
+                long delay = entry.notBefore - System.currentTimeMillis();
+                if (delay > 0L) {
+                    // still inside the coalescing window, come back later rather than holding a thread
+                    Timer.get().schedule(() -> resume(queue), delay, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                queue.pending.poll();
+            }
+            try {
+                run(queue.project, entry);
+            } finally {
+                capacity.release();
+            }
+        }
+    }
+
+    private void resume(ProjectQueue queue) {
+        try {
+            executorService.execute(() -> drain(queue));
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not resume processing events for " + queue.project.getFullName(), e);
+            synchronized (queues) {
+                capacity.release(queue.pending.size());
+                queue.pending.clear();
+                queue.running = false;
+                queues.remove(queue.project);
+            }
+        }
+    }
+
+    private void run(MultiBranchProject<?, ?> project, Entry entry) {
+        long lag = Math.max(0L, System.currentTimeMillis() - entry.queued);
+        LOGGER.log(Level.FINE, "{0} dispatched to {1} after {2} having coalesced {3} earlier events",
+            new Object[]{entry.description, project.getFullName(), Util.getTimeSpanString(lag), entry.coalesced});
+        try (StreamTaskListener global = globalListener.get()) {
+            try {
+                entry.task.run(global, lag, entry.coalesced);
+            } catch (InterruptedException e) {
+                global.error("[%tc] Interrupted while processing %s for %s",
+                    System.currentTimeMillis(), entry.description, project.getFullName());
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Could not process " + entry.description + " for " + project.getFullName(), e);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not close global event log file", e);
+        }
+    }
+
+    /**
+     * The work of an event for a single project.
+     */
+    interface Task {
+        /**
+         * Performs the work.
+         *
+         * @param global    the listener for the global events log.
+         * @param lag       how long the task was queued for, in milliseconds.
+         * @param coalesced the number of earlier tasks that this task replaced.
+         * @throws InterruptedException if interrupted.
+         */
+        void run(@NonNull TaskListener global, long lag, int coalesced) throws InterruptedException;
+    }
+
+    /**
+     * A queued task.
+     */
+    private static final class Entry {
+        private final String key;
+        private final long queued = System.currentTimeMillis();
+        private final long notBefore;
+        private String description;
+        private Task task;
+        private int coalesced;
+
+        Entry(String description, String key, Task task, long window) {
+            this.description = description;
+            this.key = key;
+            this.task = task;
+            this.notBefore = queued + window;
+        }
+    }
+
+    /**
+     * The pending tasks of a project.
+     */
+    private static final class ProjectQueue {
+        private final MultiBranchProject<?, ?> project;
+        private final ArrayDeque<Entry> pending = new ArrayDeque<>();
+        private boolean running;
+
+        ProjectQueue(MultiBranchProject<?, ?> project) {
+            this.project = project;
+        }
+    }
+}
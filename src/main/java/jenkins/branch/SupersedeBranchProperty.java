@@ -0,0 +1,237 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Cause;
+import hudson.model.CauseAction;
+import hudson.model.Executor;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import jenkins.model.CauseOfInterruption;
+import jenkins.model.Jenkins;
+import jenkins.scm.api.SCMRevision;
+import jenkins.scm.api.SCMRevisionAction;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+/**
+ * Keeps at most one automatically triggered build of a branch in the queue: when a newer revision is detected while
+ * a build triggered by branch indexing or by an event is still queued, the queued build is updated to the newer
+ * revision instead of queuing another one. Optionally automatically triggered builds of older revisions that are
+ * already running are aborted.
+ */
+public class SupersedeBranchProperty extends BranchProperty {
+
+    /**
+     * If {@code true} then running builds of older revisions are aborted.
+     */
+    private boolean abortRunning;
+
+    /**
+     * Constructor.
+     */
+    @DataBoundConstructor
+    public SupersedeBranchProperty() {
+        // empty
+    }
+
+    /**
+     * Returns {@code true} if running builds of older revisions are aborted.
+     *
+     * @return {@code true} if running builds of older revisions are aborted.
+     */
+    public boolean isAbortRunning() {
+        return abortRunning;
+    }
+
+    /**
+     * Sets whether running builds of older revisions are aborted.
+     *
+     * @param abortRunning {@code true} to abort running builds of older revisions.
+     */
+    @DataBoundSetter
+    public void setAbortRunning(boolean abortRunning) {
+        this.abortRunning = abortRunning;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <P extends Job<P, B>, B extends Run<P, B>> JobDecorator<P, B> jobDecorator(Class<P> clazz) {
+        return null;
+    }
+
+    /**
+     * Updates the queued automatic build of a branch project to a newer revision.
+     *
+     * @param job      the branch project.
+     * @param revision the newer revision.
+     * @param listener the listener to report to.
+     * @param actions  the actions of the build that would otherwise be scheduled, the first being its
+     *                 {@link CauseAction}.
+     * @return {@code true} if a queued build was updated and no new build needs to be scheduled.
+     */
+    boolean supersede(@NonNull Job<?, ?> job, @NonNull SCMRevision revision, @NonNull TaskListener listener,
+                      @NonNull Action... actions) {
+        if (abortRunning) {
+            abortRunning(job, revision, listener);
+        }
+        if (!(job instanceof Queue.Task)) {
+            return false;
+        }
+        Queue.Task task = (Queue.Task) job;
+        AtomicBoolean superseded = new AtomicBoolean();
+        Queue.withLock(() -> {
+            Queue queue = Jenkins.get().getQueue();
+            for (Queue.Item item : queue.getItems(task)) {
+                if (!isAutomatic(item.getCauses())
+                        || item instanceof Queue.BuildableItem && ((Queue.BuildableItem) item).isPending()) {
+                    // leave alone what users asked for and what is about to start
+                    continue;
+                }
+                if (superseded.get()) {
+                    // an older duplicate, the item that was updated builds the newer revision anyway
+                    queue.cancel(item);
+                    continue;
+                }
+                List<Action> others = new ArrayList<>();
+                for (Action action : actions) {
+                    if (action instanceof CauseAction) {
+                        others.add(action);
+                    } else {
+                        item.replaceAction(action);
+                    }
+                }
+                for (Action action : actions) {
+                    if (action instanceof CauseAction) {
+                        ((CauseAction) action).foldIntoExisting(item, task, others);
+                    }
+                }
+                superseded.set(true);
+                listener.getLogger().printf("Updated queued build of %s to revision %s%n",
+                        job.getFullDisplayName(), revision);
+            }
+        });
+        return superseded.get();
+    }
+
+    /**
+     * Aborts the running automatic builds of a branch project that build an older revision.
+     *
+     * @param job      the branch project.
+     * @param revision the newer revision.
+     * @param listener the listener to report to.
+     */
+    private static void abortRunning(@NonNull Job<?, ?> job, @NonNull SCMRevision revision,
+                                     @NonNull TaskListener listener) {
+        for (Run<?, ?> run = job.getLastBuild(); run != null && run.isBuilding(); run = run.getPreviousBuildInProgress()) {
+            SCMRevisionAction action = run.getAction(SCMRevisionAction.class);
+            if (action == null || revision.equals(action.getRevision()) || !isAutomatic(run.getCauses())) {
+                // leave alone what users asked for
+                continue;
+            }
+            Executor executor = run.getExecutor();
+            if (executor != null) {
+                listener.getLogger().printf("Aborting %s of superseded revision %s%n",
+                        run.getFullDisplayName(), action.getRevision());
+                executor.interrupt(Result.ABORTED, new Superseded(revision.toString()));
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if a queue item or build was scheduled by branch indexing or by an event.
+     *
+     * @param causes the causes of the queue item or build.
+     * @return {@code true} if the queue item or build was scheduled by branch indexing or by an event.
+     */
+    private static boolean isAutomatic(@NonNull List<Cause> causes) {
+        for (Cause cause : causes) {
+            if (cause instanceof BranchIndexingCause || cause instanceof BranchEventCause) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records that a build was aborted because a newer revision superseded it.
+     */
+    public static class Superseded extends CauseOfInterruption {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The newer revision.
+         */
+        private final String revision;
+
+        /**
+         * Constructor.
+         *
+         * @param revision the newer revision.
+         */
+        public Superseded(String revision) {
+            this.revision = revision;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getShortDescription() {
+            return Messages.SupersedeBranchProperty_Superseded(revision);
+        }
+    }
+
+    /**
+     * Our descriptor.
+     */
+    @Extension
+    @Symbol("supersedeBuilds")
+    public static class DescriptorImpl extends BranchPropertyDescriptor {
+
+        /**
+         * {@inheritDoc}
+         */
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return Messages.SupersedeBranchProperty_DisplayName();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The workspaces of a node as tracked by {@link WorkspaceLocatorImpl}: which workspace-relative path each
+ * {@link hudson.model.TopLevelItem#getFullName} uses and, the other way round, which item uses each path.
+ * Also remembers, per mnemonic, the suffix from which to look for a free path, so that allocating a workspace does not
+ * need to go through all the paths already taken.
+ * Not thread safe; access is synchronized on the lock of the node.
+ * Serializable so that it can be read on the node which has the workspaces and sent back in a single call.
+ */
+final class WorkspaceIndex implements Serializable {
+
+    private static final long serialVersionUID = 1;
+
+    /**
+     * Paths by full name, sorted so that the index file is written in a stable order.
+     */
+    private final Map<String, String> paths = new TreeMap<>();
+
+    /**
+     * Full names by path.
+     */
+    private final Map<String, String> names = new HashMap<>();
+
+    /**
+     * The suffix from which to look for a free path, by mnemonic.
+     */
+    private final Map<String, Integer> nextSuffixes = new HashMap<>();
+
+    /**
+     * Gets the path of an item.
+     *
+     * @param fullName the full name of the item.
+     * @return the workspace-relative path or {@code null} if the item is not listed.
+     */
+    @CheckForNull
+    String get(@NonNull String fullName) {
+        return paths.get(fullName);
+    }
+
+    /**
+     * Checks whether a path is taken.
+     *
+     * @param path the workspace-relative path.
+     * @return {@code true} if some item uses the path.
+     */
+    boolean containsPath(@NonNull String path) {
+        return names.containsKey(path);
+    }
+
+    /**
+     * Records the path of an item.
+     *
+     * @param fullName the full name of the item.
+     * @param path     the workspace-relative path.
+     */
+    void put(@NonNull String fullName, @NonNull String path) {
+        String old = paths.put(fullName, path);
+        if (old != null && fullName.equals(names.get(old))) {
+            names.remove(old);
+        }
+        names.put(path, fullName);
+    }
+
+    /**
+     * Forgets an item.
+     *
+     * @param fullName the full name of the item.
+     * @param mnemonic the mnemonic the path of the item was allocated from, whose suffixes may now be reused.
+     * @return the path the item used or {@code null} if it was not listed.
+     */
+    @CheckForNull
+    String remove(@NonNull String fullName, @NonNull String mnemonic) {
+        String path = paths.remove(fullName);
+        if (path != null) {
+            if (fullName.equals(names.get(path))) {
+                names.remove(path);
+            }
+            nextSuffixes.remove(mnemonic);
+        }
+        return path;
+    }
+
+    /**
+     * Gets the suffix from which to look for a free path.
+     *
+     * @param mnemonic the mnemonic.
+     * @return the first suffix that may be free, {@code 1} standing for no suffix.
+     */
+    int nextSuffix(@NonNull String mnemonic) {
+        return nextSuffixes.getOrDefault(mnemonic, 1);
+    }
+
+    /**
+     * Records that a suffix was found to be taken, either by an allocation or by a directory in the way.
+     *
+     * @param mnemonic the mnemonic.
+     * @param suffix   the suffix.
+     */
+    void taken(@NonNull String mnemonic, int suffix) {
+        nextSuffixes.merge(mnemonic, suffix + 1, Math::max);
+    }
+
+    /**
+     * Gets the number of items listed.
+     *
+     * @return the number of items listed.
+     */
+    int size() {
+        return paths.size();
+    }
+
+    /**
+     * Gets the full names of the items listed.
+     *
+     * @return a snapshot of the full names.
+     */
+    @NonNull
+    List<String> fullNames() {
+        return new ArrayList<>(paths.keySet());
+    }
+
+    /**
+     * Gets the paths by full name.
+     *
+     * @return a read-only view sorted by full name.
+     */
+    @NonNull
+    Map<String, String> asMap() {
+        return Collections.unmodifiableMap(paths);
+    }
+
+    @Override
+    public String toString() {
+        return paths.toString();
+    }
+}
@@ -30,6 +30,9 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.ExtensionList;
 import hudson.FilePath;
+import hudson.Functions;
+import hudson.Util;
+import hudson.model.AsyncPeriodicWork;
 import hudson.model.Computer;
 import hudson.model.Item;
 import hudson.model.Node;
@@ -51,24 +54,32 @@ import hudson.util.TextFile;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.concurrent.ExecutorService;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.TreeMap;
+import java.util.Set;
 import java.util.WeakHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -135,9 +146,27 @@ public class WorkspaceLocatorImpl extends WorkspaceLocator {
      */
     static final String INDEX_FILE_NAME = "workspaces.txt";
 
+    /**
+     * File journaling the changes made to {@link #INDEX_FILE_NAME} since it was last written, so that allocating or
+     * removing a single workspace does not need to rewrite the whole index.
+     * Records are either a line {@code +}<em>full name</em> followed by a line with the workspace-relative path,
+     * or a single line {@code -}<em>full name</em>.
+     * An incomplete record at the end, as left by a crash, is ignored.
+     * Reads and writes to this file should be synchronized on {@link #lockFor}.
+     */
+    static final String JOURNAL_FILE_NAME = "workspaces.journal";
+
+    /**
+     * The number of journal records after which {@link #INDEX_FILE_NAME} is rewritten and the journal is dropped.
+     */
+    static /* not final */ int COMPACT_THRESHOLD = SystemProperties.getInteger(WorkspaceLocatorImpl.class.getName() + ".COMPACT_THRESHOLD", 1000);
+
     /** Same as {@link WorkspaceList#COMBINATOR}. */
     private static final String COMBINATOR = System.getProperty(WorkspaceList.class.getName(), "@");
 
+    /** The number of free paths offered to the node at once when allocating a workspace with a cached index. */
+    private static final int CANDIDATES = 10;
+
     /**
      * @see #indexCache()
      * @see #load
@@ -146,10 +175,13 @@ public class WorkspaceLocatorImpl extends WorkspaceLocator {
     private final Map<VirtualChannel, IndexCacheEntry> indexCache = new WeakHashMap<>();
     private static final class IndexCacheEntry {
         final String workspaceRoot;
-        final Map<String, String> index;
-        IndexCacheEntry(String workspaceRoot, Map<String, String> index) {
+        final WorkspaceIndex index;
+        /** Number of records in {@link #JOURNAL_FILE_NAME}, or {@code -1} if {@link #INDEX_FILE_NAME} must be rewritten. */
+        int journalRecords;
+        IndexCacheEntry(String workspaceRoot, WorkspaceIndex index, int journalRecords) {
             this.workspaceRoot = workspaceRoot;
             this.index = index;
+            this.journalRecords = journalRecords;
         }
     }
 
@@ -164,81 +196,89 @@ public class WorkspaceLocatorImpl extends WorkspaceLocator {
 
     @CheckForNull
     private static FilePath locate(TopLevelItem item, String fullName, Node node, boolean create) {
-        switch (MODE) {
-        case DISABLED:
-            LOGGER.log(Level.FINE, "disabled, skipping for {0} on {1}", new Object[] {item, node});
+        if (!managed(item, node)) {
             return null;
-        case MULTIBRANCH_ONLY:
-            if (!(item.getParent() instanceof MultiBranchProject)) {
-                LOGGER.log(Level.FINE, "ignoring non-branch project {0} on {1}", new Object[] {item, node});
-                return null;
-            }
-            break;
-        case ENABLED:
-            break;
-        default:
-            throw new AssertionError();
         }
         FilePath workspace = getWorkspaceRoot(node);
         if (workspace == null) {
             LOGGER.log(Level.FINE, "no available workspace root for {0} so skipping {1}", new Object[] {node, item});
             return null;
         }
-        if (fullName.contains("\n") || fullName.equals(INDEX_FILE_NAME)) {
+        if (fullName.contains("\n") || fullName.equals(INDEX_FILE_NAME) || fullName.equals(JOURNAL_FILE_NAME)) {
             throw new IllegalArgumentException("Dangerous job name `" + fullName + "`"); // better not to mess around
         }
         try {
             synchronized (lockFor(node)) {
-                Map<String, String> index = load(workspace);
+                IndexCacheEntry entry = cached(workspace);
                 // Already listed:
-                String path = index.get(fullName);
-                if (path != null) {
-                    FilePath dir = workspace.child(path);
-                    LOGGER.log(Level.FINER, "index already lists {0} for {1} on {2}", new Object[] {dir, item, node});
-                    return dir;
-                }
-                // Old JENKINS-34564 implementation:
-                if (PATH_MAX != 0 && item.getParent() instanceof MultiBranchProject) {
-                    path = minimize(fullName);
-                    FilePath dir = workspace.child(path);
-                    if (dir.isDirectory()) {
-                        index.put(fullName, path);
-                        save(index, workspace);
-                        LOGGER.log(Level.FINE, "detected existing workspace {0} under old naming scheme for {1} on {2}", new Object[] {dir, item, node});
+                if (entry != null) {
+                    String path = entry.index.get(fullName);
+                    if (path != null) {
+                        FilePath dir = workspace.child(path);
+                        LOGGER.log(Level.FINER, "index already lists {0} for {1} on {2}", new Object[] {dir, item, node});
                         return dir;
                     }
                 }
-                // Plain default:
-                FilePath dir = workspace.child(fullName);
-                if (dir.isDirectory()) {
-                    index.put(fullName, fullName);
-                    save(index, workspace);
-                    LOGGER.log(Level.FINE, "using plain default location {0} for {1} on {2}", new Object[] {dir, item, node});
-                    return dir;
+                // Everything else is decided next to the workspaces:
+                String mnemonic = mnemonicOf(fullName);
+                String oldPath = PATH_MAX != 0 && item.getParent() instanceof MultiBranchProject ? minimize(fullName) : null;
+                WorkspaceIndex index;
+                Located located;
+                boolean appended;
+                if (entry == null) {
+                    located = workspace.act(new Locate(fullName, oldPath, mnemonic, MAX_LENGTH, create, COMPACT_THRESHOLD));
+                    index = located.index;
+                    LOGGER.log(Level.FINER, "cache update on {0}", workspace);
+                    Map<VirtualChannel, IndexCacheEntry> _indexCache = indexCache();
+                    synchronized (_indexCache) {
+                        _indexCache.put(workspace.getChannel(), new IndexCacheEntry(workspace.getRemote(), index, located.journalRecords));
+                    }
+                    appended = true;
+                } else {
+                    index = entry.index;
+                    // the cached index already tells which paths are listed, so the node only needs to probe directories
+                    appended = entry.journalRecords >= 0 && entry.journalRecords + 1 <= COMPACT_THRESHOLD;
+                    try {
+                        located = locateUnlisted(index, workspace, fullName, oldPath, mnemonic, create, appended);
+                    } catch (IOException | InterruptedException x) {
+                        // the journal may or may not have been appended to
+                        forget(workspace);
+                        throw x;
+                    }
+                    if (located.path != null && appended) {
+                        entry.journalRecords++;
+                    }
                 }
-                if (!create) {
-                    LOGGER.log(Level.FINE, "not creating a new workspace for {0} on {1} since {2} does not exist", new Object[] {item, node, dir});
+                if (located.path == null) {
+                    LOGGER.log(Level.FINE, "not creating a new workspace for {0} on {1} since {2} does not exist", new Object[] {item, node, workspace.child(fullName)});
                     return null;
                 }
-                // Allocate:
-                String mnemonic = mnemonicOf(fullName);
-                for (int i = 1; ; i++) {
-                    path = StringUtils.right(i > 1 ? mnemonic + "_" + i : mnemonic, MAX_LENGTH);
-                    path = replaceLeadingHyphen(path);
-                    if (index.containsValue(path)) {
-                        LOGGER.log(Level.FINER, "index collision on {0} for {1} on {2}", new Object[] {path, item, node});
-                    } else {
-                        dir = workspace.child(path);
-                        if (dir.isDirectory()) {
-                            LOGGER.log(Level.FINER, "directory collision on {0} for {1} on {2}", new Object[] {path, item, node});
-                        } else {
-                            index.put(fullName, path);
-                            save(index, workspace);
-                            LOGGER.log(Level.FINE, "allocating {0} for {1} on {2}", new Object[] {dir, item, node});
-                            return dir;
-                        }
-                    }
+                FilePath dir = workspace.child(located.path);
+                switch (located.how) {
+                case LISTED:
+                    LOGGER.log(Level.FINER, "index already lists {0} for {1} on {2}", new Object[] {dir, item, node});
+                    break;
+                case OLD_NAMING_SCHEME:
+                    index.put(fullName, located.path);
+                    LOGGER.log(Level.FINE, "detected existing workspace {0} under old naming scheme for {1} on {2}", new Object[] {dir, item, node});
+                    break;
+                case PLAIN_DEFAULT:
+                    index.put(fullName, located.path);
+                    LOGGER.log(Level.FINE, "using plain default location {0} for {1} on {2}", new Object[] {dir, item, node});
+                    break;
+                case ALLOCATED:
+                    index.put(fullName, located.path);
+                    index.taken(mnemonic, located.suffix);
+                    LOGGER.log(Level.FINE, "allocating {0} for {1} on {2}", new Object[] {dir, item, node});
+                    break;
+                default:
+                    throw new AssertionError();
                 }
+                if (!appended) {
+                    // the journal is due for compaction or cannot be trusted
+                    save(index, workspace);
+                }
+                return dir;
             }
         } catch (IOException | InterruptedException x) {
             LOGGER.log(Level.WARNING, "could not manage workspaces on " + node, x);
@@ -246,25 +286,226 @@ public class WorkspaceLocatorImpl extends WorkspaceLocator {
         }
     }
 
-    private static Map<VirtualChannel, IndexCacheEntry> indexCache() {
-        return ExtensionList.lookupSingleton(WorkspaceLocatorImpl.class).indexCache;
+    /**
+     * Whether {@link #MODE} says this extension should handle the workspaces of an item.
+     */
+    private static boolean managed(TopLevelItem item, Node node) {
+        switch (MODE) {
+        case DISABLED:
+            LOGGER.log(Level.FINE, "disabled, skipping for {0} on {1}", new Object[] {item, node});
+            return false;
+        case MULTIBRANCH_ONLY:
+            if (!(item.getParent() instanceof MultiBranchProject)) {
+                LOGGER.log(Level.FINE, "ignoring non-branch project {0} on {1}", new Object[] {item, node});
+                return false;
+            }
+            return true;
+        case ENABLED:
+            return true;
+        default:
+            throw new AssertionError();
+        }
     }
 
-    private static Map<String, String> load(FilePath workspace) throws IOException, InterruptedException {
-        Map<VirtualChannel, IndexCacheEntry> _indexCache = indexCache();
-        IndexCacheEntry entry;
-        synchronized (_indexCache) {
-            entry = _indexCache.get(workspace.getChannel());
+    /**
+     * How {@link Locate} found the workspace of an item.
+     */
+    enum How {
+        /** Already listed in the index. */
+        LISTED,
+        /** An existing workspace using the old JENKINS-34564 naming scheme. */
+        OLD_NAMING_SCHEME,
+        /** An existing workspace at the plain default location. */
+        PLAIN_DEFAULT,
+        /** A newly allocated workspace. */
+        ALLOCATED
+    }
+
+    /**
+     * Looks up or allocates the workspace of an item and persists the decision, all on the node that has the
+     * workspaces, so that locating a workspace takes a single remote call however many probes it needs.
+     */
+    private static final class Locate extends MasterToSlaveFileCallable<Located> {
+        private static final long serialVersionUID = 1;
+        private final String fullName;
+        /** The path under the old JENKINS-34564 naming scheme, if it applies. */
+        @CheckForNull
+        private final String oldPath;
+        private final String mnemonic;
+        private final int maxLength;
+        private final boolean create;
+        private final int compactThreshold;
+        Locate(String fullName, @CheckForNull String oldPath, String mnemonic, int maxLength, boolean create,
+               int compactThreshold) {
+            this.fullName = fullName;
+            this.oldPath = oldPath;
+            this.mnemonic = mnemonic;
+            this.maxLength = maxLength;
+            this.create = create;
+            this.compactThreshold = compactThreshold;
         }
-        if (entry != null && entry.workspaceRoot.equals(workspace.getRemote())) {
-            LOGGER.log(Level.FINER, "cache hit on {0}", workspace);
-            return entry.index;
+        @Override
+        public Located invoke(File root, VirtualChannel channel) throws IOException, InterruptedException {
+            IndexFiles files = IndexFiles.read(root);
+            WorkspaceIndex index = files.index;
+            Located result = new Located(index);
+            result.journalRecords = files.journalRecords;
+            String path = index.get(fullName);
+            if (path != null) {
+                result.path = path;
+                result.how = How.LISTED;
+                return result;
+            }
+            if (oldPath != null && new File(root, oldPath).isDirectory()) {
+                path = oldPath;
+                result.how = How.OLD_NAMING_SCHEME;
+            } else if (new File(root, fullName).isDirectory()) {
+                path = fullName;
+                result.how = How.PLAIN_DEFAULT;
+            } else if (!create) {
+                return result;
+            } else {
+                for (int i = 1; ; i++) {
+                    path = candidate(mnemonic, i, maxLength);
+                    if (!index.containsPath(path) && !new File(root, path).isDirectory()) {
+                        result.suffix = i;
+                        result.how = How.ALLOCATED;
+                        break;
+                    }
+                }
+            }
+            index.put(fullName, path);
+            result.path = path;
+            result.journalRecords = files.journal(root, "+" + fullName + "\n" + path + "\n", 1, compactThreshold);
+            return result;
         }
-        LOGGER.log(Level.FINER, "cache miss on {0}", workspace);
-        Map<String, String> map = new TreeMap<>();
-        FilePath index = workspace.child(INDEX_FILE_NAME);
-        if (index.exists()) {
-            try (InputStream is = index.read(); Reader r = new InputStreamReader(is, StandardCharsets.UTF_8); BufferedReader br = new BufferedReader(r)) {
+    }
+
+    /**
+     * The workspace-relative path to try for an item with the given mnemonic and suffix.
+     */
+    private static String candidate(String mnemonic, int suffix, int maxLength) {
+        return replaceLeadingHyphen(StringUtils.right(suffix > 1 ? mnemonic + "_" + suffix : mnemonic, maxLength));
+    }
+
+    /**
+     * Decides the workspace of an item that a cached index does not list, sending the node only the candidate paths
+     * that the index leaves free, in batches of {@link #CANDIDATES}, rather than having it read the whole index.
+     * @param append whether the node should append the decision to {@link #JOURNAL_FILE_NAME}
+     */
+    private static Located locateUnlisted(WorkspaceIndex index, FilePath workspace, String fullName, @CheckForNull String oldPath,
+                                          String mnemonic, boolean create, boolean append) throws IOException, InterruptedException {
+        int suffix = index.nextSuffix(mnemonic);
+        while (true) {
+            List<String> candidates = new ArrayList<>();
+            List<Integer> suffixes = new ArrayList<>();
+            if (create) {
+                for (; candidates.size() < CANDIDATES; suffix++) {
+                    String path = candidate(mnemonic, suffix, MAX_LENGTH);
+                    if (!index.containsPath(path)) {
+                        candidates.add(path);
+                        suffixes.add(suffix);
+                    }
+                }
+            }
+            Located located = workspace.act(new LocateUnlisted(fullName, oldPath, candidates, suffixes, append));
+            if (located.path != null || !create) {
+                return located;
+            }
+            // every candidate is an unindexed directory, try the next ones
+        }
+    }
+
+    /**
+     * Probes the node for the workspace of an item that the cached index does not list.
+     */
+    private static final class LocateUnlisted extends MasterToSlaveFileCallable<Located> {
+        private static final long serialVersionUID = 1;
+        private final String fullName;
+        /** The path under the old JENKINS-34564 naming scheme, if it applies. */
+        @CheckForNull
+        private final String oldPath;
+        /** The paths to allocate from, in order, empty if none is to be created. */
+        private final List<String> candidates;
+        private final List<Integer> suffixes;
+        private final boolean append;
+        LocateUnlisted(String fullName, @CheckForNull String oldPath, List<String> candidates, List<Integer> suffixes,
+                       boolean append) {
+            this.fullName = fullName;
+            this.oldPath = oldPath;
+            this.candidates = candidates;
+            this.suffixes = suffixes;
+            this.append = append;
+        }
+        @Override
+        public Located invoke(File root, VirtualChannel channel) throws IOException, InterruptedException {
+            Located result = new Located(null);
+            if (oldPath != null && new File(root, oldPath).isDirectory()) {
+                result.path = oldPath;
+                result.how = How.OLD_NAMING_SCHEME;
+            } else if (new File(root, fullName).isDirectory()) {
+                result.path = fullName;
+                result.how = How.PLAIN_DEFAULT;
+            } else {
+                for (int i = 0; i < candidates.size(); i++) {
+                    if (!new File(root, candidates.get(i)).isDirectory()) {
+                        result.path = candidates.get(i);
+                        result.suffix = suffixes.get(i);
+                        result.how = How.ALLOCATED;
+                        break;
+                    }
+                }
+                if (result.path == null) {
+                    return result;
+                }
+            }
+            if (append) {
+                Files.write(new File(root, JOURNAL_FILE_NAME).toPath(), ("+" + fullName + "\n" + result.path + "\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * What {@link Locate} or {@link LocateUnlisted} decided.
+     */
+    private static final class Located implements Serializable {
+        private static final long serialVersionUID = 1;
+        /** The whole index including the decision, as read by {@link Locate}, or {@code null} if the index is cached. */
+        @CheckForNull
+        final WorkspaceIndex index;
+        /** The workspace-relative path or {@code null} if there is none and none was to be created. */
+        @CheckForNull
+        String path;
+        How how;
+        /** The suffix of a newly allocated path. */
+        int suffix;
+        /** The number of records in {@link #JOURNAL_FILE_NAME}, or {@code -1} if {@link #INDEX_FILE_NAME} must be rewritten. */
+        int journalRecords;
+        Located(@CheckForNull WorkspaceIndex index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * The contents of {@link #INDEX_FILE_NAME} and {@link #JOURNAL_FILE_NAME} as read on the node that has them.
+     */
+    private static final class IndexFiles implements Serializable {
+        private static final long serialVersionUID = 1;
+        final WorkspaceIndex index;
+        /** The number of records in {@link #JOURNAL_FILE_NAME}, or {@code -1} if {@link #INDEX_FILE_NAME} must be rewritten. */
+        int journalRecords;
+        private IndexFiles(WorkspaceIndex index, int journalRecords) {
+            this.index = index;
+            this.journalRecords = journalRecords;
+        }
+        static IndexFiles read(File root) throws IOException {
+            WorkspaceIndex index = new WorkspaceIndex();
+            File file = new File(root, INDEX_FILE_NAME);
+            if (!file.isFile()) {
+                return new IndexFiles(index, -1);
+            }
+            try (BufferedReader br = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
                 while (true) {
                     String key = br.readLine();
                     if (key == null) {
@@ -272,46 +513,283 @@ public class WorkspaceLocatorImpl extends WorkspaceLocator {
                     }
                     String value = br.readLine();
                     if (value == null) {
-                        throw new IOException("malformed " + index);
+                        throw new IOException("malformed " + file);
                     }
-                    map.put(key, value);
+                    index.put(key, value);
                 }
             }
+            File journal = new File(root, JOURNAL_FILE_NAME);
+            int journalRecords = journal.isFile()
+                    ? replay(index, new String(Files.readAllBytes(journal.toPath()), StandardCharsets.UTF_8))
+                    : 0;
+            return new IndexFiles(index, journalRecords);
+        }
+        /**
+         * Persists changes already made to {@link #index}, either by appending them to {@link #JOURNAL_FILE_NAME}
+         * or, when the journal gets long or cannot be trusted, by rewriting {@link #INDEX_FILE_NAME} and dropping the
+         * journal.
+         * @return the new number of journal records
+         */
+        int journal(File root, String records, int count, int compactThreshold) throws IOException {
+            if (journalRecords < 0 || journalRecords + count > compactThreshold) {
+                write(root, index);
+                journalRecords = 0;
+            } else {
+                Files.write(new File(root, JOURNAL_FILE_NAME).toPath(), records.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                journalRecords += count;
+            }
+            return journalRecords;
         }
+        static void write(File root, WorkspaceIndex index) throws IOException {
+            // FilePath.renameTo does not support REPLACE_EXISTING, and FilePath.write(String, String) is not atomic.
+            // So we use TextFile, which wraps AtomicFileWriter (in UTF-8 encoding).
+            StringBuilder b = new StringBuilder();
+            for (Map.Entry<String, String> entry : index.asMap().entrySet()) {
+                b.append(entry.getKey()).append('\n').append(entry.getValue()).append('\n');
+            }
+            new TextFile(new File(root, INDEX_FILE_NAME)).write(b.toString());
+            // the index now includes everything journaled so far; replaying the journal again would be harmless but slow
+            Files.deleteIfExists(new File(root, JOURNAL_FILE_NAME).toPath());
+        }
+    }
+
+    private static Map<VirtualChannel, IndexCacheEntry> indexCache() {
+        return ExtensionList.lookupSingleton(WorkspaceLocatorImpl.class).indexCache;
+    }
+
+    @CheckForNull
+    private static IndexCacheEntry cached(FilePath workspace) {
+        Map<VirtualChannel, IndexCacheEntry> _indexCache = indexCache();
+        IndexCacheEntry entry;
         synchronized (_indexCache) {
-            _indexCache.put(workspace.getChannel(), new IndexCacheEntry(workspace.getRemote(), map));
+            entry = _indexCache.get(workspace.getChannel());
         }
-        return map;
+        return entry != null && entry.workspaceRoot.equals(workspace.getRemote()) ? entry : null;
     }
 
-    private static void save(Map<String, String> index, FilePath workspace) throws IOException, InterruptedException {
-        // FilePath.renameTo does not support REPLACE_EXISTING, and FilePath.write(String, String) is not atomic.
-        // So we use TextFile, which wraps AtomicFileWriter (in UTF-8 encoding), but which does not have any built-in remote overload.
-        // Note that we are synchronizing access to this file so the only potential problem with a non-atomic write is half-written content.
-        StringBuilder b = new StringBuilder();
-        for (Map.Entry<String, String> entry : index.entrySet()) {
-            b.append(entry.getKey()).append('\n').append(entry.getValue()).append('\n');
+    /**
+     * Drops the cached index of a node, for use when a remote call that may have changed the index files failed,
+     * so that the index is read again rather than a stale copy written back.
+     */
+    private static void forget(FilePath workspace) {
+        Map<VirtualChannel, IndexCacheEntry> _indexCache = indexCache();
+        synchronized (_indexCache) {
+            _indexCache.remove(workspace.getChannel());
         }
-        workspace.child(INDEX_FILE_NAME).act(new WriteAtomic(b.toString()));
+        LOGGER.log(Level.FINER, "cache invalidated on {0}", workspace);
+    }
+
+    /**
+     * Applies the removals made by a remote call to the cached index, if there is one, rather than transferring the
+     * whole index back.
+     * @param workspace the workspace root
+     * @param deletions what the remote call did
+     */
+    private static void removed(FilePath workspace, Deletions deletions) {
+        IndexCacheEntry entry = cached(workspace);
+        if (entry == null) {
+            return;
+        }
+        for (String fullName : deletions.removed) {
+            entry.index.remove(fullName, mnemonicOf(fullName));
+        }
+        entry.journalRecords = deletions.journalRecords;
         LOGGER.log(Level.FINER, "cache update on {0}", workspace);
+    }
+
+    private static WorkspaceIndex load(FilePath workspace) throws IOException, InterruptedException {
+        IndexCacheEntry entry = cached(workspace);
+        if (entry != null) {
+            LOGGER.log(Level.FINER, "cache hit on {0}", workspace);
+            return entry.index;
+        }
+        LOGGER.log(Level.FINER, "cache miss on {0}", workspace);
+        IndexFiles files = workspace.act(new ReadIndex());
+        LOGGER.log(Level.FINER, "loaded {0} entries and {1} journal records on {2}", new Object[] {files.index.size(), files.journalRecords, workspace});
         Map<VirtualChannel, IndexCacheEntry> _indexCache = indexCache();
         synchronized (_indexCache) {
-            _indexCache.put(workspace.getChannel(), new IndexCacheEntry(workspace.getRemote(), index));
+            _indexCache.put(workspace.getChannel(), new IndexCacheEntry(workspace.getRemote(), files.index, files.journalRecords));
+        }
+        return files.index;
+    }
+    private static final class ReadIndex extends MasterToSlaveFileCallable<IndexFiles> {
+        private static final long serialVersionUID = 1;
+        @Override
+        public IndexFiles invoke(File root, VirtualChannel channel) throws IOException, InterruptedException {
+            return IndexFiles.read(root);
+        }
+    }
+
+    /**
+     * Applies the records of {@link #JOURNAL_FILE_NAME} to an index.
+     * @param index the index as read from {@link #INDEX_FILE_NAME}
+     * @param journal the journal contents
+     * @return the number of records applied, or {@code -1} if the journal ended with an incomplete or malformed record
+     */
+    static int replay(WorkspaceIndex index, String journal) {
+        String[] lines = journal.split("\n", -1);
+        // the last element is whatever follows the last newline, which is empty unless a write was cut short
+        int complete = lines.length - 1;
+        boolean clean = lines[complete].isEmpty();
+        int records = 0;
+        for (int i = 0; i < complete; i++) {
+            String line = lines[i];
+            if (line.startsWith("+") && i + 1 < complete) {
+                index.put(line.substring(1), lines[++i]);
+            } else if (line.startsWith("-")) {
+                String fullName = line.substring(1);
+                index.remove(fullName, mnemonicOf(fullName));
+            } else {
+                LOGGER.log(Level.WARNING, "ignoring incomplete workspace index journal record {0}", line);
+                return -1;
+            }
+            records++;
+        }
+        return clean ? records : -1;
+    }
+
+    /**
+     * Forgets a workspace in an index.
+     */
+    private static void remove(WorkspaceIndex index, FilePath workspace, String fullName) throws IOException, InterruptedException {
+        if (index.remove(fullName, mnemonicOf(fullName)) != null) {
+            journal(index, workspace, "-" + fullName + "\n", 1);
+        }
+    }
+
+    /**
+     * Persists changes already made to an index that {@link #load} returned.
+     * @param index the index as changed
+     * @param workspace the workspace root
+     * @param records the journal records for the changes
+     * @param count the number of journal records
+     * @see IndexFiles#journal
+     */
+    private static void journal(WorkspaceIndex index, FilePath workspace, String records, int count) throws IOException, InterruptedException {
+        IndexCacheEntry entry = cached(workspace);
+        if (entry == null || entry.index != index || entry.journalRecords < 0 || entry.journalRecords + count > COMPACT_THRESHOLD) {
+            save(index, workspace);
+            return;
+        }
+        workspace.child(JOURNAL_FILE_NAME).act(new AppendJournal(records));
+        entry.journalRecords += count;
+        LOGGER.log(Level.FINER, "journaled {0} records on {1}", new Object[] {count, workspace});
+    }
+
+    private static void save(WorkspaceIndex index, FilePath workspace) throws IOException, InterruptedException {
+        // Note that we are synchronizing access to this file so the only potential problem with a non-atomic write is half-written content.
+        workspace.act(new WriteAtomic(index));
+        LOGGER.log(Level.FINER, "cache update on {0}", workspace);
+        Map<VirtualChannel, IndexCacheEntry> _indexCache = indexCache();
+        synchronized (_indexCache) {
+            _indexCache.put(workspace.getChannel(), new IndexCacheEntry(workspace.getRemote(), index, 0));
         }
     }
     private static final class WriteAtomic extends MasterToSlaveFileCallable<Void> {
         private static final long serialVersionUID = 1;
-        private final String text;
-        WriteAtomic(String text) {
-            this.text = text;
+        private final WorkspaceIndex index;
+        WriteAtomic(WorkspaceIndex index) {
+            this.index = index;
+        }
+        @Override
+        public Void invoke(File root, VirtualChannel channel) throws IOException, InterruptedException {
+            IndexFiles.write(root, index);
+            return null;
+        }
+    }
+    private static final class AppendJournal extends MasterToSlaveFileCallable<Void> {
+        private static final long serialVersionUID = 1;
+        private final String records;
+        AppendJournal(String records) {
+            this.records = records;
         }
         @Override
         public Void invoke(File f, VirtualChannel channel) throws IOException, InterruptedException {
-            new TextFile(f).write(text);
+            Files.write(f.toPath(), records.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
             return null;
         }
     }
 
+    /**
+     * Workspace directories deleted on the node which has them, and the items removed from its index.
+     */
+    private static final class Deletions implements Serializable {
+        private static final long serialVersionUID = 1;
+        /** Full names removed from the index, to be applied to the cached copy by {@link #removed}. */
+        final List<String> removed = new ArrayList<>();
+        /** The number of records in {@link #JOURNAL_FILE_NAME}, or {@code -1} if {@link #INDEX_FILE_NAME} must be rewritten. */
+        int journalRecords;
+        /** Whether to add up the size of the deleted directories, which needs to walk them. */
+        private final boolean measure;
+        /** Workspace-relative paths of the deleted directories. */
+        final List<String> deleted = new ArrayList<>();
+        /** Directories which could not be deleted, with the reason. */
+        final List<String> problems = new ArrayList<>();
+        /** The number of bytes in files deleted, if measured. */
+        long bytes;
+        Deletions(boolean measure) {
+            this.measure = measure;
+        }
+        /**
+         * Deletes a workspace along with its alternate workspaces.
+         * @param root the workspace root
+         * @param path the workspace-relative path of the workspace
+         * @param combinator {@link #COMBINATOR}
+         * @param listings directory listings already made, by parent directory
+         */
+        void delete(File root, String path, String combinator, Map<File, File[]> listings) {
+            File dir = new File(root, path);
+            File parent = dir.getParentFile();
+            if (parent == null) { // unlikely but just in case
+                return;
+            }
+            String base = dir.getName();
+            File[] children = listings.computeIfAbsent(parent, p -> p.listFiles(File::isDirectory));
+            if (children == null) {
+                return;
+            }
+            for (File child : children) {
+                String childName = child.getName();
+                if (childName.equals(base) || childName.startsWith(base + combinator)) {
+                    delete(root, child);
+                }
+            }
+        }
+        /**
+         * Deletes one directory.
+         */
+        void delete(File root, File dir) {
+            String dirPath = root.toPath().relativize(dir.toPath()).toString();
+            long size = measure ? sizeOf(dir.toPath()) : 0;
+            try {
+                Util.deleteRecursive(dir);
+                deleted.add(dirPath);
+                bytes += size;
+            } catch (IOException x) {
+                problems.add(dirPath + ": " + x);
+            }
+        }
+        private static long sizeOf(Path dir) {
+            long[] size = {0};
+            try {
+                Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        size[0] += attrs.size();
+                        return FileVisitResult.CONTINUE;
+                    }
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException x) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException x) {
+                // only an estimate anyway
+            }
+            return size[0];
+        }
+    }
+
     // Avoiding WeakHashMap<Node, T> since Slave overrides hashCode/equals
     private final LoadingCache<Node, Object> nodeLocks = Caffeine.newBuilder().weakKeys().build(node -> {
         // Avoiding new Object() to prepare for http://cr.openjdk.java.net/~briangoetz/valhalla/sov/02-object-model.html
@@ -354,7 +832,7 @@ public class WorkspaceLocatorImpl extends WorkspaceLocator {
         return new Base32(0).encodeToString(sha256).replaceFirst("=+$", "");
     }
 
-    private static String mnemonicOf(String name) {
+    static String mnemonicOf(String name) {
         // Do not need the complexity of NameMangler here, since we uniquify as needed.
         return name.replaceAll("(%[0-9A-F]{2}|[^a-zA-Z0-9-_.])+", "_");
     }
@@ -394,6 +872,26 @@ public class WorkspaceLocatorImpl extends WorkspaceLocator {
 
         private static final int CLEANUP_THREAD_LIMIT = SystemProperties.getInteger(Deleter.class.getName() + ".CLEANUP_THREAD_LIMIT", 0);
 
+        /**
+         * Milliseconds for which to collect deleted items before cleaning up their workspaces on each node in a single
+         * {@link CleanupBatch}, so that deleting a folder with many branches does not schedule a task per branch and
+         * node nor rewrite each index once per branch.
+         * Zero to clean up each item separately in a {@link CleanupTask}.
+         */
+        static /* not final */ long BATCH_WINDOW = SystemProperties.getLong(Deleter.class.getName() + ".BATCH_WINDOW", 1000L);
+
+        /**
+         * The most items whose workspaces a {@link CleanupBatch} deletes in a single {@link DeleteWorkspaces} call,
+         * so that each call finishes well within its timeout.
+         */
+        static /* not final */ int BATCH_SIZE = SystemProperties.getInteger(Deleter.class.getName() + ".BATCH_SIZE", 100);
+
+        /**
+         * {@link CleanupBatch}es still collecting items, by node name.
+         * Guarded by {@code Deleter.class}.
+         */
+        private static final Map<String, CleanupBatch> pendingBatches = new HashMap<>();
+
         private static final ExecutorService executorService = executorService();
 
         /** Number of {@link CleanupTask} which have been scheduled but not yet completed. */
@@ -430,7 +928,12 @@ public class WorkspaceLocatorImpl extends WorkspaceLocator {
                 .collect(Collectors.toCollection(LinkedList::new));
             try {
                 while (!nodes.isEmpty()){
-                    executorService.execute(new CleanupTask(tli, nodes.remove()));
+                    Node node = nodes.remove();
+                    if (BATCH_WINDOW > 0) {
+                        CleanupBatch.add(tli, node);
+                    } else {
+                        executorService.execute(new CleanupTask(tli, node));
+                    }
                 }
             } catch (Exception e) {
                 LOGGER.log(Level.WARNING, e.getMessage());
@@ -508,9 +1011,7 @@ public class WorkspaceLocatorImpl extends WorkspaceLocator {
                         FilePath workspace = getWorkspaceRoot(node);
                         if (workspace != null) {
                             synchronized (lockFor(node)) {
-                                Map<String, String> index = load(workspace);
-                                index.remove(tli.getFullName());
-                                save(index, workspace);
+                                remove(load(workspace), workspace, tli.getFullName());
                             }
                         }
                     } catch (IOException | InterruptedException x) {
@@ -524,6 +1025,170 @@ public class WorkspaceLocatorImpl extends WorkspaceLocator {
 
         }
 
+        /**
+         * Cleans up the workspaces of all the items deleted within {@link #BATCH_WINDOW} on one node,
+         * using a {@link DeleteWorkspaces} call per {@link #BATCH_SIZE} items.
+         */
+        private static final class CleanupBatch implements Runnable {
+
+            @NonNull
+            private final Node node;
+
+            /** Deleted items by full name; guarded by {@code Deleter.class} until {@link #run}. */
+            private final Map<String, TopLevelItem> items = new LinkedHashMap<>();
+
+            private CleanupBatch(Node node) {
+                this.node = node;
+                taskStarted();
+            }
+
+            static void add(TopLevelItem tli, Node node) {
+                synchronized (Deleter.class) {
+                    String key = node instanceof Jenkins ? "" : node.getNodeName();
+                    CleanupBatch batch = pendingBatches.get(key);
+                    if (batch == null) {
+                        batch = new CleanupBatch(node);
+                        pendingBatches.put(key, batch);
+                        CleanupBatch _batch = batch;
+                        jenkins.util.Timer.get().schedule(() -> {
+                            synchronized (Deleter.class) {
+                                pendingBatches.remove(key, _batch);
+                            }
+                            try {
+                                executorService.execute(_batch);
+                            } catch (RuntimeException x) {
+                                LOGGER.log(Level.WARNING, "could not schedule workspace cleanup on " + key, x);
+                                taskFinished();
+                            }
+                        }, BATCH_WINDOW, TimeUnit.MILLISECONDS);
+                    }
+                    batch.items.put(tli.getFullName(), tli);
+                }
+            }
+
+            @Override
+            public void run() {
+                Thread t = Thread.currentThread();
+                String oldName = t.getName();
+                String nodeName = node instanceof Jenkins ? "master" : node.getNodeName();
+                try {
+                    Map<String, TopLevelItem> _items;
+                    synchronized (Deleter.class) {
+                        _items = new LinkedHashMap<>(items);
+                    }
+                    t.setName(oldName + ": possibly deleting workspaces for " + _items.size() + " items on " + nodeName);
+                    Map<String, List<String>> candidates = new LinkedHashMap<>();
+                    for (Map.Entry<String, TopLevelItem> entry : _items.entrySet()) {
+                        String fullName = entry.getKey();
+                        if (!managed(entry.getValue(), node) || fullName.contains("\n") || fullName.equals(INDEX_FILE_NAME) || fullName.equals(JOURNAL_FILE_NAME)) {
+                            continue;
+                        }
+                        List<String> paths = new ArrayList<>();
+                        if (PATH_MAX != 0 && entry.getValue().getParent() instanceof MultiBranchProject) {
+                            paths.add(minimize(fullName));
+                        }
+                        paths.add(fullName);
+                        candidates.put(fullName, paths);
+                    }
+                    if (candidates.isEmpty()) {
+                        return;
+                    }
+                    FilePath workspace = getWorkspaceRoot(node);
+                    if (workspace == null) {
+                        return;
+                    }
+                    List<Map.Entry<String, List<String>>> entries = new ArrayList<>(candidates.entrySet());
+                    List<String> left = new ArrayList<>();
+                    int size = Math.max(1, BATCH_SIZE);
+                    for (int from = 0; from < entries.size(); from += size) {
+                        Map<String, List<String>> chunk = new LinkedHashMap<>();
+                        for (Map.Entry<String, List<String>> entry : entries.subList(from, Math.min(entries.size(), from + size))) {
+                            chunk.put(entry.getKey(), entry.getValue());
+                        }
+                        try (Timeout timeout = Timeout.limit(5, TimeUnit.MINUTES)) {
+                            synchronized (lockFor(node)) {
+                                Deletions deleted;
+                                try {
+                                    deleted = workspace.act(new DeleteWorkspaces(chunk, COMBINATOR, COMPACT_THRESHOLD));
+                                } catch (IOException | InterruptedException x) {
+                                    // the agent may still be changing the index, so do not trust the cached one
+                                    forget(workspace);
+                                    throw x;
+                                }
+                                for (String path : deleted.deleted) {
+                                    LOGGER.log(Level.INFO, "deleting obsolete workspace {0} on {1}", new Object[] {workspace.child(path), nodeName});
+                                }
+                                for (String problem : deleted.problems) {
+                                    LOGGER.log(Level.WARNING, "could not clean up workspace directory {0} on {1}", new Object[] {problem, nodeName});
+                                }
+                                removed(workspace, deleted);
+                            }
+                        } catch (IOException | InterruptedException x) {
+                            // each call has its own timeout, so one slow call does not hold back the other items
+                            LOGGER.log(Level.WARNING, "could not clean up workspace directories for " + chunk.size() + " items on " + nodeName, x);
+                            left.addAll(chunk.keySet());
+                        }
+                    }
+                    if (!left.isEmpty()) {
+                        LOGGER.log(Level.WARNING, "workspaces of {0} items may be left behind on {1}: {2}", new Object[] {left.size(), nodeName, left});
+                    }
+                } finally {
+                    t.setName(oldName);
+                    taskFinished();
+                }
+            }
+
+        }
+
+        /**
+         * Deletes the workspaces of some items, including alternate workspaces, and removes them from the index,
+         * journaling the removals at once.
+         * The input maps each full name to the paths at which to look for a workspace when the index does not list it.
+         */
+        private static final class DeleteWorkspaces extends MasterToSlaveFileCallable<Deletions> {
+            private static final long serialVersionUID = 1;
+            private final Map<String, List<String>> candidates;
+            private final String combinator;
+            private final int compactThreshold;
+            DeleteWorkspaces(Map<String, List<String>> candidates, String combinator, int compactThreshold) {
+                this.candidates = candidates;
+                this.combinator = combinator;
+                this.compactThreshold = compactThreshold;
+            }
+            @Override
+            public Deletions invoke(File root, VirtualChannel channel) throws IOException, InterruptedException {
+                IndexFiles files = IndexFiles.read(root);
+                Deletions result = new Deletions(false);
+                Map<File, File[]> listings = new HashMap<>();
+                StringBuilder records = new StringBuilder();
+                int removed = 0;
+                for (Map.Entry<String, List<String>> entry : candidates.entrySet()) {
+                    String fullName = entry.getKey();
+                    String path = files.index.remove(fullName, mnemonicOf(fullName));
+                    if (path != null) {
+                        records.append('-').append(fullName).append('\n');
+                        result.removed.add(fullName);
+                        removed++;
+                    } else {
+                        for (String candidate : entry.getValue()) {
+                            if (new File(root, candidate).isDirectory()) {
+                                path = candidate;
+                                break;
+                            }
+                        }
+                        if (path == null) {
+                            continue;
+                        }
+                    }
+                    result.delete(root, path, combinator, listings);
+                }
+                result.journalRecords = removed > 0
+                        ? files.journal(root, records.toString(), removed, compactThreshold)
+                        : files.journalRecords;
+                return result;
+            }
+        }
+
         private static class MoveTask implements Runnable {
 
             @NonNull
@@ -581,10 +1246,9 @@ public class WorkspaceLocatorImpl extends WorkspaceLocator {
                         FilePath workspace = getWorkspaceRoot(node);
                         if (workspace != null) {
                             synchronized (lockFor(node)) {
-                                Map<String, String> index = load(workspace);
-                                index.remove(oldFullName);
-                                assert index.containsKey(newFullName); // locate(…, true) should have added it
-                                save(index, workspace);
+                                WorkspaceIndex index = load(workspace);
+                                assert index.get(newFullName) != null; // locate(…, true) should have added it
+                                remove(index, workspace, oldFullName);
                             }
                         }
                     } catch (IOException | InterruptedException x) {
@@ -618,17 +1282,15 @@ public class WorkspaceLocatorImpl extends WorkspaceLocator {
                 return;
             }
             synchronized (lockFor(node)) {
-                Map<String, String> index = load(workspace);
-                boolean modified = false;
+                WorkspaceIndex index = load(workspace);
+                StringBuilder records = new StringBuilder();
+                int removed = 0;
                 try (ACLContext as = ACL.as2(ACL.SYSTEM2)) {
-                    Iterator<Map.Entry<String, String>> it = index.entrySet().iterator();
-                    while (it.hasNext()) {
-                        Map.Entry<String, String> entry = it.next();
-                        String fullName = entry.getKey();
+                    for (String fullName : index.fullNames()) {
                         if (Jenkins.get().getItemByFullName(fullName, TopLevelItem.class) == null) {
-                            String path = entry.getValue();
-                            it.remove();
-                            modified = true;
+                            String path = index.remove(fullName, mnemonicOf(fullName));
+                            records.append('-').append(fullName).append('\n');
+                            removed++;
                             for (FilePath child : workspace.listDirectories()) {
                                 String childName = child.getName();
                                 if (childName.equals(path) || childName.startsWith(path + COMBINATOR)) {
@@ -653,9 +1315,298 @@ public class WorkspaceLocatorImpl extends WorkspaceLocator {
                         }
                     }
                 }
-                if (modified) {
-                    save(index, workspace);
+                if (removed > 0) {
+                    journal(index, workspace, records.toString(), removed);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Periodically reconciles the index and workspace root of each online node with the items in Jenkins,
+     * reclaiming what {@link Deleter} and {@link Collector} missed,
+     * such as workspaces whose cleanup timed out or which were added back to the index by a stale cache.
+     * Index entries for missing items are removed and their workspaces deleted, in batches of {@link #BATCH_SIZE}
+     * with a pause of {@link #BATCH_PAUSE} between them, each batch journaling its removals, and then the index is
+     * compacted once.
+     * What was reclaimed on each node and in total since startup is reported to the task log and the system log.
+     */
+    @Extension
+    public static final class GarbageCollector extends AsyncPeriodicWork {
+
+        /** Whether to run at all. */
+        static /* not final */ boolean ENABLED = SystemProperties.getBoolean(GarbageCollector.class.getName() + ".ENABLED");
+
+        static /* not final */ long RECURRENCE_PERIOD_HOURS = SystemProperties.getLong(GarbageCollector.class.getName() + ".RECURRENCE_PERIOD_HOURS", 24L);
+
+        /** The most index entries and directories to reclaim in a single remote call. */
+        static /* not final */ int BATCH_SIZE = SystemProperties.getInteger(GarbageCollector.class.getName() + ".BATCH_SIZE", 100);
+
+        /** Milliseconds to wait between batches, so as not to monopolize the node lock nor the disk of an agent. */
+        static /* not final */ long BATCH_PAUSE = SystemProperties.getLong(GarbageCollector.class.getName() + ".BATCH_PAUSE", 1000L);
+
+        /**
+         * Whether to also delete directories in the workspace root which are neither listed in the index nor used by
+         * any item, such as those left behind by items deleted while this extension was disabled.
+         * Off by default since such directories could also have been created by other means.
+         */
+        static /* not final */ boolean DELETE_UNINDEXED = SystemProperties.getBoolean(GarbageCollector.class.getName() + ".DELETE_UNINDEXED");
+
+        private final AtomicLong reclaimedEntries = new AtomicLong();
+        private final AtomicLong reclaimedDirectories = new AtomicLong();
+        private final AtomicLong reclaimedBytes = new AtomicLong();
+
+        public GarbageCollector() {
+            super("Workspace garbage collection");
+        }
+
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.HOURS.toMillis(RECURRENCE_PERIOD_HOURS);
+        }
+
+        /** The number of index entries removed since startup. */
+        public long getReclaimedEntries() {
+            return reclaimedEntries.get();
+        }
+
+        /** The number of workspace directories deleted since startup. */
+        public long getReclaimedDirectories() {
+            return reclaimedDirectories.get();
+        }
+
+        /** The number of bytes in workspace files deleted since startup. */
+        public long getReclaimedBytes() {
+            return reclaimedBytes.get();
+        }
+
+        @Override
+        protected void execute(TaskListener listener) throws IOException, InterruptedException {
+            if (!ENABLED || MODE == Mode.DISABLED) {
+                LOGGER.fine("workspace garbage collection disabled");
+                return;
+            }
+            Jenkins jenkins = Jenkins.get();
+            List<Node> nodes = new ArrayList<>();
+            nodes.add(jenkins);
+            nodes.addAll(jenkins.getNodes());
+            for (Node node : nodes) {
+                try {
+                    collect(node, listener);
+                } catch (IOException x) {
+                    LOGGER.log(Level.WARNING, "could not collect workspaces on " + node.getNodeName(), x);
+                    listener.error("could not collect workspaces on " + node.getNodeName() + ": " + x);
+                }
+            }
+            String totals = "reclaimed " + getReclaimedEntries() + " index entries and " + getReclaimedDirectories() + " directories (" + Functions.humanReadableByteSize(getReclaimedBytes()) + ") since startup";
+            listener.getLogger().println(totals);
+            LOGGER.info(totals);
+        }
+
+        /**
+         * The top-level directories which items may use as workspaces without the index listing them.
+         */
+        private static Set<String> used() {
+            Set<String> used = new HashSet<>();
+            try (ACLContext as = ACL.as2(ACL.SYSTEM2)) {
+                for (TopLevelItem item : Jenkins.get().getAllItems(TopLevelItem.class)) {
+                    String fullName = item.getFullName();
+                    used.add(fullName.split("/", 2)[0]);
+                    if (PATH_MAX != 0 && item.getParent() instanceof MultiBranchProject) {
+                        used.add(minimize(fullName));
+                    }
+                }
+            }
+            return used;
+        }
+
+        private void collect(Node node, TaskListener listener) throws IOException, InterruptedException {
+            String nodeName = node instanceof Jenkins ? "master" : node.getNodeName();
+            FilePath workspace = getWorkspaceRoot(node);
+            if (workspace == null) {
+                listener.getLogger().println("skipping offline " + nodeName);
+                return;
+            }
+            Survey survey;
+            synchronized (lockFor(node)) {
+                survey = workspace.act(new TakeSurvey());
+            }
+            List<String> fullNames = new ArrayList<>();
+            try (ACLContext as = ACL.as2(ACL.SYSTEM2)) {
+                for (String fullName : survey.files.index.fullNames()) {
+                    if (Jenkins.get().getItemByFullName(fullName, TopLevelItem.class) == null) {
+                        fullNames.add(fullName);
+                    }
+                }
+            }
+            List<String> directories = new ArrayList<>();
+            if (DELETE_UNINDEXED) {
+                Set<String> used = used();
+                for (String directory : survey.directories) {
+                    String base = directory.split(Pattern.quote(COMBINATOR), 2)[0];
+                    if (!used.contains(base) && !survey.files.index.containsPath(base)) {
+                        directories.add(directory);
+                    }
+                }
+            }
+            long entries = 0, dirs = 0, bytes = 0;
+            int from = 0, fromDirectories = 0;
+            while (from < fullNames.size() || fromDirectories < directories.size()) {
+                int to = Math.min(fullNames.size(), from + BATCH_SIZE);
+                int toDirectories = Math.min(directories.size(), fromDirectories + BATCH_SIZE - (to - from));
+                List<String> batch = new ArrayList<>();
+                try (ACLContext as = ACL.as2(ACL.SYSTEM2)) {
+                    for (String fullName : fullNames.subList(from, to)) {
+                        if (Jenkins.get().getItemByFullName(fullName, TopLevelItem.class) == null) { // still
+                            batch.add(fullName);
+                        }
+                    }
+                }
+                List<String> batchDirectories = new ArrayList<>();
+                if (toDirectories > fromDirectories) {
+                    // items may have been created or renamed since the survey
+                    Set<String> used = used();
+                    for (String directory : directories.subList(fromDirectories, toDirectories)) {
+                        if (!used.contains(directory.split(Pattern.quote(COMBINATOR), 2)[0])) {
+                            batchDirectories.add(directory);
+                        }
+                    }
+                }
+                Deletions reclaimed;
+                synchronized (lockFor(node)) {
+                    try {
+                        reclaimed = workspace.act(new Reclaim(batch, batchDirectories, COMBINATOR, COMPACT_THRESHOLD));
+                    } catch (IOException | InterruptedException x) {
+                        forget(workspace);
+                        throw x;
+                    }
+                    removed(workspace, reclaimed);
+                }
+                for (String path : reclaimed.deleted) {
+                    listener.getLogger().println("deleted obsolete workspace " + path + " on " + nodeName);
+                }
+                for (String problem : reclaimed.problems) {
+                    LOGGER.log(Level.WARNING, "could not delete workspace {0} on {1}", new Object[] {problem, nodeName});
+                    listener.error("could not delete workspace " + problem + " on " + nodeName);
+                }
+                entries += reclaimed.removed.size();
+                dirs += reclaimed.deleted.size();
+                bytes += reclaimed.bytes;
+                from = to;
+                fromDirectories = toDirectories;
+                if ((from < fullNames.size() || fromDirectories < directories.size()) && BATCH_PAUSE > 0) {
+                    Thread.sleep(BATCH_PAUSE);
+                }
+            }
+            synchronized (lockFor(node)) {
+                int journalRecords;
+                try {
+                    journalRecords = workspace.act(new Compact());
+                } catch (IOException | InterruptedException x) {
+                    forget(workspace);
+                    throw x;
+                }
+                IndexCacheEntry entry = cached(workspace);
+                if (entry != null) {
+                    entry.journalRecords = journalRecords;
+                }
+            }
+            reclaimedEntries.addAndGet(entries);
+            reclaimedDirectories.addAndGet(dirs);
+            reclaimedBytes.addAndGet(bytes);
+            listener.getLogger().println("reclaimed " + entries + " index entries and " + dirs + " directories (" + Functions.humanReadableByteSize(bytes) + ") on " + nodeName);
+            if (entries > 0 || dirs > 0) {
+                LOGGER.log(Level.INFO, "reclaimed {0} index entries and {1} directories ({2} bytes) on {3}", new Object[] {entries, dirs, bytes, nodeName});
+            }
+        }
+
+        /**
+         * The index of a node and the directories in its workspace root.
+         */
+        private static final class Survey implements Serializable {
+            private static final long serialVersionUID = 1;
+            final IndexFiles files;
+            final List<String> directories;
+            Survey(IndexFiles files, List<String> directories) {
+                this.files = files;
+                this.directories = directories;
+            }
+        }
+
+        private static final class TakeSurvey extends MasterToSlaveFileCallable<Survey> {
+            private static final long serialVersionUID = 1;
+            @Override
+            public Survey invoke(File root, VirtualChannel channel) throws IOException, InterruptedException {
+                List<String> directories = new ArrayList<>();
+                File[] children = root.listFiles(File::isDirectory);
+                if (children != null) {
+                    for (File child : children) {
+                        directories.add(child.getName());
+                    }
+                }
+                return new Survey(IndexFiles.read(root), directories);
+            }
+        }
+
+        /**
+         * Removes some items from the index and deletes their workspaces, as well as some unindexed directories,
+         * journaling the removals.
+         */
+        private static final class Reclaim extends MasterToSlaveFileCallable<Deletions> {
+            private static final long serialVersionUID = 1;
+            private final List<String> fullNames;
+            private final List<String> directories;
+            private final String combinator;
+            private final int compactThreshold;
+            Reclaim(List<String> fullNames, List<String> directories, String combinator, int compactThreshold) {
+                this.fullNames = fullNames;
+                this.directories = directories;
+                this.combinator = combinator;
+                this.compactThreshold = compactThreshold;
+            }
+            @Override
+            public Deletions invoke(File root, VirtualChannel channel) throws IOException, InterruptedException {
+                IndexFiles files = IndexFiles.read(root);
+                Deletions result = new Deletions(true);
+                Map<File, File[]> listings = new HashMap<>();
+                StringBuilder records = new StringBuilder();
+                for (String fullName : fullNames) {
+                    String path = files.index.remove(fullName, mnemonicOf(fullName));
+                    if (path != null) {
+                        records.append('-').append(fullName).append('\n');
+                        result.removed.add(fullName);
+                        result.delete(root, path, combinator, listings);
+                    }
+                }
+                for (String directory : directories) {
+                    File dir = new File(root, directory);
+                    // may have been allocated in the meantime
+                    if (dir.isDirectory() && !files.index.containsPath(directory.split(Pattern.quote(combinator), 2)[0])) {
+                        result.delete(root, dir);
+                    }
+                }
+                result.journalRecords = result.removed.isEmpty()
+                        ? files.journalRecords
+                        : files.journal(root, records.toString(), result.removed.size(), compactThreshold);
+                return result;
+            }
+        }
+
+        /**
+         * Rewrites the index, dropping the journal, unless there is nothing to compact.
+         * Returns the resulting number of journal records.
+         */
+        private static final class Compact extends MasterToSlaveFileCallable<Integer> {
+            private static final long serialVersionUID = 1;
+            @Override
+            public Integer invoke(File root, VirtualChannel channel) throws IOException, InterruptedException {
+                IndexFiles files = IndexFiles.read(root);
+                if (files.journalRecords > 0 || files.journalRecords < 0 && new File(root, INDEX_FILE_NAME).isFile()) {
+                    IndexFiles.write(root, files.index);
+                    return 0;
                 }
+                return files.journalRecords;
             }
         }
 
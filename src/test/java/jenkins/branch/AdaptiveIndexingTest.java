@@ -0,0 +1,126 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import jenkins.branch.harness.MultiBranchImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class AdaptiveIndexingTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    private int maxMultiplier;
+    private int maxDivisor;
+
+    @Before
+    public void rememberMaxMultiplier() {
+        maxMultiplier = AdaptiveIndexing.MAX_MULTIPLIER;
+        maxDivisor = AdaptiveIndexing.MAX_DIVISOR;
+    }
+
+    @After
+    public void restoreMaxMultiplier() {
+        AdaptiveIndexing.MAX_MULTIPLIER = maxMultiplier;
+        AdaptiveIndexing.MAX_DIVISOR = maxDivisor;
+    }
+
+    @Test
+    public void withoutEventsTheIntervalIsNotStretched() throws Exception {
+        MultiBranchImpl p = r.createProject(MultiBranchImpl.class, "p");
+        r.waitUntilNoActivity();
+        for (int i = 0; i < 3; i++) {
+            AdaptiveIndexing.indexingStarted(p);
+            assertThat(AdaptiveIndexing.indexingCompleted(p), is(1));
+        }
+    }
+
+    @Test
+    public void completeEventsStretchTheIntervalAndDriftResetsIt() throws Exception {
+        AdaptiveIndexing.MAX_MULTIPLIER = 4;
+        MultiBranchImpl p = r.createProject(MultiBranchImpl.class, "p");
+        r.waitUntilNoActivity();
+        AdaptiveIndexing.eventProcessed(p);
+        AdaptiveIndexing.indexingStarted(p);
+        assertThat(AdaptiveIndexing.indexingCompleted(p), is(2));
+        AdaptiveIndexing.eventProcessed(p);
+        AdaptiveIndexing.indexingStarted(p);
+        assertThat(AdaptiveIndexing.indexingCompleted(p), is(4));
+        AdaptiveIndexing.eventProcessed(p);
+        AdaptiveIndexing.indexingStarted(p);
+        assertThat(AdaptiveIndexing.indexingCompleted(p), is(4));
+        AdaptiveIndexing.eventProcessed(p);
+        AdaptiveIndexing.indexingStarted(p);
+        AdaptiveIndexing.driftDetected(p);
+        assertThat(AdaptiveIndexing.indexingCompleted(p), is(1));
+    }
+
+    @Test
+    public void periodicFiringsWithinTheStretchedIntervalAreSkipped() throws Exception {
+        MultiBranchImpl p = r.createProject(MultiBranchImpl.class, "p");
+        r.waitUntilNoActivity();
+        AdaptiveIndexing.eventProcessed(p);
+        AdaptiveIndexing.indexingStarted(p);
+        assertThat(AdaptiveIndexing.indexingCompleted(p), is(2));
+        long start = System.currentTimeMillis();
+        AdaptiveIndexing.indexingStarted(p);
+        assertThat(AdaptiveIndexing.shouldIndex(p, start), is(true));
+        assertThat(AdaptiveIndexing.shouldIndex(p, start + 60000L), is(false));
+        assertThat(AdaptiveIndexing.shouldIndex(p, start + 120000L), is(true));
+    }
+
+    @Test
+    public void repeatedDriftShortensTheInterval() throws Exception {
+        MultiBranchImpl p = r.createProject(MultiBranchImpl.class, "p");
+        r.waitUntilNoActivity();
+        long firing = System.currentTimeMillis();
+        AdaptiveIndexing.shouldIndex(p, firing - 60000L);
+        AdaptiveIndexing.shouldIndex(p, firing);
+        AdaptiveIndexing.indexingStarted(p);
+        AdaptiveIndexing.driftDetected(p);
+        AdaptiveIndexing.indexingCompleted(p);
+        assertThat("the first indexing finds everything new", AdaptiveIndexing.getDivisor(p), is(1));
+        long start = System.currentTimeMillis();
+        AdaptiveIndexing.indexingStarted(p);
+        AdaptiveIndexing.driftDetected(p);
+        assertThat("not while indexing", AdaptiveIndexing.shouldRecheck(p, start + 60000L), is(false));
+        AdaptiveIndexing.indexingCompleted(p);
+        assertThat(AdaptiveIndexing.getDivisor(p), is(2));
+        assertThat(AdaptiveIndexing.shouldRecheck(p, start + 20000L), is(false));
+        assertThat(AdaptiveIndexing.shouldRecheck(p, start + 31000L), is(true));
+        AdaptiveIndexing.indexingStarted(p);
+        AdaptiveIndexing.indexingCompleted(p);
+        assertThat(AdaptiveIndexing.getDivisor(p), is(1));
+        assertThat(AdaptiveIndexing.shouldRecheck(p, start + 600000L), is(false));
+    }
+}
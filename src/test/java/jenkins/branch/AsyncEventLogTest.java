@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.branch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AsyncEventLogTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void recordsAreWrittenInOrder() throws Exception {
+        File file = new File(tmp.getRoot(), "events.log");
+        AsyncEventLog log = new AsyncEventLog(file, 1024 * 1024, 5, 16, 10L);
+        for (int i = 0; i < 5; i++) {
+            try (PrintStream out = new PrintStream(log.get(), false, StandardCharsets.UTF_8.name())) {
+                out.println("event " + i);
+            }
+        }
+        assertTrue(log.awaitDrained(30000L));
+        assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8),
+            is(String.format("event 0%nevent 1%nevent 2%nevent 3%nevent 4%n")));
+    }
+
+    @Test
+    public void rotates() throws Exception {
+        File file = new File(tmp.getRoot(), "events.log");
+        AsyncEventLog log = new AsyncEventLog(file, 8, 2, 16, 10L);
+        for (int i = 0; i < 3; i++) {
+            try (OutputStream out = log.get()) {
+                out.write(("record " + i).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        assertTrue(log.awaitDrained(30000L));
+        assertThat(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), is("record 2"));
+        assertThat(new String(Files.readAllBytes(new File(tmp.getRoot(), "events.log.1").toPath()),
+            StandardCharsets.UTF_8), is("record 1"));
+        assertThat(new String(Files.readAllBytes(new File(tmp.getRoot(), "events.log.2").toPath()),
+            StandardCharsets.UTF_8), is("record 0"));
+    }
+}
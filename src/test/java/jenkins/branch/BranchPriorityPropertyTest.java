@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.mockito.Mockito.mock;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Cause;
+import hudson.model.CauseAction;
+import hudson.model.FreeStyleProject;
+import hudson.model.Queue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import jenkins.branch.harness.MultiBranchImpl;
+import jenkins.scm.api.SCMEvent;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.mixin.ChangeRequestSCMHead;
+import jenkins.scm.api.mixin.TagSCMHead;
+import jenkins.scm.impl.mock.MockSCMController;
+import jenkins.scm.impl.mock.MockSCMDiscoverBranches;
+import jenkins.scm.impl.mock.MockSCMSource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class BranchPriorityPropertyTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void defaults() {
+        BranchPriorityProperty property = new BranchPriorityProperty();
+        assertThat(property.priorityOf(true, new SCMHead("master")), is(1));
+        assertThat(property.priorityOf(false, new SCMHead("feature")), is(3));
+        assertThat(property.priorityOf(false, new ChangeRequest("PR-1", new SCMHead("master"))), is(4));
+        assertThat(property.priorityOf(false, new Tag("v1.0")), is(5));
+        // primary wins over the kind of head
+        assertThat(property.priorityOf(true, new ChangeRequest("PR-1", new SCMHead("master"))), is(1));
+    }
+
+    @Test
+    public void prioritiesAreClamped() {
+        BranchPriorityProperty property = new BranchPriorityProperty();
+        property.setPrimaryPriority(0);
+        property.setTagPriority(10);
+        assertThat(property.getPrimaryPriority(), is(BranchPriorityProperty.HIGHEST));
+        assertThat(property.getTagPriority(), is(BranchPriorityProperty.LOWEST));
+    }
+
+    @Test
+    public void buildableItemsAreSortedByPriorityAndCause() throws Exception {
+        try (MockSCMController c = MockSCMController.create()) {
+            c.createRepository("foo");
+            MultiBranchImpl prj = r.jenkins.createProject(MultiBranchImpl.class, "prj");
+            prj.setSourcesList(Collections.singletonList(
+                new BranchSource(new MockSCMSource(c, "foo", new MockSCMDiscoverBranches()))));
+            prj.scheduleBuild2(0).getFuture().get();
+            r.waitUntilNoActivity();
+            FreeStyleProject master = prj.getItem("master");
+            assertThat(master, notNullValue());
+            FreeStyleProject other = r.createFreeStyleProject("other");
+
+            Queue.BuildableItem indexing = buildable(master, new BranchIndexingCause());
+            Queue.BuildableItem event = buildable(master, new BranchEventCause(mock(SCMEvent.class), "event"));
+            Queue.BuildableItem user = buildable(master, new Cause.UserIdCause());
+            Queue.BuildableItem unrelated = buildable(other, new Cause.UserIdCause());
+            List<Queue.BuildableItem> buildables = new ArrayList<>(Arrays.asList(unrelated, indexing, event, user));
+            BranchPriorityProperty.QueueSorterImpl sorter = new BranchPriorityProperty.QueueSorterImpl();
+
+            // nothing is prioritized without the property, so the order of the queue is kept
+            assertThat(BranchPriorityProperty.sortKeyOf(indexing), is(BranchPriorityProperty.sortKeyOf(unrelated)));
+            sorter.sortBuildableItems(buildables);
+            assertThat(buildables, contains(unrelated, indexing, event, user));
+
+            BranchPriorityProperty property = new BranchPriorityProperty();
+            property.setPrimaryPriority(BranchPriorityProperty.HIGHEST);
+            property.setBranchPriority(BranchPriorityProperty.HIGHEST);
+            prj.getProperties().add(property);
+            assertThat(BranchPriorityProperty.sortKeyOf(user), is(3));
+            assertThat(BranchPriorityProperty.sortKeyOf(event), is(4));
+            assertThat(BranchPriorityProperty.sortKeyOf(indexing), is(5));
+            assertThat(BranchPriorityProperty.sortKeyOf(unrelated), is(BranchPriorityProperty.NEUTRAL * 3 + 1));
+            sorter.sortBuildableItems(buildables);
+            assertThat(buildables, contains(user, event, indexing, unrelated));
+        }
+    }
+
+    private static Queue.BuildableItem buildable(Queue.Task task, Cause cause) {
+        return new Queue.BuildableItem(new Queue.WaitingItem(Calendar.getInstance(), task,
+            Collections.singletonList(new CauseAction(cause))));
+    }
+
+    private static class ChangeRequest extends SCMHead implements ChangeRequestSCMHead {
+        private final SCMHead target;
+
+        ChangeRequest(String name, SCMHead target) {
+            super(name);
+            this.target = target;
+        }
+
+        @NonNull
+        @Override
+        public String getId() {
+            return getName();
+        }
+
+        @NonNull
+        @Override
+        public SCMHead getTarget() {
+            return target;
+        }
+    }
+
+    private static class Tag extends SCMHead implements TagSCMHead {
+        Tag(String name) {
+            super(name);
+        }
+
+        @Override
+        public long getTimestamp() {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.FreeStyleProject;
+import hudson.model.Job;
+import hudson.model.JobProperty;
+import hudson.model.Run;
+import hudson.tasks.LogRotator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import jenkins.branch.harness.MultiBranchImpl;
+import jenkins.scm.impl.mock.MockSCMController;
+import jenkins.scm.impl.mock.MockSCMDiscoverBranches;
+import jenkins.scm.impl.mock.MockSCMSource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+
+public class BranchProjectFactoryTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void unchangedProjectsAreNotDecoratedAgain() throws Exception {
+        try (MockSCMController c = MockSCMController.create()) {
+            MultiBranchImpl prj = index(c, new RateLimitBranchProperty(10, "hour"));
+            FreeStyleProject master = prj.getItem("master");
+            assertThat(master, notNullValue());
+            prj.getProjectFactory().decorate(master);
+            List<JobProperty<? super FreeStyleProject>> properties = new ArrayList<>(master.getAllProperties());
+            prj.getProjectFactory().decorate(master);
+            prj.getProjectFactory().decorate(master);
+            List<JobProperty<? super FreeStyleProject>> decorated = new ArrayList<>(master.getAllProperties());
+            assertThat(decorated, hasSize(properties.size()));
+            for (int i = 0; i < properties.size(); i++) {
+                assertThat(decorated.get(i), sameInstance(properties.get(i)));
+            }
+        }
+    }
+
+    @Test
+    public void changedBranchPropertiesAreApplied() throws Exception {
+        try (MockSCMController c = MockSCMController.create()) {
+            MultiBranchImpl prj = index(c, new BuildRetentionBranchProperty(new LogRotator(1, 1, 1, 1)));
+            FreeStyleProject master = prj.getItem("master");
+            Branch branch = prj.getProjectFactory().getBranch(master);
+            LogRotator rotator = new LogRotator(5, 5, 5, 5);
+            Branch changed = new Branch(branch.getSourceId(), branch.getHead(), branch.getScm(),
+                Collections.singletonList(new BuildRetentionBranchProperty(rotator)));
+            prj.getProjectFactory().decorate(prj.getProjectFactory().setBranch(master, changed));
+            assertThat(master.getBuildDiscarder(), sameInstance(rotator));
+        }
+    }
+
+    @Test
+    public void finalLayerIsAlwaysApplied() throws Exception {
+        try (MockSCMController c = MockSCMController.create()) {
+            MultiBranchImpl prj = index(c, new FinalLayerBranchProperty());
+            FreeStyleProject master = prj.getItem("master");
+            prj.getProjectFactory().decorate(master);
+            int applied = FinalLayerBranchProperty.applied.get();
+            prj.getProjectFactory().decorate(master);
+            prj.getProjectFactory().decorate(master);
+            assertThat(FinalLayerBranchProperty.applied.get(), is(applied + 2));
+        }
+    }
+
+    public static class FinalLayerBranchProperty extends BranchProperty {
+
+        static final AtomicInteger applied = new AtomicInteger();
+
+        @Override
+        public <P extends Job<P, B>, B extends Run<P, B>> JobDecorator<P, B> jobDecorator(Class<P> clazz) {
+            return new JobDecorator<P, B>() {
+                @NonNull
+                @Override
+                public P project(@NonNull P project) {
+                    applied.incrementAndGet();
+                    return project;
+                }
+            };
+        }
+
+        @TestExtension("finalLayerIsAlwaysApplied")
+        public static class DescriptorImpl extends BranchPropertyDescriptor {
+        }
+    }
+
+    private MultiBranchImpl index(MockSCMController c, BranchProperty property) throws Exception {
+        c.createRepository("foo");
+        MultiBranchImpl prj = r.jenkins.createProject(MultiBranchImpl.class, "prj");
+        BranchSource source = new BranchSource(new MockSCMSource(c, "foo", new MockSCMDiscoverBranches()));
+        source.setStrategy(new DefaultBranchPropertyStrategy(new BranchProperty[]{property}));
+        prj.setSourcesList(Arrays.asList(source));
+        prj.scheduleBuild2(0).getFuture().get();
+        r.waitUntilNoActivity();
+        return prj;
+    }
+}
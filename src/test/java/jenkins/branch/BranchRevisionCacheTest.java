@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import hudson.model.FreeStyleProject;
+import hudson.util.StreamTaskListener;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import jenkins.scm.api.SCMRevision;
+import jenkins.scm.impl.mock.MockSCMHead;
+import jenkins.scm.impl.mock.MockSCMRevision;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class BranchRevisionCacheTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    private long writeBehindMillis;
+
+    @Before
+    public void delayWrites() {
+        writeBehindMillis = BranchRevisionCache.WRITE_BEHIND_MILLIS;
+        BranchRevisionCache.WRITE_BEHIND_MILLIS = 60000L;
+    }
+
+    @After
+    public void restoreWrites() {
+        BranchRevisionCache.WRITE_BEHIND_MILLIS = writeBehindMillis;
+    }
+
+    @Test
+    public void readsAreCached() throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject();
+        AtomicInteger reads = new AtomicInteger();
+        BranchRevisionCache.Reader reader = () -> {
+            reads.incrementAndGet();
+            return null;
+        };
+        assertThat(BranchRevisionCache.get(BranchRevisionStore.Kind.BUILT, p, reader), nullValue());
+        assertThat(BranchRevisionCache.get(BranchRevisionStore.Kind.BUILT, p, reader), nullValue());
+        assertThat(reads.get(), is(1));
+        BranchRevisionCache.get(BranchRevisionStore.Kind.SEEN, p, reader);
+        assertThat(reads.get(), is(2));
+    }
+
+    @Test
+    public void writesAreVisibleBeforeTheyAreFlushed() throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject();
+        SCMRevision revision = revision("abc");
+        AtomicReference<SCMRevision> stored = new AtomicReference<>();
+        AtomicInteger writes = new AtomicInteger();
+        BranchRevisionCache.put(BranchRevisionStore.Kind.BUILT, p, revision("old"), rev -> {
+            writes.incrementAndGet();
+            stored.set(rev);
+        });
+        BranchRevisionCache.put(BranchRevisionStore.Kind.BUILT, p, revision, rev -> {
+            writes.incrementAndGet();
+            stored.set(rev);
+        });
+        assertThat(BranchRevisionCache.get(BranchRevisionStore.Kind.BUILT, p, stored::get), is(revision));
+        assertThat(writes.get(), is(0));
+        BranchRevisionCache.flush();
+        // only the latest revision is written
+        assertThat(writes.get(), is(1));
+        assertThat(stored.get(), is(revision));
+    }
+
+    @Test
+    public void deletingAJobDiscardsPendingWrites() throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject();
+        AtomicInteger writes = new AtomicInteger();
+        BranchRevisionCache.put(BranchRevisionStore.Kind.SEEN, p, revision("abc"), rev -> writes.incrementAndGet());
+        p.delete();
+        BranchRevisionCache.flush();
+        assertThat(writes.get(), is(0));
+    }
+
+    @Test
+    public void failedWritesAreRetriedAndReported() throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject();
+        SCMRevision revision = revision("abc");
+        AtomicReference<SCMRevision> stored = new AtomicReference<>();
+        AtomicInteger attempts = new AtomicInteger();
+        BranchRevisionCache.put(BranchRevisionStore.Kind.BUILT, p, revision, rev -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IOException("disk full");
+            }
+            stored.set(rev);
+        });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BranchRevisionCache.flush(new StreamTaskListener(out, StandardCharsets.UTF_8));
+        assertThat(out.toString(StandardCharsets.UTF_8.name()), containsString("Could not update last revision hash"));
+        assertThat(stored.get(), nullValue());
+        // still visible while it waits to be retried
+        assertThat(BranchRevisionCache.get(BranchRevisionStore.Kind.BUILT, p, stored::get), is(revision));
+        BranchRevisionCache.flush();
+        assertThat(attempts.get(), is(2));
+        assertThat(stored.get(), is(revision));
+    }
+
+    @Test
+    public void flushingSomeJobsLeavesTheOthersPending() throws Exception {
+        FreeStyleProject p1 = r.createFreeStyleProject();
+        FreeStyleProject p2 = r.createFreeStyleProject();
+        AtomicInteger writes1 = new AtomicInteger();
+        AtomicInteger writes2 = new AtomicInteger();
+        BranchRevisionCache.put(BranchRevisionStore.Kind.SEEN, p1, revision("abc"), rev -> writes1.incrementAndGet());
+        BranchRevisionCache.put(BranchRevisionStore.Kind.SEEN, p2, revision("def"), rev -> writes2.incrementAndGet());
+        BranchRevisionCache.flush(Collections.singletonList(p1), null);
+        assertThat(writes1.get(), is(1));
+        assertThat(writes2.get(), is(0));
+        BranchRevisionCache.flush();
+        assertThat(writes1.get(), is(1));
+        assertThat(writes2.get(), is(1));
+    }
+
+    private static SCMRevision revision(String hash) {
+        return new MockSCMRevision(new MockSCMHead("master"), hash);
+    }
+}
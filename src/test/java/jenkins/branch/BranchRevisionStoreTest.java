@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.branch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import hudson.XmlFile;
+import hudson.model.FreeStyleProject;
+import java.io.File;
+import java.util.Collections;
+import jenkins.branch.harness.MultiBranchImpl;
+import jenkins.scm.api.SCMRevision;
+import jenkins.scm.impl.mock.MockSCMController;
+import jenkins.scm.impl.mock.MockSCMDiscoverBranches;
+import jenkins.scm.impl.mock.MockSCMSource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class BranchRevisionStoreTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void revisionsAreKeptInTheProjectLog() throws Exception {
+        try (MockSCMController c = MockSCMController.create()) {
+            MultiBranchImpl prj = index(c);
+            FreeStyleProject master = prj.getItem("master");
+            assertThat(master, notNullValue());
+            SCMRevision built = prj.getProjectFactory().getRevision(master);
+            assertThat(built, notNullValue());
+            assertThat(prj.getProjectFactory().getLastSeenRevision(master), is(built));
+            BranchRevisionCache.flush();
+            assertThat(new File(prj.getRootDir(), BranchRevisionStore.FILE_NAME).isFile(), is(true));
+            assertThat(new File(master.getRootDir(), "scm-revision-hash.xml").exists(), is(false));
+            assertThat(new File(master.getRootDir(), "scm-last-seen-revision-hash.xml").exists(), is(false));
+            // a fresh store reads the same content back from the log
+            BranchRevisionStore reloaded = new BranchRevisionStore(prj.getRootDir());
+            assertThat(reloaded.get(BranchRevisionStore.Kind.BUILT, master), is(built));
+            assertThat(reloaded.get(BranchRevisionStore.Kind.SEEN, master), is(built));
+        }
+    }
+
+    @Test
+    public void legacyFilesAreMigrated() throws Exception {
+        try (MockSCMController c = MockSCMController.create()) {
+            MultiBranchImpl prj = index(c);
+            FreeStyleProject master = prj.getItem("master");
+            SCMRevision built = prj.getProjectFactory().getRevision(master);
+            BranchRevisionCache.flush();
+            File legacy = new File(master.getRootDir(), "scm-revision-hash.xml");
+            new XmlFile(legacy).write(built);
+            BranchRevisionStore store = new BranchRevisionStore(tmp.getRoot());
+            assertThat(store.get(BranchRevisionStore.Kind.BUILT, master), is(built));
+            assertThat(store.get(BranchRevisionStore.Kind.SEEN, master), nullValue());
+            // once migrated the legacy file is no longer needed
+            assertThat(legacy.delete(), is(true));
+            assertThat(new BranchRevisionStore(tmp.getRoot()).get(BranchRevisionStore.Kind.BUILT, master), is(built));
+        }
+    }
+
+    @Test
+    public void deletedJobsAreForgotten() throws Exception {
+        try (MockSCMController c = MockSCMController.create()) {
+            MultiBranchImpl prj = index(c);
+            FreeStyleProject master = prj.getItem("master");
+            BranchRevisionCache.flush();
+            BranchRevisionStore store = prj.getRevisionStore();
+            master.delete();
+            assertThat(store.get(BranchRevisionStore.Kind.BUILT, master), nullValue());
+            assertThat(new BranchRevisionStore(prj.getRootDir()).get(BranchRevisionStore.Kind.BUILT, master),
+                nullValue());
+        }
+    }
+
+    private MultiBranchImpl index(MockSCMController c) throws Exception {
+        c.createRepository("foo");
+        MultiBranchImpl prj = r.jenkins.createProject(MultiBranchImpl.class, "prj");
+        prj.setSourcesList(Collections.singletonList(
+            new BranchSource(new MockSCMSource(c, "foo", new MockSCMDiscoverBranches()))));
+        prj.scheduleBuild2(0).getFuture().get();
+        r.waitUntilNoActivity();
+        return prj;
+    }
+}
@@ -23,6 +23,7 @@
  */
 package jenkins.branch;
 
+import hudson.Util;
 import hudson.model.Action;
 import hudson.model.Items;
 import hudson.scm.NullSCM;
@@ -33,6 +34,7 @@ import org.junit.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 
@@ -79,4 +81,30 @@ public class BranchTest {
         assertThat(b.getSourceId(), is(NullSCMSource.ID));
         assertThat(b.getProperties(), contains(instanceOf(NoTriggerBranchProperty.class)));
     }
+
+    @Test
+    public void given_branch_when_roundTripped_then_scmDigestPersisted() throws Exception {
+        Branch b = new Branch("any-id", new MockSCMHead("quicker"), new NullSCM(),
+                Collections.<BranchProperty>emptyList());
+        String digest = b.getScmDigest();
+        assertThat(digest, is(Util.getDigestOf(Items.XSTREAM2.toXML(new NullSCM()))));
+        String xml = Items.XSTREAM2.toXML(b);
+        assertThat(xml, containsString("<scmDigest>" + digest + "</scmDigest>"));
+        // the persisted digest is used as is rather than computed again
+        Branch reloaded = (Branch) Items.XSTREAM2.fromXML(xml.replace(digest, "persisted"));
+        assertThat(reloaded.getScmDigest(), is("persisted"));
+    }
+
+    @Test
+    public void given_pre2Branch_when_deserialized_then_scmDigestComputed() throws Exception {
+        Branch b = (Branch) Items.XSTREAM2
+                .fromXML("<branch class=\"jenkins.branch.Branch\" >\n"
+                        + "        <sourceId>any-id</sourceId>\n"
+                        + "        <head class=\"jenkins.scm.impl.mock.MockSCMHead\">\n"
+                        + "          <name>quicker</name>\n"
+                        + "        </head>\n"
+                        + "        <scm class=\"hudson.scm.NullSCM\"/>\n"
+                        + "      </branch>");
+        assertThat(b.getScmDigest(), is(Util.getDigestOf(Items.XSTREAM2.toXML(new NullSCM()))));
+    }
 }
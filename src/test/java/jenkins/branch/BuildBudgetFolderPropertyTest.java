@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+import org.junit.Test;
+
+public class BuildBudgetFolderPropertyTest {
+
+    @Test
+    public void budgetIsSharedAndEarnedBack() {
+        BuildBudgetFolderProperty.Budget budget = new BuildBudgetFolderProperty.Budget(2, 0L);
+        assertThat(budget.check(1, false, 0L, 2, 1000L), is(0L));
+        budget.hold(1);
+        assertThat(budget.check(2, false, 0L, 2, 1000L), is(0L));
+        budget.hold(2);
+        assertThat(budget.check(3, false, 0L, 2, 1000L), is(1000L));
+        // items the queue checks again count on the build they hold
+        assertThat(budget.check(1, false, 0L, 2, 1000L), is(0L));
+        budget.left(1, false);
+        budget.left(2, false);
+        assertThat(budget.check(3, false, 500L, 2, 1000L), is(500L));
+        assertThat(budget.check(3, false, 1000L, 2, 1000L), is(0L));
+    }
+
+    @Test
+    public void cancelledItemsSpendNothing() {
+        BuildBudgetFolderProperty.Budget budget = new BuildBudgetFolderProperty.Budget(1, 0L);
+        assertThat(budget.check(1, false, 0L, 1, 1000L), is(0L));
+        budget.hold(1);
+        assertThat(budget.check(2, false, 0L, 1, 1000L), is(1000L));
+        budget.left(1, true);
+        assertThat(budget.check(2, false, 0L, 1, 1000L), is(0L));
+    }
+
+    @Test
+    public void itemsBlockedElsewhereSpendNothing() {
+        BuildBudgetFolderProperty.Budget budget = new BuildBudgetFolderProperty.Budget(1, 0L);
+        // let through by the budget but then held back by another dispatcher, so it never became buildable
+        assertThat(budget.check(1, false, 0L, 1, 1000L), is(0L));
+        assertThat(budget.check(2, false, 0L, 1, 1000L), is(0L));
+        budget.hold(2);
+        // blocked again after it became buildable
+        budget.release(2);
+        assertThat(budget.check(1, false, 0L, 1, 1000L), is(0L));
+        budget.hold(1);
+        budget.left(1, false);
+        budget.left(2, true);
+        assertThat(budget.check(3, false, 0L, 1, 1000L), is(1000L));
+    }
+
+    @Test
+    public void primaryBranchesGoFirst() {
+        BuildBudgetFolderProperty.Budget budget = new BuildBudgetFolderProperty.Budget(1, 0L);
+        assertThat(budget.check(2, true, 0L, 1, 1000L), is(0L));
+        assertThat(budget.check(1, false, 0L, 1, 1000L), lessThan(0L));
+        budget.hold(2);
+        budget.left(2, false);
+        assertThat(budget.check(1, false, 1000L, 1, 1000L), is(0L));
+    }
+
+    @Test
+    public void primaryBranchesOnlyKeepAShare() {
+        BuildBudgetFolderProperty.Budget budget = new BuildBudgetFolderProperty.Budget(8, 0L);
+        assertThat(budget.check(100, true, 0L, 8, 1000L), is(0L));
+        // a quarter of the budget is kept, but no more than the primary branches waiting need
+        for (long id = 1; id <= 7; id++) {
+            assertThat(budget.check(id, false, 0L, 8, 1000L), is(0L));
+            budget.hold(id);
+        }
+        assertThat(budget.check(8, false, 0L, 8, 1000L), lessThan(0L));
+        assertThat(budget.check(100, true, 0L, 8, 1000L), is(0L));
+        budget.hold(100);
+        budget.left(100, false);
+        assertThat(budget.check(8, false, 1000L, 8, 1000L), is(0L));
+    }
+
+    @Test
+    public void cancelledPrimaryBranchesStopWaiting() {
+        BuildBudgetFolderProperty.Budget budget = new BuildBudgetFolderProperty.Budget(1, 0L);
+        assertThat(budget.check(2, true, 0L, 1, 1000L), is(0L));
+        assertThat(budget.check(1, false, 0L, 1, 1000L), lessThan(0L));
+        budget.left(2, true);
+        assertThat(budget.check(1, false, 0L, 1, 1000L), is(0L));
+    }
+}
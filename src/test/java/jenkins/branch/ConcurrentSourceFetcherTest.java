@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.branch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+import hudson.model.FreeStyleProject;
+import java.util.Arrays;
+import jenkins.branch.harness.MultiBranchImpl;
+import jenkins.scm.impl.mock.MockSCMController;
+import jenkins.scm.impl.mock.MockSCMDiscoverBranches;
+import jenkins.scm.impl.mock.MockSCMSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class ConcurrentSourceFetcherTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    private int parallelism;
+
+    @Before
+    public void enable() {
+        parallelism = ConcurrentSourceFetcher.PARALLELISM;
+        ConcurrentSourceFetcher.PARALLELISM = 4;
+    }
+
+    @After
+    public void restore() {
+        ConcurrentSourceFetcher.PARALLELISM = parallelism;
+    }
+
+    @Test
+    public void priorityIsKeptWhenFetchingConcurrently() throws Exception {
+        try (MockSCMController c = MockSCMController.create()) {
+            c.createRepository("foo");
+            c.createBranch("foo", "shared");
+            c.createRepository("bar");
+            c.createBranch("bar", "shared");
+            c.createBranch("bar", "fun");
+            MultiBranchImpl prj = r.jenkins.createProject(MultiBranchImpl.class, "prj");
+            prj.setSourcesList(Arrays.asList(
+                new BranchSource(new MockSCMSource(c, "foo", new MockSCMDiscoverBranches()).withId("firstId")),
+                new BranchSource(new MockSCMSource(c, "bar", new MockSCMDiscoverBranches()).withId("secondId"))
+            ));
+            prj.scheduleBuild2(0).getFuture().get();
+            r.waitUntilNoActivity();
+            FreeStyleProject shared = prj.getItem("shared");
+            assertThat(shared, notNullValue());
+            assertThat("The higher priority source owns the shared name",
+                prj.getProjectFactory().getBranch(shared).getSourceId(), is("firstId"));
+            FreeStyleProject fun = prj.getItem("fun");
+            assertThat(fun, notNullValue());
+            assertThat(prj.getProjectFactory().getBranch(fun).getSourceId(), is("secondId"));
+            FreeStyleProject master = prj.getItem("master");
+            assertThat(prj.getProjectFactory().getBranch(master).getSourceId(), is("firstId"));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.branch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThrows;
+
+import hudson.model.FreeStyleProject;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import jenkins.branch.harness.MultiBranchImpl;
+import jenkins.scm.impl.mock.MockSCMController;
+import jenkins.scm.impl.mock.MockSCMDiscoverBranches;
+import jenkins.scm.impl.mock.MockSCMSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class HeadObservationPoolTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    private int parallelism;
+
+    @Before
+    public void enable() {
+        parallelism = HeadObservationPool.PARALLELISM;
+        HeadObservationPool.PARALLELISM = 4;
+    }
+
+    @After
+    public void restore() {
+        HeadObservationPool.PARALLELISM = parallelism;
+    }
+
+    @Test
+    public void indexesAllHeadsConcurrently() throws Exception {
+        try (MockSCMController c = MockSCMController.create()) {
+            c.createRepository("foo");
+            for (int i = 0; i < 20; i++) {
+                c.createBranch("foo", "feature-" + i);
+            }
+            MultiBranchImpl prj = r.jenkins.createProject(MultiBranchImpl.class, "prj");
+            prj.setSourcesList(Collections.singletonList(
+                new BranchSource(new MockSCMSource(c, "foo", new MockSCMDiscoverBranches()))));
+            prj.scheduleBuild2(0).getFuture().get();
+            r.waitUntilNoActivity();
+            assertThat(prj.getItems().size(), is(21));
+            for (int i = 0; i < 20; i++) {
+                FreeStyleProject p = prj.getItem("feature-" + i);
+                assertThat(p, notNullValue());
+                assertThat(p.getLastBuild(), notNullValue());
+            }
+        }
+    }
+
+    @Test
+    public void firstFailureIsReported() throws Exception {
+        HeadObservationPool pool = new HeadObservationPool(2);
+        pool.submit("a", () -> {
+        });
+        pool.submit("b", () -> {
+            throw new IOException("boom");
+        });
+        IOException e = assertThrows(IOException.class, pool::awaitCompletion);
+        assertThat(e.getMessage(), is("boom"));
+        // the failure is only reported once
+        pool.awaitCompletion();
+    }
+
+    @Test
+    public void cancelWaitsForRunningObservations() throws Exception {
+        HeadObservationPool pool = new HeadObservationPool(2);
+        CountDownLatch running = new CountDownLatch(1);
+        AtomicBoolean exited = new AtomicBoolean();
+        pool.submit("a", () -> {
+            running.countDown();
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException e) {
+                // still busy for a while after being interrupted
+                Thread.sleep(200);
+                exited.set(true);
+                throw e;
+            }
+        });
+        running.await();
+        pool.cancel();
+        assertThat(exited.get(), is(true));
+    }
+}
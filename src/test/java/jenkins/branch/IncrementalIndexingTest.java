@@ -0,0 +1,173 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.FreeStyleProject;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import jenkins.branch.harness.MultiBranchImpl;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMHeadObserver;
+import jenkins.scm.api.SCMRevision;
+import jenkins.scm.api.SCMSourceDescriptor;
+import jenkins.scm.impl.mock.MockSCMController;
+import jenkins.scm.impl.mock.MockSCMDiscoverBranches;
+import jenkins.scm.impl.mock.MockSCMSource;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+
+public class IncrementalIndexingTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    private boolean incrementalIndexing;
+
+    @Before
+    public void enableIncrementalIndexing() {
+        incrementalIndexing = MultiBranchProject.INCREMENTAL_INDEXING;
+        MultiBranchProject.INCREMENTAL_INDEXING = true;
+    }
+
+    @After
+    public void restoreIncrementalIndexing() {
+        MultiBranchProject.INCREMENTAL_INDEXING = incrementalIndexing;
+    }
+
+    @Test
+    public void headsAreRecordedAfterIndexing() throws Exception {
+        try (MockSCMController c = MockSCMController.create()) {
+            c.createRepository("foo");
+            c.createBranch("foo", "feature");
+            MultiBranchImpl prj = r.jenkins.createProject(MultiBranchImpl.class, "prj");
+            prj.setSourcesList(Collections.singletonList(
+                new BranchSource(new MockSCMSource(c, "foo", new MockSCMDiscoverBranches()))));
+            index(prj);
+            IndexingSnapshot.Source source = IndexingSnapshot.load(prj).get(prj.getSCMSources().get(0).getId());
+            assertThat(source, notNullValue());
+            assertThat(source.getHeads(), is(new HashSet<>(Arrays.asList("master", "feature"))));
+            assertThat(source.getCursor(), nullValue());
+        }
+    }
+
+    @Test
+    public void onlyChangedHeadsAreObserved() throws Exception {
+        try (MockSCMController c = MockSCMController.create()) {
+            c.createRepository("foo");
+            c.createBranch("foo", "feature");
+            IncrementalSource source = new IncrementalSource(c, "foo");
+            MultiBranchImpl prj = r.jenkins.createProject(MultiBranchImpl.class, "prj");
+            prj.setSourcesList(Collections.singletonList(new BranchSource(source)));
+            index(prj);
+            assertThat(IndexingSnapshot.load(prj).get(source.getId()).getCursor(), is("0"));
+            FreeStyleProject master = prj.getItem("master");
+            FreeStyleProject feature = prj.getItem("feature");
+            assertThat(master.getLastBuild().getNumber(), is(1));
+            assertThat(feature.getLastBuild().getNumber(), is(1));
+
+            c.addFile("foo", "master", "change", "file.txt", new byte[]{0});
+            c.addFile("foo", "feature", "change", "file.txt", new byte[]{0});
+            // only report feature, master must be left alone even though it changed
+            source.changed.add("feature");
+            index(prj);
+            assertThat(FileUtils.readFileToString(prj.getComputation().getLogFile(), StandardCharsets.UTF_8),
+                containsString("1 changed, 1 unchanged, 0 removed"));
+            assertThat(prj.getItem("master"), is(master));
+            assertThat(master.getLastBuild().getNumber(), is(1));
+            assertThat(feature.getLastBuild().getNumber(), is(2));
+
+            c.deleteBranch("foo", "feature");
+            source.changed.clear();
+            source.removed.add("feature");
+            index(prj);
+            assertThat(prj.getItem("feature"), nullValue());
+            assertThat(prj.getItem("master"), is(master));
+            assertThat(IndexingSnapshot.load(prj).get(source.getId()).getHeads(),
+                is(Collections.singleton("master")));
+        }
+    }
+
+    private void index(MultiBranchImpl prj) throws Exception {
+        prj.scheduleBuild2(0).getFuture().get();
+        r.waitUntilNoActivity();
+    }
+
+    public static class IncrementalSource extends MockSCMSource implements IncrementalSCMSource {
+        private final transient Set<String> changed = new HashSet<>();
+        private final transient Set<String> removed = new HashSet<>();
+        private transient int cursor;
+
+        public IncrementalSource(MockSCMController controller, String repository) {
+            super(controller, repository, new MockSCMDiscoverBranches());
+        }
+
+        @Override
+        public String currentCursor(@NonNull TaskListener listener) {
+            return Integer.toString(cursor);
+        }
+
+        @Override
+        public Changes fetchChanges(@NonNull String cursor, @NonNull SCMHeadObserver observer,
+                                    @NonNull TaskListener listener) throws IOException, InterruptedException {
+            fetch(new SCMHeadObserver() {
+                @Override
+                public void observe(@NonNull SCMHead head, @NonNull SCMRevision revision)
+                    throws IOException, InterruptedException {
+                    if (changed.contains(head.getName())) {
+                        observer.observe(head, revision);
+                    }
+                }
+            }, listener);
+            return new Changes(Integer.toString(++this.cursor), removed);
+        }
+
+        @TestExtension
+        public static class DescriptorImpl extends SCMSourceDescriptor {
+            @NonNull
+            @Override
+            public String getDisplayName() {
+                return "Incremental";
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.TaskListener;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import jenkins.branch.harness.MultiBranchImpl;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.impl.mock.MockSCMController;
+import jenkins.scm.impl.mock.MockSCMDiscoverBranches;
+import jenkins.scm.impl.mock.MockSCMSource;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class IndexingCheckpointTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void checkpointIsOnlyResumedWithTheSameSources() throws Exception {
+        MultiBranchImpl prj = r.jenkins.createProject(MultiBranchImpl.class, "prj");
+        List<String> ids = Arrays.asList("a", "b");
+        IndexingCheckpoint checkpoint = IndexingCheckpoint.open(prj, ids, null);
+        checkpoint.processed("a", "master", "rev1");
+        checkpoint.processed("b", "feature", "rev2");
+        checkpoint.write();
+
+        IndexingCheckpoint resumed = IndexingCheckpoint.open(prj, ids, null);
+        assertThat(resumed.getResumedCount(), is(2));
+        assertThat(resumed.isProcessed("a", "master", "rev1"), is(true));
+        assertThat(resumed.isProcessed("a", "master", "rev3"), is(false));
+        assertThat(resumed.isProcessed("b", "master", "rev1"), is(false));
+
+        IndexingCheckpoint other = IndexingCheckpoint.open(prj, Collections.singletonList("a"), null);
+        assertThat(other.getResumedCount(), is(0));
+        assertThat(new File(prj.getComputationDir(), IndexingCheckpoint.FILE_NAME).exists(), is(false));
+    }
+
+    @Test
+    public void processedHeadsAreSkipped() throws Exception {
+        try (MockSCMController c = MockSCMController.create()) {
+            c.createRepository("foo");
+            c.createBranch("foo", "feature");
+            MultiBranchImpl prj = r.jenkins.createProject(MultiBranchImpl.class, "prj");
+            prj.setSourcesList(Collections.singletonList(
+                new BranchSource(new MockSCMSource(c, "foo", new MockSCMDiscoverBranches()))));
+            index(prj);
+            FreeStyleProject master = prj.getItem("master");
+            FreeStyleProject feature = prj.getItem("feature");
+            assertThat(master.getLastBuild().getNumber(), is(1));
+
+            c.addFile("foo", "master", "change", "file.txt", new byte[]{0});
+            c.addFile("foo", "feature", "change", "file.txt", new byte[]{0});
+            // pretend an interrupted indexing had already processed master at its new revision
+            SCMSource source = prj.getSCMSources().get(0);
+            IndexingCheckpoint checkpoint = IndexingCheckpoint.open(prj,
+                Collections.singletonList(source.getId()), null);
+            checkpoint.processed(source.getId(), "master", source.fetch("master", TaskListener.NULL).toString());
+            checkpoint.write();
+
+            index(prj);
+            assertThat(FileUtils.readFileToString(prj.getComputation().getLogFile(), StandardCharsets.UTF_8),
+                containsString("Resuming interrupted branch indexing, 1 heads were already processed"));
+            assertThat(prj.getItem("master"), is(master));
+            assertThat(master.getLastBuild().getNumber(), is(1));
+            assertThat(feature.getLastBuild().getNumber(), is(2));
+            // a completed indexing leaves no checkpoint behind
+            assertThat(new File(prj.getComputationDir(), IndexingCheckpoint.FILE_NAME).exists(), is(false));
+        }
+    }
+
+    private void index(MultiBranchImpl prj) throws Exception {
+        prj.scheduleBuild2(0).getFuture().get();
+        r.waitUntilNoActivity();
+    }
+}
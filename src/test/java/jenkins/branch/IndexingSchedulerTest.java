@@ -0,0 +1,124 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import hudson.model.queue.CauseOfBlockage;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import jenkins.branch.harness.MultiBranchImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class IndexingSchedulerTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    private int globalLimit;
+    private int groupLimit;
+
+    @Before
+    public void rememberLimits() {
+        globalLimit = IndexingScheduler.GLOBAL_LIMIT;
+        groupLimit = IndexingScheduler.GROUP_LIMIT;
+    }
+
+    @After
+    public void restoreLimits() {
+        IndexingScheduler.GLOBAL_LIMIT = globalLimit;
+        IndexingScheduler.GROUP_LIMIT = groupLimit;
+    }
+
+    @Test
+    public void unlimitedByDefault() {
+        assertThat(IndexingScheduler.decide("a", counts("a", 100), counts("b", 100), 0, 0), nullValue());
+    }
+
+    @Test
+    public void globalLimit() {
+        assertThat(IndexingScheduler.decide("a", counts("a", 1, "b", 1), counts("a", 3), 2, 0).getShortDescription(),
+            containsString("2 running branch indexings to finish (3 waiting)"));
+        assertThat(IndexingScheduler.decide("a", counts("a", 1), counts(), 2, 0), nullValue());
+    }
+
+    @Test
+    public void groupLimit() {
+        CauseOfBlockage blocked = IndexingScheduler.decide("a", counts("a", 2), counts("a", 1), 0, 2);
+        assertThat(blocked, notNullValue());
+        assertThat(blocked.getShortDescription(), containsString("of a to finish (1 waiting)"));
+        assertThat(IndexingScheduler.decide("b", counts("a", 2), counts("a", 1), 0, 2), nullValue());
+    }
+
+    @Test
+    public void lessServedGroupsGoFirst() {
+        // one slot left, b has nothing running and is waiting so a must let it go first
+        assertThat(IndexingScheduler.decide("a", counts("a", 2), counts("b", 1), 3, 0), notNullValue());
+        assertThat(IndexingScheduler.decide("b", counts("a", 2), counts("a", 1), 3, 0), nullValue());
+        // enough slots for everyone
+        assertThat(IndexingScheduler.decide("a", counts("a", 2), counts("b", 1), 5, 0), nullValue());
+        // b is as well served as a
+        assertThat(IndexingScheduler.decide("a", counts("a", 1, "b", 1), counts("b", 1), 3, 0), nullValue());
+    }
+
+    @Test
+    public void indexingsComplete() throws Exception {
+        IndexingScheduler.GLOBAL_LIMIT = 1;
+        MultiBranchImpl one = r.jenkins.createProject(MultiBranchImpl.class, "one");
+        MultiBranchImpl two = r.jenkins.createProject(MultiBranchImpl.class, "two");
+        assertThat(IndexingScheduler.groupOf(one), is("one"));
+        one.scheduleBuild2(0);
+        two.scheduleBuild2(0);
+        r.waitUntilNoActivity();
+        assertThat(one.getComputation().getResult(), notNullValue());
+        assertThat(two.getComputation().getResult(), notNullValue());
+        // the finished indexings must have given their slot back
+        one.scheduleBuild2(0);
+        two.scheduleBuild2(0);
+        r.waitUntilNoActivity();
+        assertThat(r.jenkins.getQueue().getItems().length, is(0));
+    }
+
+    private static Map<String, Integer> counts(Object... pairs) {
+        if (pairs.length == 0) {
+            return Collections.emptyMap();
+        }
+        Map<String, Integer> result = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            result.put((String) pairs[i], (Integer) pairs[i + 1]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import hudson.BulkChange;
+import hudson.model.FreeStyleProject;
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import jenkins.model.Jenkins;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+
+public class IndexingWriteBatchTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    private int maxPending;
+    private int parallelism;
+
+    @Before
+    public void rememberLimits() {
+        maxPending = IndexingWriteBatch.MAX_PENDING;
+        parallelism = IndexingWriteBatch.PARALLELISM;
+    }
+
+    @After
+    public void restoreLimits() {
+        IndexingWriteBatch.MAX_PENDING = maxPending;
+        IndexingWriteBatch.PARALLELISM = parallelism;
+    }
+
+    @Test
+    public void savesAreDeferredUntilFlushed() throws Exception {
+        IndexingWriteBatch batch = new IndexingWriteBatch(TaskListener.NULL);
+        FreeStyleProject a = changed("a");
+        FreeStyleProject b = changed("b");
+        FreeStyleProject c = changed("c");
+        batch.save(a, "a");
+        batch.save(b, "b");
+        batch.save(c, "c");
+        batch.save(a, "a");
+        assertThat(batch.getPendingCount(), is(3));
+        assertThat(a.getConfigFile().asString(), not(containsString("changed a")));
+        c.delete();
+        batch.flush();
+        assertThat(batch.getPendingCount(), is(0));
+        assertThat(a.getConfigFile().asString(), containsString("changed a"));
+        assertThat(b.getConfigFile().asString(), containsString("changed b"));
+        // deleted projects are not resurrected
+        assertThat(c.getConfigFile().exists(), is(false));
+    }
+
+    @Test
+    public void tooManyPendingSavesForceAFlush() throws Exception {
+        IndexingWriteBatch.MAX_PENDING = 2;
+        IndexingWriteBatch batch = new IndexingWriteBatch(TaskListener.NULL);
+        FreeStyleProject a = changed("a");
+        FreeStyleProject b = changed("b");
+        batch.save(a, "a");
+        assertThat(batch.getPendingCount(), is(1));
+        batch.save(b, "b");
+        assertThat(batch.getPendingCount(), is(0));
+        assertThat(b.getConfigFile().asString(), containsString("changed b"));
+    }
+
+    @Test
+    public void savesRunRegardlessOfWhoFlushes() throws Exception {
+        r.jenkins.setSecurityRealm(r.createDummySecurityRealm());
+        r.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy().grant(Jenkins.ADMINISTER).everywhere().to("admin"));
+        IndexingWriteBatch.PARALLELISM = 4;
+        IndexingWriteBatch batch = new IndexingWriteBatch(TaskListener.NULL);
+        FreeStyleProject a = changed("a");
+        FreeStyleProject b = changed("b");
+        FreeStyleProject c = changed("c");
+        try (ACLContext as = ACL.as2(Jenkins.ANONYMOUS2)) {
+            batch.save(a, "a");
+            batch.save(b, "b");
+            batch.flush();
+            batch.save(c, "c");
+            batch.flush();
+        }
+        assertThat(a.getConfigFile().asString(), containsString("changed a"));
+        assertThat(b.getConfigFile().asString(), containsString("changed b"));
+        assertThat(c.getConfigFile().asString(), containsString("changed c"));
+    }
+
+    private FreeStyleProject changed(String name) throws Exception {
+        FreeStyleProject p = r.createFreeStyleProject(name);
+        BulkChange bc = new BulkChange(p);
+        try {
+            p.setDescription("changed " + name);
+        } finally {
+            bc.abort();
+        }
+        return p;
+    }
+}
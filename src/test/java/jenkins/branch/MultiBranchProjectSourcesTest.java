@@ -27,6 +27,7 @@ package jenkins.branch;
 import integration.harness.BasicMultiBranchProject;
 import java.util.List;
 import java.util.logging.Level;
+import jenkins.scm.impl.NullSCMSource;
 import jenkins.scm.impl.mock.MockSCMSource;
 import org.junit.Rule;
 import org.junit.Test;
@@ -35,6 +36,8 @@ import org.jvnet.hudson.test.LoggerRule;
 import org.jvnet.hudson.test.recipes.LocalData;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.sameInstance;
 
 public final class MultiBranchProjectSourcesTest {
 
@@ -74,6 +77,22 @@ public final class MultiBranchProjectSourcesTest {
         assertThat(idsOf(mbp), contains("1", "2"));
     }
 
+    @Test public void sourceLookupsFollowModifications() throws Exception {
+        var mbp = r.createProject(BasicMultiBranchProject.class, "mbp");
+        var bs1 = new BranchSource(new MockSCMSource("c", "r1"));
+        var bs2 = new BranchSource(new MockSCMSource("c", "r2"));
+        bs2.setStrategy(new DefaultBranchPropertyStrategy(new BranchProperty[]{new NoTriggerBranchProperty()}));
+        mbp.getSourcesList().add(bs1);
+        assertThat(mbp.getSCMSource("2"), instanceOf(NullSCMSource.class));
+        mbp.getSourcesList().add(bs2);
+        assertThat(mbp.getSCMSource("1"), sameInstance(bs1.getSource()));
+        assertThat(mbp.getSCMSource("2"), sameInstance(bs2.getSource()));
+        assertThat(mbp.getBranchPropertyStrategy(bs2.getSource()), sameInstance(bs2.getStrategy()));
+        mbp.setSourcesList(List.of(bs2));
+        assertThat(mbp.getSCMSource("1"), instanceOf(NullSCMSource.class));
+        assertThat(mbp.getSCMSources(), contains(bs2.getSource()));
+    }
+
     private static List<String> idsOf(MultiBranchProject<?, ?> mbp) {
         return mbp.getSources().stream().map(bs -> bs.getSource().getId()).toList();
     }
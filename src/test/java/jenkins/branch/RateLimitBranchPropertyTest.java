@@ -63,6 +63,7 @@ import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
@@ -427,6 +428,56 @@ public class RateLimitBranchPropertyTest {
         }
     }
 
+    @Test
+    public void getBurst() throws Exception {
+        RateLimitBranchProperty property = new RateLimitBranchProperty(10, "hour", false);
+        assertThat(property.getBurst(), is(1));
+        property.setBurst(0);
+        assertThat(property.getBurst(), is(1));
+        property.setBurst(5);
+        assertThat(property.getBurst(), is(5));
+        RateLimitBranchProperty.Throttle throttle = new RateLimitBranchProperty.Throttle(3, "hour", false);
+        throttle.setBurst(5);
+        // a burst can never exceed the number of builds in the time period
+        assertThat(new RateLimitBranchProperty.JobPropertyImpl(throttle).getBurst(), is(3));
+        assertThat(new RateLimitBranchProperty.JobPropertyImpl(throttle).isTokenBucket(), is(true));
+        assertThat(new RateLimitBranchProperty.JobPropertyImpl(
+                new RateLimitBranchProperty.Throttle(3, "hour", false)).isTokenBucket(), is(false));
+    }
+
+    @Test
+    public void tokenBucketAllowsBursts() throws Exception {
+        RateLimitBranchProperty.TokenBucket bucket = new RateLimitBranchProperty.TokenBucket(3, 0L);
+        for (long id = 1; id <= 3; id++) {
+            assertThat(bucket.delay(id, 0L, 3, 1000L), is(0L));
+            bucket.left(id, true, 0L, 3, 1000L);
+        }
+        assertThat(bucket.delay(4, 0L, 3, 1000L), is(1000L));
+        assertThat(bucket.delay(4, 500L, 3, 1000L), is(500L));
+        assertThat(bucket.delay(4, 1000L, 3, 1000L), is(0L));
+        bucket.left(4, true, 1000L, 3, 1000L);
+        // the bucket never saves more than the burst
+        assertThat(bucket.delay(5, 100000L, 3, 1000L), is(0L));
+        bucket.left(5, true, 100000L, 3, 1000L);
+        bucket.left(6, true, 100000L, 3, 1000L);
+        bucket.left(7, true, 100000L, 3, 1000L);
+        assertThat(bucket.delay(8, 100000L, 3, 1000L), is(1000L));
+    }
+
+    @Test
+    public void tokenBucketKeepsQueueOrder() throws Exception {
+        RateLimitBranchProperty.TokenBucket bucket = new RateLimitBranchProperty.TokenBucket(2, 0L);
+        bucket.enqueue(1);
+        bucket.enqueue(2);
+        assertThat(bucket.delay(2, 0L, 2, 1000L), lessThan(0L));
+        assertThat(bucket.delay(1, 0L, 2, 1000L), is(0L));
+        // cancelled items do not take a token
+        bucket.left(1, false, 0L, 2, 1000L);
+        assertThat(bucket.delay(2, 0L, 2, 1000L), is(0L));
+        bucket.left(2, true, 0L, 2, 1000L);
+        assertThat(bucket.delay(3, 0L, 2, 1000L), is(0L));
+    }
+
     public static class ConcurrentBuildBranchProperty extends BranchProperty {
         @Override
         public <P extends Job<P, B>, B extends Run<P, B>> JobDecorator<P, B> jobDecorator(
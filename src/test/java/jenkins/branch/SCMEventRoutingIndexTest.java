@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.branch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import integration.harness.BasicMultiBranchProjectFactory;
+import integration.harness.BasicSCMSourceCriteria;
+import java.util.Collections;
+import jenkins.branch.harness.MultiBranchImpl;
+import jenkins.scm.api.SCMEvent;
+import jenkins.scm.api.SCMHeadEvent;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.impl.mock.MockSCMController;
+import jenkins.scm.impl.mock.MockSCMDiscoverBranches;
+import jenkins.scm.impl.mock.MockSCMHeadEvent;
+import jenkins.scm.impl.mock.MockSCMNavigator;
+import jenkins.scm.impl.mock.MockSCMSource;
+import jenkins.scm.impl.mock.MockSCMSourceEvent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+
+public class SCMEventRoutingIndexTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void eventsOnlyRoutedToProjectsWithMatchingSources() throws Exception {
+        try (MockSCMController c = MockSCMController.create()) {
+            c.createRepository("foo");
+            c.createRepository("bar");
+            MultiBranchImpl foo = r.jenkins.createProject(MultiBranchImpl.class, "foo");
+            foo.getSourcesList().add(new BranchSource(new MockSCMSource(c, "foo", new MockSCMDiscoverBranches())));
+            MultiBranchImpl bar = r.jenkins.createProject(MultiBranchImpl.class, "bar");
+            bar.getSourcesList().add(new BranchSource(new MockSCMSource(c, "bar", new MockSCMDiscoverBranches())));
+            MultiBranchImpl empty = r.jenkins.createProject(MultiBranchImpl.class, "empty");
+
+            MockSCMHeadEvent event = new MockSCMHeadEvent(SCMEvent.Type.UPDATED, c, "foo", "master", "junkHash");
+            assertThat(SCMEventRoutingIndex.candidates(event), containsInAnyOrder(foo));
+
+            bar.getSourcesList().add(new BranchSource(new MockSCMSource(c, "foo", new MockSCMDiscoverBranches())));
+            assertThat(SCMEventRoutingIndex.candidates(event), containsInAnyOrder(foo, bar));
+
+            foo.delete();
+            assertThat(SCMEventRoutingIndex.candidates(event), containsInAnyOrder(bar));
+            assertThat(SCMEventRoutingIndex.candidates(event), not(hasItem(empty)));
+        }
+    }
+
+    @Test
+    public void unroutableEventsReachEveryProject() throws Exception {
+        try (MockSCMController c = MockSCMController.create()) {
+            c.createRepository("foo");
+            MultiBranchImpl foo = r.jenkins.createProject(MultiBranchImpl.class, "foo");
+            foo.getSourcesList().add(new BranchSource(new MockSCMSource(c, "foo", new MockSCMDiscoverBranches())));
+            MultiBranchImpl other = r.jenkins.createProject(MultiBranchImpl.class, "other");
+
+            MockSCMHeadEvent event = new MockSCMHeadEvent(SCMEvent.Type.UPDATED, c, "unknown", "master", "junkHash");
+            assertThat(SCMEventRoutingIndex.candidates(event), not(hasItem(foo)));
+            // the provider cannot key source events, so every project with a source it identifies is a candidate
+            assertThat(SCMEventRoutingIndex.candidates(new MockSCMSourceEvent(SCMEvent.Type.UPDATED, c, "foo")),
+                    containsInAnyOrder(foo));
+            assertThat(SCMEventRoutingIndex.candidates(new MockSCMSourceEvent(SCMEvent.Type.UPDATED, c, "foo")),
+                    not(hasItem(other)));
+        }
+    }
+
+    @Test
+    public void projectsWithinDeletedFoldersAreNotRouted() throws Exception {
+        try (MockSCMController c = MockSCMController.create()) {
+            c.createRepository("foo");
+            c.addFile("foo", "master", "marker", "marker.txt", new byte[0]);
+            OrganizationFolder org = r.jenkins.createProject(OrganizationFolder.class, "org");
+            org.getSCMNavigators().add(new MockSCMNavigator(c, new MockSCMDiscoverBranches()));
+            org.getProjectFactories().replaceBy(Collections
+                    .singletonList(new BasicMultiBranchProjectFactory(new BasicSCMSourceCriteria("marker.txt"))));
+            org.scheduleBuild2(0).getFuture().get();
+            r.waitUntilNoActivity();
+            MultiBranchProject<?, ?> foo = org.getItem("foo");
+            assertThat(foo, notNullValue());
+
+            MockSCMHeadEvent event = new MockSCMHeadEvent(SCMEvent.Type.UPDATED, c, "foo", "master", "junkHash");
+            assertThat(SCMEventRoutingIndex.candidates(event), containsInAnyOrder(foo));
+
+            org.delete();
+            assertThat(SCMEventRoutingIndex.candidates(event), not(hasItem(foo)));
+        }
+    }
+
+    @TestExtension
+    public static class MockRoutingKeyProvider extends SCMEventRoutingKeyProvider {
+
+        @Override
+        public String keyOf(@NonNull SCMSource source) {
+            return source instanceof MockSCMSource ? ((MockSCMSource) source).getRepository() : null;
+        }
+
+        @Override
+        public String keyOf(@NonNull SCMEvent<?> event) {
+            return event instanceof MockSCMHeadEvent ? ((SCMHeadEvent<?>) event).getSourceName() : null;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package jenkins.branch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertTrue;
+
+import hudson.util.StreamTaskListener;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import jenkins.branch.harness.MultiBranchImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class SCMHeadEventDispatcherTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    private static StreamTaskListener nullListener() {
+        return new StreamTaskListener(OutputStream.nullOutputStream(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void inlineByDefault() throws Exception {
+        MultiBranchImpl p = r.jenkins.createProject(MultiBranchImpl.class, "p");
+        SCMHeadEventDispatcher dispatcher = new SCMHeadEventDispatcher(SCMHeadEventDispatcherTest::nullListener, 0, 1, 0L);
+        assertTrue(dispatcher.isInline());
+        Thread caller = Thread.currentThread();
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        dispatcher.dispatch(p, "event", nullListener(), (global, lag, coalesced) -> threads.add(Thread.currentThread()));
+        assertThat(threads, contains(caller));
+    }
+
+    @Test
+    public void slowProjectDoesNotBlockOthersAndOrderIsKept() throws Exception {
+        MultiBranchImpl slow = r.jenkins.createProject(MultiBranchImpl.class, "slow");
+        MultiBranchImpl fast = r.jenkins.createProject(MultiBranchImpl.class, "fast");
+        SCMHeadEventDispatcher dispatcher = new SCMHeadEventDispatcher(SCMHeadEventDispatcherTest::nullListener, 2, 16, 0L);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastDone = new CountDownLatch(1);
+        CountDownLatch slowDone = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        dispatcher.dispatch(slow, "first", nullListener(), (global, lag, coalesced) -> {
+            release.await();
+            order.add("first");
+        });
+        dispatcher.dispatch(slow, "second", nullListener(), (global, lag, coalesced) -> {
+            order.add("second");
+            slowDone.countDown();
+        });
+        dispatcher.dispatch(fast, "other", nullListener(), (global, lag, coalesced) -> fastDone.countDown());
+        assertThat("other projects are not held up", fastDone.await(30, TimeUnit.SECONDS), is(true));
+        assertTrue("the slow project reports its lag", dispatcher.getQueueLag(slow) >= 0);
+        assertThat(dispatcher.getQueueSize(), greaterThanOrEqualTo(1));
+        release.countDown();
+        assertThat(slowDone.await(30, TimeUnit.SECONDS), is(true));
+        assertThat(order, contains("first", "second"));
+    }
+
+    @Test
+    public void burstsAreCoalesced() throws Exception {
+        MultiBranchImpl p = r.jenkins.createProject(MultiBranchImpl.class, "p");
+        SCMHeadEventDispatcher dispatcher =
+            new SCMHeadEventDispatcher(SCMHeadEventDispatcherTest::nullListener, 1, 16, 500L);
+        CountDownLatch done = new CountDownLatch(2);
+        List<String> ran = new CopyOnWriteArrayList<>();
+        List<Integer> folded = new CopyOnWriteArrayList<>();
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        StreamTaskListener global = new StreamTaskListener(log, StandardCharsets.UTF_8);
+        for (int i = 1; i <= 5; i++) {
+            String name = "update-" + i;
+            dispatcher.dispatch(p, name, global, "source/master", (globalLog, lag, coalesced) -> {
+                ran.add(name);
+                folded.add(coalesced);
+                done.countDown();
+            });
+        }
+        dispatcher.dispatch(p, "other", global, "source/feature", (globalLog, lag, coalesced) -> {
+            ran.add("other");
+            done.countDown();
+        });
+        global.getLogger().flush();
+        String text = log.toString(StandardCharsets.UTF_8.name());
+        assertThat(text, containsString("Coalesced update-5 with the pending event for p (4 events coalesced so far)"));
+        assertThat(text, containsString("Queued other for p behind 1 pending events"));
+        assertThat(done.await(30, TimeUnit.SECONDS), is(true));
+        assertThat(ran, contains("update-5", "other"));
+        assertThat(folded, contains(4));
+        assertThat(dispatcher.getCoalescedCount(), is(4L));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2026 CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package jenkins.branch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+import hudson.model.Action;
+import hudson.model.Cause;
+import hudson.model.CauseAction;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.InvisibleAction;
+import hudson.model.Queue;
+import hudson.model.TaskListener;
+import hudson.model.queue.QueueAction;
+import java.util.Arrays;
+import java.util.List;
+import jenkins.branch.harness.MultiBranchImpl;
+import jenkins.scm.api.SCMRevision;
+import jenkins.scm.api.SCMRevisionAction;
+import jenkins.scm.impl.mock.MockSCMController;
+import jenkins.scm.impl.mock.MockSCMDiscoverBranches;
+import jenkins.scm.impl.mock.MockSCMSource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+public class SupersedeBranchPropertyTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void queuedAutomaticBuildIsUpdated() throws Exception {
+        try (MockSCMController c = MockSCMController.create()) {
+            FreeStyleProject master = stuckBranch(c);
+            SCMRevision revision = projectFactory(master).getRevision(master);
+            assertThat(revision, notNullValue());
+            master.scheduleBuild2(0, new CauseAction(new BranchIndexingCause()), new Marker("old"));
+            assertThat(new SupersedeBranchProperty().supersede(master, revision, TaskListener.NULL,
+                new CauseAction(new BranchIndexingCause()), new Marker("new")), is(true));
+            Queue.Item[] items = r.jenkins.getQueue().getItems(master);
+            assertThat(items, arrayWithSize(1));
+            assertThat(items[0].getAction(Marker.class).value, is("new"));
+        }
+    }
+
+    @Test
+    public void queuedUserBuildIsLeftAlone() throws Exception {
+        try (MockSCMController c = MockSCMController.create()) {
+            FreeStyleProject master = stuckBranch(c);
+            SCMRevision revision = projectFactory(master).getRevision(master);
+            master.scheduleBuild2(0, new CauseAction(new Cause.UserIdCause()), new Marker("old"));
+            assertThat(new SupersedeBranchProperty().supersede(master, revision, TaskListener.NULL,
+                new CauseAction(new BranchIndexingCause()), new Marker("new")), is(false));
+            Queue.Item[] items = r.jenkins.getQueue().getItems(master);
+            assertThat(items, arrayWithSize(1));
+            assertThat(items[0].getAction(Marker.class).value, is("old"));
+        }
+    }
+
+    @Test
+    public void indexingUpdatesTheStuckBuild() throws Exception {
+        try (MockSCMController c = MockSCMController.create()) {
+            FreeStyleProject master = stuckBranch(c);
+            MultiBranchImpl prj = (MultiBranchImpl) master.getParent();
+            c.addFile("foo", "master", "first", "file.txt", new byte[]{0});
+            prj.scheduleBuild2(0).getFuture().get();
+            assertThat(r.jenkins.getQueue().getItems(master), arrayWithSize(1));
+            c.addFile("foo", "master", "second", "file.txt", new byte[]{1});
+            prj.scheduleBuild2(0).getFuture().get();
+            SCMRevision revision = projectFactory(master).getRevision(master);
+            assertThat(revision, notNullValue());
+            Queue.Item[] items = r.jenkins.getQueue().getItems(master);
+            assertThat(items, arrayWithSize(1));
+            SCMRevisionAction action = items[0].getAction(SCMRevisionAction.class);
+            assertThat(action, notNullValue());
+            assertThat(action.getRevision(), is(revision));
+            assertThat(master.getBuilds().size(), is(1));
+        }
+    }
+
+    private FreeStyleProject stuckBranch(MockSCMController c) throws Exception {
+        c.createRepository("foo");
+        MultiBranchImpl prj = r.jenkins.createProject(MultiBranchImpl.class, "prj");
+        BranchSource source = new BranchSource(new MockSCMSource(c, "foo", new MockSCMDiscoverBranches()));
+        source.setStrategy(new DefaultBranchPropertyStrategy(new BranchProperty[]{new SupersedeBranchProperty()}));
+        prj.setSourcesList(Arrays.asList(source));
+        prj.scheduleBuild2(0).getFuture().get();
+        r.waitUntilNoActivity();
+        FreeStyleProject master = prj.getItem("master");
+        assertThat(master, notNullValue());
+        // nothing can build it, so whatever is scheduled stays in the queue
+        master.setAssignedLabel(r.jenkins.getLabel("nowhere"));
+        return master;
+    }
+
+    private static BranchProjectFactory<FreeStyleProject, FreeStyleBuild> projectFactory(FreeStyleProject project) {
+        return ((MultiBranchImpl) project.getParent()).getProjectFactory();
+    }
+
+    public static class Marker extends InvisibleAction implements QueueAction {
+        private final String value;
+
+        public Marker(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean shouldSchedule(List<Action> actions) {
+            return true;
+        }
+    }
+}
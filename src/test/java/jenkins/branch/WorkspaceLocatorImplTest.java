@@ -26,15 +26,20 @@ package jenkins.branch;
 
 import static org.junit.Assume.assumeFalse;
 
+import hudson.ExtensionList;
 import hudson.FilePath;
 import hudson.Functions;
 import hudson.model.FreeStyleProject;
 import hudson.scm.NullSCM;
 import hudson.slaves.DumbSlave;
 import hudson.slaves.WorkspaceList;
+import hudson.util.StreamTaskListener;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -85,6 +90,47 @@ public class WorkspaceLocatorImplTest {
         WorkspaceLocatorImpl.MODE = origMode;
     }
 
+    int origCompactThreshold;
+    @Before
+    public void saveCompactThreshold() {
+        origCompactThreshold = WorkspaceLocatorImpl.COMPACT_THRESHOLD;
+    }
+    @After
+    public void restoreCompactThreshold() {
+        WorkspaceLocatorImpl.COMPACT_THRESHOLD = origCompactThreshold;
+    }
+
+    long origBatchWindow;
+    int origDeleterBatchSize;
+    @Before
+    public void saveBatchWindow() {
+        origBatchWindow = WorkspaceLocatorImpl.Deleter.BATCH_WINDOW;
+        origDeleterBatchSize = WorkspaceLocatorImpl.Deleter.BATCH_SIZE;
+    }
+    @After
+    public void restoreBatchWindow() {
+        WorkspaceLocatorImpl.Deleter.BATCH_WINDOW = origBatchWindow;
+        WorkspaceLocatorImpl.Deleter.BATCH_SIZE = origDeleterBatchSize;
+    }
+
+    boolean origGarbageCollectorEnabled, origDeleteUnindexed;
+    int origBatchSize;
+    long origBatchPause;
+    @Before
+    public void saveGarbageCollector() {
+        origGarbageCollectorEnabled = WorkspaceLocatorImpl.GarbageCollector.ENABLED;
+        origDeleteUnindexed = WorkspaceLocatorImpl.GarbageCollector.DELETE_UNINDEXED;
+        origBatchSize = WorkspaceLocatorImpl.GarbageCollector.BATCH_SIZE;
+        origBatchPause = WorkspaceLocatorImpl.GarbageCollector.BATCH_PAUSE;
+    }
+    @After
+    public void restoreGarbageCollector() {
+        WorkspaceLocatorImpl.GarbageCollector.ENABLED = origGarbageCollectorEnabled;
+        WorkspaceLocatorImpl.GarbageCollector.DELETE_UNINDEXED = origDeleteUnindexed;
+        WorkspaceLocatorImpl.GarbageCollector.BATCH_SIZE = origBatchSize;
+        WorkspaceLocatorImpl.GarbageCollector.BATCH_PAUSE = origBatchPause;
+    }
+
     @WithoutJenkins
     @SuppressWarnings("deprecation")
     @Test
@@ -218,6 +264,40 @@ public class WorkspaceLocatorImplTest {
         assertFalse(pr1Root.isDirectory());
     }
 
+    @Test
+    public void deleteBatch() throws Exception {
+        WorkspaceLocatorImpl.MODE = WorkspaceLocatorImpl.Mode.ENABLED;
+        WorkspaceLocatorImpl.Deleter.BATCH_WINDOW = 500;
+        WorkspaceLocatorImpl.Deleter.BATCH_SIZE = 1;
+        DumbSlave s = r.createOnlineSlave();
+        FreeStyleProject a = r.createFreeStyleProject("a");
+        r.buildAndAssertSuccess(a);
+        a.setAssignedNode(s);
+        r.buildAndAssertSuccess(a);
+        FreeStyleProject b = r.createFreeStyleProject("b");
+        b.setAssignedNode(s);
+        r.buildAndAssertSuccess(b);
+        FreeStyleProject c = r.createFreeStyleProject("c");
+        c.setAssignedNode(s);
+        r.buildAndAssertSuccess(c);
+        try (WorkspaceList.Lease lease = s.toComputer().getWorkspaceList().acquire(s.getWorkspaceFor(c))) {
+            r.buildAndAssertSuccess(c);
+        }
+        assertEquals(Arrays.asList("a", "b", "c", "c@2"), s.getWorkspaceRoot().listDirectories().stream().map(FilePath::getName).sorted().collect(Collectors.toList()));
+        a.delete();
+        c.delete();
+        WorkspaceLocatorImpl.Deleter.waitForTasksToFinish();
+        assertEquals(Collections.emptyList(), r.jenkins.getRootPath().child("workspace").listDirectories());
+        FilePath root = s.getWorkspaceRoot();
+        assertEquals(Collections.singletonList("b"), root.listDirectories().stream().map(FilePath::getName).collect(Collectors.toList()));
+        // one removal journaled per call
+        assertTrue(root.child(WorkspaceLocatorImpl.JOURNAL_FILE_NAME).readToString().endsWith("-a\n-c\n"));
+        assertEquals("b", r.buildAndAssertSuccess(b).getWorkspace().getName());
+        FreeStyleProject c2 = r.createFreeStyleProject("c");
+        c2.setAssignedNode(s);
+        assertEquals("the path is free again", "c", r.buildAndAssertSuccess(c2).getWorkspace().getName());
+    }
+
     @Issue("JENKINS-2111")
     @Test
     public void deleteOffline() throws Exception {
@@ -254,6 +334,119 @@ public class WorkspaceLocatorImplTest {
         r.jenkins.getRootPath().child("workspace/" + WorkspaceLocatorImpl.INDEX_FILE_NAME).copyTo(System.out);
     }
 
+    @WithoutJenkins
+    @Test
+    public void replayJournal() {
+        WorkspaceIndex index = new WorkspaceIndex();
+        index.put("a", "a");
+        assertEquals(3, WorkspaceLocatorImpl.replay(index, "+b\nb\n+c\nc_2\n-a\n"));
+        assertEquals("{b=b, c=c_2}", index.toString());
+        assertEquals("an incomplete record left by a crash is ignored", -1, WorkspaceLocatorImpl.replay(index, "-b\n+d\nd"));
+        assertEquals("{c=c_2}", index.toString());
+        assertEquals(-1, WorkspaceLocatorImpl.replay(index, "-c\n+e\n"));
+        assertEquals("{}", index.toString());
+    }
+
+    @WithoutJenkins
+    @Test
+    public void indexBothWays() {
+        WorkspaceIndex index = new WorkspaceIndex();
+        assertEquals(1, index.nextSuffix("a_b"));
+        index.put("a'b", "a_b");
+        index.taken("a_b", 1);
+        index.put("a(b", "a_b_2");
+        index.taken("a_b", 2);
+        assertTrue(index.containsPath("a_b_2"));
+        assertEquals("{a'b=a_b, a(b=a_b_2}", index.toString());
+        assertEquals(3, index.nextSuffix("a_b"));
+        assertEquals("a_b", index.remove("a'b", "a_b"));
+        assertFalse(index.containsPath("a_b"));
+        assertEquals("freed suffixes can be reused", 1, index.nextSuffix("a_b"));
+        assertNull(index.remove("a'b", "a_b"));
+    }
+
+    @Test
+    public void journal() throws Exception {
+        WorkspaceLocatorImpl.MODE = WorkspaceLocatorImpl.Mode.ENABLED;
+        FilePath root = r.jenkins.getRootPath().child("workspace");
+        assertEquals("a", r.buildAndAssertSuccess(r.createFreeStyleProject("a")).getWorkspace().getName());
+        assertEquals("a\na\n", root.child(WorkspaceLocatorImpl.INDEX_FILE_NAME).readToString());
+        assertEquals("b", r.buildAndAssertSuccess(r.createFreeStyleProject("b")).getWorkspace().getName());
+        assertEquals("a\na\n", root.child(WorkspaceLocatorImpl.INDEX_FILE_NAME).readToString());
+        assertEquals("+b\nb\n", root.child(WorkspaceLocatorImpl.JOURNAL_FILE_NAME).readToString());
+        WorkspaceLocatorImpl.COMPACT_THRESHOLD = 1;
+        assertEquals("c", r.buildAndAssertSuccess(r.createFreeStyleProject("c")).getWorkspace().getName());
+        assertEquals("a\na\nb\nb\nc\nc\n", root.child(WorkspaceLocatorImpl.INDEX_FILE_NAME).readToString());
+        assertFalse(root.child(WorkspaceLocatorImpl.JOURNAL_FILE_NAME).exists());
+    }
+
+    @Test
+    public void locateWithCachedIndex() throws Exception {
+        WorkspaceLocatorImpl.MODE = WorkspaceLocatorImpl.Mode.ENABLED;
+        FilePath root = r.jenkins.getRootPath().child("workspace");
+        assertEquals("a_b", r.buildAndAssertSuccess(r.createFreeStyleProject("a'b")).getWorkspace().getName());
+        // an unindexed directory in the way of the next suffix
+        root.child("a_b_2").mkdirs();
+        // the cached index is trusted, so a malformed index file is never read
+        root.child(WorkspaceLocatorImpl.INDEX_FILE_NAME).write("a'b\n", "UTF-8");
+        assertEquals("a_b_3", r.buildAndAssertSuccess(r.createFreeStyleProject("a(b")).getWorkspace().getName());
+        assertEquals("+a(b\na_b_3\n", root.child(WorkspaceLocatorImpl.JOURNAL_FILE_NAME).readToString());
+    }
+
+    @Test
+    public void locateOnAgent() throws Exception {
+        WorkspaceLocatorImpl.MODE = WorkspaceLocatorImpl.Mode.ENABLED;
+        DumbSlave s = r.createOnlineSlave();
+        FreeStyleProject x = r.createFreeStyleProject("x");
+        x.setAssignedNode(s);
+        r.createFreeStyleProject("z");
+        FreeStyleProject y = r.createFreeStyleProject("y");
+        y.setAssignedNode(s);
+        s.getWorkspaceRoot().child(WorkspaceLocatorImpl.INDEX_FILE_NAME).write("x\nelsewhere\nz\ny\n", "UTF-8");
+        // a new channel starts out with nothing cached, so the index is read afresh from the agent
+        s.toComputer().disconnect(null).get();
+        r.waitOnline(s);
+        assertEquals("elsewhere", r.buildAndAssertSuccess(x).getWorkspace().getName());
+        assertEquals("y_2", r.buildAndAssertSuccess(y).getWorkspace().getName());
+        FilePath root = s.getWorkspaceRoot();
+        assertEquals("x\nelsewhere\nz\ny\n", root.child(WorkspaceLocatorImpl.INDEX_FILE_NAME).readToString());
+        assertEquals("+y\ny_2\n", root.child(WorkspaceLocatorImpl.JOURNAL_FILE_NAME).readToString());
+    }
+
+    @Test
+    public void garbageCollector() throws Exception {
+        WorkspaceLocatorImpl.MODE = WorkspaceLocatorImpl.Mode.ENABLED;
+        WorkspaceLocatorImpl.GarbageCollector.ENABLED = true;
+        WorkspaceLocatorImpl.GarbageCollector.BATCH_SIZE = 1;
+        WorkspaceLocatorImpl.GarbageCollector.BATCH_PAUSE = 0;
+        DumbSlave s = r.createOnlineSlave();
+        FreeStyleProject a = r.createFreeStyleProject("a");
+        a.setAssignedNode(s);
+        r.buildAndAssertSuccess(a);
+        FilePath root = s.getWorkspaceRoot();
+        // as if the cleanup of deleted items had timed out:
+        root.child(WorkspaceLocatorImpl.JOURNAL_FILE_NAME).write("+gone\ngone\n+also-gone\nalso-gone\n", "UTF-8");
+        root.child("gone/file").write("12345", "UTF-8");
+        root.child("gone@tmp/file").write("123", "UTF-8");
+        root.child("stray/file").write("", "UTF-8");
+        WorkspaceLocatorImpl.GarbageCollector gc = ExtensionList.lookupSingleton(WorkspaceLocatorImpl.GarbageCollector.class);
+        gc.execute(StreamTaskListener.fromStdout());
+        assertEquals(Arrays.asList("a", "stray"), root.listDirectories().stream().map(FilePath::getName).sorted().collect(Collectors.toList()));
+        assertEquals("a\na\n", root.child(WorkspaceLocatorImpl.INDEX_FILE_NAME).readToString());
+        assertFalse(root.child(WorkspaceLocatorImpl.JOURNAL_FILE_NAME).exists());
+        assertEquals(2, gc.getReclaimedEntries());
+        assertEquals(2, gc.getReclaimedDirectories());
+        assertEquals(8, gc.getReclaimedBytes());
+        WorkspaceLocatorImpl.GarbageCollector.DELETE_UNINDEXED = true;
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        gc.execute(new StreamTaskListener(log, StandardCharsets.UTF_8));
+        assertEquals(Collections.singletonList("a"), root.listDirectories().stream().map(FilePath::getName).collect(Collectors.toList()));
+        assertEquals(2, gc.getReclaimedEntries());
+        assertEquals(3, gc.getReclaimedDirectories());
+        assertTrue(log.toString("UTF-8").contains("reclaimed 2 index entries and 3 directories"));
+        assertEquals("a", r.buildAndAssertSuccess(a).getWorkspace().getName());
+    }
+
     @Issue("JENKINS-2111")
     @Test
     public void move() throws Exception {